@@ -0,0 +1,81 @@
+package com.openclaw.homeassistant;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * 自动化历史数据库（进程内单例）
+ */
+// 版本 2：新增 automation_rollups
+@Database(entities = {AutomationEvent.class, AutomationRuleCount.class, AutomationRollup.class},
+    version = 2, exportSchema = false)
+public abstract class AutomationDatabase extends RoomDatabase {
+    
+    private static final String DB_NAME = "automation_history.db";
+    
+    private static volatile AutomationDatabase instance;
+    
+    /**
+     * 创建汇总表，并用库中已有的原始事件补算汇总
+     * 环形日志只保留最近的记录，重建数据库会丢失更早的历史，因此不能破坏性迁移
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `automation_rollups` (`granularity` INTEGER NOT NULL,"
+                + " `bucketStart` INTEGER NOT NULL, `ruleId` TEXT NOT NULL, `triggerCount` INTEGER NOT NULL,"
+                + " `actionCount` INTEGER NOT NULL, `failureCount` INTEGER NOT NULL,"
+                + " `speakCount` INTEGER NOT NULL, `notifyCount` INTEGER NOT NULL,"
+                + " `launchCount` INTEGER NOT NULL, PRIMARY KEY(`granularity`, `bucketStart`, `ruleId`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_automation_rollups_ruleId_granularity_bucketStart`"
+                + " ON `automation_rollups` (`ruleId`, `granularity`, `bucketStart`)");
+            
+            TimeZone zone = TimeZone.getDefault();
+            Map<String, AutomationRollup> rollups = new HashMap<>();
+            try (Cursor cursor = db.query(
+                    "SELECT timestamp, kind, ruleId, type FROM automation_events WHERE ruleId IS NOT NULL")) {
+                AutomationEvent event = new AutomationEvent();
+                while (cursor.moveToNext()) {
+                    event.timestamp = cursor.getLong(0);
+                    event.kind = cursor.getInt(1);
+                    event.ruleId = cursor.getString(2);
+                    event.type = cursor.isNull(3) ? null : cursor.getString(3);
+                    AutomationEventDao.rollup(rollups, event, zone);
+                }
+            }
+            for (AutomationRollup r : rollups.values()) {
+                db.execSQL("INSERT INTO automation_rollups (granularity, bucketStart, ruleId, triggerCount,"
+                    + " actionCount, failureCount, speakCount, notifyCount, launchCount)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    new Object[]{r.granularity, r.bucketStart, r.ruleId, r.triggerCount, r.actionCount,
+                        r.failureCount, r.speakCount, r.notifyCount, r.launchCount});
+            }
+        }
+    };
+    
+    public abstract AutomationEventDao eventDao();
+    
+    public static AutomationDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AutomationDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            AutomationDatabase.class, DB_NAME)
+                        .addMigrations(MIGRATION_1_2)
+                        .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -11,12 +11,13 @@ import android.content.IntentFilter;
 import android.location.Location;
 import android.os.BatteryManager;
 import android.os.Build;
-import android.os.PowerManager;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -27,11 +28,13 @@ import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 自动化引擎
@@ -46,20 +49,39 @@ public class AutomationEngine {
     private static final String TAG = "AutomationEngine";
     private static final String NOTIFICATION_CHANNEL_ID = "automation_notifications";
     
+    // 模板内容缓存键
+    private static final String CACHE_WEATHER = "weather";
+    private static final String CACHE_AI_NEWS = "ai_news";
+    private static final String CACHE_FINANCE_NEWS = "finance_news";
+    
     private final Context context;
     private final ConfigManager configManager;
     private final DashScopeService dashScopeService;
     private final NewsService newsService;
     private final AutomationLogger logger;
+    // 日志与统计的组提交写入器，执行路径只入队
+    private final AutomationEventWriter eventWriter;
+    private final UsageStatsService usageStats;
+    private final AutomationExecutor executor;
+    private final TemplateContentCache contentCache;
+    // 模板数据的预取与后台刷新（网络请求）使用独立线程，不占用规则执行队列
+    private final ExecutorService cacheExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TemplateContentCache");
+        thread.setDaemon(true);
+        return thread;
+    });
     private TextToSpeech textToSpeech;
     
-    private List<AutomationRule> activeRules;
-    private PowerManager.WakeLock wakeLock;
+    // 规则 ID -> 规则，保持配置中的顺序
+    private Map<String, AutomationRule> activeRules;
+    private final TriggerIndex triggerIndex = new TriggerIndex();
+    private final TimeTriggerScheduler timeScheduler;
     private boolean isRunning = false;
+    // 模板预取提前量（分钟）
+    private int prefetchLeadMinutes;
     
-    // 电量状态
-    private int currentBatteryLevel = -1;
-    private boolean isCharging = false;
+    // 设备状态快照（电量、充电、时间），供规则条件求值
+    private final DeviceState deviceState = new DeviceState();
     
     // 触发器广播接收器
     private BroadcastReceiver batteryReceiver;
@@ -71,8 +93,14 @@ public class AutomationEngine {
         this.configManager = configManager;
         this.dashScopeService = dashScopeService;
         this.newsService = new NewsService();
-        this.logger = new AutomationLogger(context);
-        this.activeRules = new ArrayList<>();
+        this.logger = new AutomationLogger(context, configManager.getAutomationLogCapacity(),
+            configManager.getAutomationLogRetentionDays());
+        this.usageStats = UsageStatsService.getInstance(this.context);
+        this.eventWriter = new AutomationEventWriter(logger, usageStats);
+        this.executor = new AutomationExecutor(this.context);
+        this.timeScheduler = new TimeTriggerScheduler(this.context, triggerIndex);
+        this.contentCache = new TemplateContentCache(cacheExecutor);
+        this.activeRules = new LinkedHashMap<>();
         
         initTTS();
         createNotificationChannel();
@@ -123,8 +151,10 @@ public class AutomationEngine {
         // 注册广播接收器
         registerReceivers();
         
-        // 调度时间触发器
-        scheduleTimeTriggers();
+        // 调度时间触发器（单个闹钟）
+        timeScheduler.cancelLegacyAlarms(new ArrayList<>(activeRules.keySet()));
+        updatePrefetchLead();
+        timeScheduler.start(System.currentTimeMillis());
     }
     
     /**
@@ -139,52 +169,115 @@ public class AutomationEngine {
         // 注销广播接收器
         unregisterReceivers();
         
-        // 取消所有调度的闹钟
-        cancelAllAlarms();
+        // 取消调度的闹钟
+        timeScheduler.cancel();
         
         // 清空规则
         activeRules.clear();
+        triggerIndex.clear();
+        
+        // 电量重置为未知：重新 start 后粘性广播即使电量未变也会分发给新装入的规则
+        deviceState.batteryLevel = -1;
+    }
+    
+    /**
+     * 停止引擎并关闭执行线程池（持有引擎的服务或页面销毁时调用，之后不能再 start）
+     * 已排队的动作会继续执行完毕；日志与统计队列在返回前提交完毕并刷到磁盘
+     */
+    public void shutdown() {
+        stop();
+        executor.shutdown();
+        cacheExecutor.shutdown();
+        eventWriter.close();
+        logger.flush();
     }
     
     // ============== 规则管理 ==============
     
     /**
-     * 从配置加载规则
+     * 从配置加载规则，与当前规则按指纹比对：
+     * 未变化的规则保留原对象（索引槽位、电量触发状态不变），
+     * 只解析和索引新增/变化的规则，并从索引中删除已移除/变化的旧规则
      */
     private void loadRules() {
-        activeRules.clear();
+        long startNanos = System.nanoTime();
+        Map<String, AutomationRule> next = new LinkedHashMap<>();
+        int added = 0;
+        int changed = 0;
+        int unchanged = 0;
         
         JSONArray rules = configManager.getAutomationRules();
         if (rules == null) {
             Log.d(TAG, "没有自动化规则");
-            return;
         }
         
-        for (int i = 0; i < rules.length(); i++) {
+        for (int i = 0; rules != null && i < rules.length(); i++) {
             try {
                 JSONObject ruleJson = rules.getJSONObject(i);
-                if (ruleJson.optBoolean("enabled", true)) {
-                    AutomationRule rule = AutomationRule.fromJson(ruleJson);
-                    if (rule != null) {
-                        activeRules.add(rule);
-                        Log.d(TAG, "加载规则：" + rule.name);
-                    }
+                if (!ruleJson.optBoolean("enabled", true)) continue;
+                
+                String id = ruleJson.optString("id", null);
+                if (id != null && next.containsKey(id)) {
+                    Log.w(TAG, "规则 ID 重复，忽略：" + id);
+                    continue;
+                }
+                
+                long fingerprint = AutomationRule.fingerprint(ruleJson.toString());
+                AutomationRule old = id != null ? activeRules.get(id) : null;
+                if (old != null && old.fingerprint == fingerprint) {
+                    next.put(id, old);
+                    unchanged++;
+                    continue;
+                }
+                
+                AutomationRule rule = AutomationRule.fromJson(ruleJson);
+                if (rule != null) {
+                    rule.fingerprint = fingerprint;
+                    next.put(rule.id, rule);
+                    triggerIndex.add(rule);
+                    if (old != null) changed++; else added++;
+                    Log.d(TAG, "加载规则：" + rule.name);
                 }
             } catch (JSONException e) {
                 Log.e(TAG, "解析规则失败", e);
             }
         }
         
-        Log.d(TAG, "共加载 " + activeRules.size() + " 条规则");
+        // 删除已移除或已被新版本替换的旧规则
+        int removed = 0;
+        for (AutomationRule old : activeRules.values()) {
+            AutomationRule current = next.get(old.id);
+            if (current != old) {
+                triggerIndex.remove(old);
+                if (current == null) removed++;
+            }
+        }
+        activeRules = next;
+        
+        Log.d(TAG, "共加载 " + activeRules.size() + " 条规则（新增 " + added + "，变更 " + changed
+            + "，删除 " + removed + "，未变 " + unchanged + "），耗时 "
+            + (System.nanoTime() - startNanos) / 1000 + "us");
     }
     
     /**
      * 重新加载规则（配置变更时调用）
+     * 运行中只做增量更新，不重新注册广播接收器；
+     * 时间闹钟仅在下一次触发时刻变化时才重新设置
      */
     public void reloadRules() {
         Log.d(TAG, "重新加载规则");
-        stop();
-        start();
+        if (!isRunning) {
+            start();
+            return;
+        }
+        loadRules();
+        updatePrefetchLead();
+        timeScheduler.reschedule(System.currentTimeMillis());
+    }
+    
+    private void updatePrefetchLead() {
+        prefetchLeadMinutes = configManager.getTemplatePrefetchLeadMinutes();
+        timeScheduler.setPrefetch(prefetchLeadMinutes, prefetchSink);
     }
     
     // ============== 广播接收器 ==============
@@ -225,15 +318,25 @@ public class AutomationEngine {
         powerFilter.addAction(Intent.ACTION_POWER_DISCONNECTED);
         context.registerReceiver(powerReceiver, powerFilter);
         
-        // 时间触发器（每分钟检查）
+        // 时间触发器（调度器的单个闹钟到达时触发）
         timeReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
+                String action = intent.getAction();
+                if (Intent.ACTION_TIMEZONE_CHANGED.equals(action) ||
+                    Intent.ACTION_TIME_CHANGED.equals(action)) {
+                    TimeFormatter.refreshTimeZone();
+                    usageStats.onTimeZoneChanged();
+                    timeScheduler.onClockChanged(System.currentTimeMillis());
+                    return;
+                }
                 onTimeTick();
             }
         };
-        IntentFilter timeFilter = new IntentFilter("com.openclaw.TIME_TICK");
-        context.registerReceiver(timeReceiver, timeFilter);
+        IntentFilter timeFilter = new IntentFilter(TimeTriggerScheduler.ACTION_TIME_TICK);
+        timeFilter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        timeFilter.addAction(Intent.ACTION_TIME_CHANGED);
+        ContextCompat.registerReceiver(context, timeReceiver, timeFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
     }
     
     private void unregisterReceivers() {
@@ -248,157 +351,141 @@ public class AutomationEngine {
     
     // ============== 触发器处理 ==============
     
+    // 正在分发的电量 / 电源广播的接收时间（广播均在主线程处理）
+    private long broadcastTime;
+    
+    // 命中回调（预先创建，避免每次事件分配）
+    private final TriggerIndex.RuleSink batterySink = rule -> {
+        Log.d(TAG, "触发规则：" + rule.name + " (电量)");
+        executeRule(rule, broadcastTime);
+    };
+    
+    private final TriggerIndex.RuleSink powerSink = rule -> {
+        Log.d(TAG, "触发规则：" + rule.name + " (电源)");
+        executeRule(rule, broadcastTime);
+    };
+    
+    private final TriggerIndex.RuleSink timeSink = this::onTimeTriggered;
+    
+    private final TriggerIndex.RuleSink prefetchSink = this::schedulePrefetch;
+    
+    // 时间触发从计划的分钟算起，触发延迟包含闹钟唤醒延迟
+    private void onTimeTriggered(AutomationRule rule) {
+        Log.d(TAG, "触发规则：" + rule.name + " (时间)");
+        executeRule(rule, timeScheduler.dispatchingMillis());
+    }
+    
     private void onBatteryChanged(int batteryLevel, boolean charging) {
-        Log.d(TAG, "电量变化：" + batteryLevel + "%, 充电：" + charging);
+        deviceState.charging = charging;
         
-        currentBatteryLevel = batteryLevel;
-        isCharging = charging;
+        // ACTION_BATTERY_CHANGED 在温度/电压变化时也会广播，电量未变则无需分发
+        if (batteryLevel < 0 || batteryLevel == deviceState.batteryLevel) return;
         
-        for (AutomationRule rule : activeRules) {
-            if (rule.checkBatteryTrigger(batteryLevel, charging)) {
-                Log.d(TAG, "触发规则：" + rule.name + " (电量)");
-                executeRule(rule);
-            }
-        }
+        Log.d(TAG, "电量变化：" + batteryLevel + "%, 充电：" + charging);
+        deviceState.batteryLevel = batteryLevel;
+        broadcastTime = System.currentTimeMillis();
+        deviceState.minuteOfWeek = timeScheduler.minuteOfWeek(broadcastTime);
+        
+        triggerIndex.dispatchBattery(batteryLevel, deviceState, batterySink);
     }
     
     private void onPowerStateChanged(boolean plugged) {
         Log.d(TAG, "电源状态变化：" + (plugged ? "已连接" : "已断开"));
         
-        isCharging = plugged;
+        deviceState.charging = plugged;
+        broadcastTime = System.currentTimeMillis();
+        deviceState.minuteOfWeek = timeScheduler.minuteOfWeek(broadcastTime);
         
-        for (AutomationRule rule : activeRules) {
-            if (rule.checkPowerTrigger(plugged)) {
-                Log.d(TAG, "触发规则：" + rule.name + " (电源)");
-                executeRule(rule);
-            }
-        }
+        triggerIndex.dispatchPower(plugged, powerSink);
     }
     
+    /**
+     * 闹钟到达：批量分发到期的时间触发器并设置下一次闹钟
+     * 分发过程不分配对象、不做字符串处理
+     */
     private void onTimeTick() {
-        Calendar now = Calendar.getInstance();
-        int hour = now.get(Calendar.HOUR_OF_DAY);
-        int minute = now.get(Calendar.MINUTE);
-        int dayOfWeek = now.get(Calendar.DAY_OF_WEEK) - 1; // 0=周日
-        
-        String currentTime = String.format(Locale.getDefault(), "%02d:%02d", hour, minute);
-        
-        for (AutomationRule rule : activeRules) {
-            if (rule.checkTimeTrigger(currentTime, dayOfWeek)) {
-                Log.d(TAG, "触发规则：" + rule.name + " (时间：" + currentTime + ")");
-                executeRule(rule);
-            }
-        }
+        long now = System.currentTimeMillis();
+        deviceState.minuteOfWeek = timeScheduler.minuteOfWeek(now);
+        timeScheduler.onAlarm(now, timeSink);
     }
     
-    // ============== 闹钟调度 ==============
-    
-    private void scheduleTimeTriggers() {
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager == null) return;
-        
-        for (AutomationRule rule : activeRules) {
-            for (Trigger trigger : rule.triggers) {
-                if ("time".equals(trigger.type)) {
-                    scheduleAlarm(alarmManager, rule.id, trigger.time);
-                }
-            }
-        }
-    }
+    // ============== 动作执行 ==============
     
-    private void scheduleAlarm(AlarmManager alarmManager, String ruleId, String time) {
-        try {
-            String[] parts = time.split(":");
-            int hour = Integer.parseInt(parts[0]);
-            int minute = Integer.parseInt(parts[1]);
-            
-            Calendar calendar = Calendar.getInstance();
-            calendar.set(Calendar.HOUR_OF_DAY, hour);
-            calendar.set(Calendar.MINUTE, minute);
-            calendar.set(Calendar.SECOND, 0);
-            
-            // 如果时间已过，设置为明天
-            if (calendar.getTimeInMillis() <= System.currentTimeMillis()) {
-                calendar.add(Calendar.DAY_OF_YEAR, 1);
-            }
-            
-            Intent intent = new Intent("com.openclaw.TIME_TICK");
-            intent.putExtra("rule_id", ruleId);
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context, ruleId.hashCode(), intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-            
-            // 每天重复
-            alarmManager.setRepeating(
-                AlarmManager.RTC_WAKEUP,
-                calendar.getTimeInMillis(),
-                AlarmManager.INTERVAL_DAY,
-                pendingIntent
-            );
-            
-            Log.d(TAG, "调度闹钟：" + ruleId + " " + time);
-            
-        } catch (Exception e) {
-            Log.e(TAG, "调度闹钟失败", e);
+    /**
+     * 提交规则到执行管线（在广播接收器线程调用，不做耗时操作）
+     * WakeLock 由执行管线在队列非空期间持有
+     * @param triggeredAt 触发时刻，用于统计触发到开始执行的延迟
+     */
+    private void executeRule(AutomationRule rule, long triggeredAt) {
+        // 条件在触发时按当前设备状态求值，不满足则不执行
+        if (!rule.matchesCondition(deviceState)) {
+            Log.d(TAG, "条件不满足，跳过规则：" + rule.name);
+            return;
         }
-    }
-    
-    private void cancelAllAlarms() {
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager == null) return;
-        
-        for (AutomationRule rule : activeRules) {
-            Intent intent = new Intent("com.openclaw.TIME_TICK");
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context, rule.id.hashCode(), intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-            alarmManager.cancel(pendingIntent);
+        if (!executor.submit(rule.id, () -> runRule(rule, triggeredAt))) {
+            Log.w(TAG, "执行队列已满，丢弃规则：" + rule.name + " (" + executor.getStatsSummary() + ")");
+            eventWriter.logFailure(rule.id, "rule", "执行队列已满");
+            AutomationMetrics.rule(rule).duration.recordFailure(System.currentTimeMillis());
         }
     }
     
-    // ============== 动作执行 ==============
-    
-    private void executeRule(AutomationRule rule) {
+    /**
+     * 在执行线程中运行规则动作
+     */
+    private void runRule(AutomationRule rule, long triggeredAt) {
         Log.d(TAG, "执行规则：" + rule.name);
+        AutomationMetrics.RuleMetrics metrics = AutomationMetrics.rule(rule);
+        long startedAt = System.currentTimeMillis();
+        metrics.delay.record(startedAt - triggeredAt, false, startedAt);
+        long start = SystemClock.elapsedRealtime();
         
-        // 记录触发日志
-        logger.logTrigger(rule.id, rule.name, "auto");
-        
-        // 获取 WakeLock 防止休眠
-        acquireWakeLock();
+        // 记录触发日志与统计（入队，由写入线程批量提交）
+        eventWriter.logTrigger(rule.id, rule.name, "auto");
         
-        for (Action action : rule.actions) {
-            executeAction(action, rule.id);
+        boolean failed = false;
+        for (AutomationRule.Action action : rule.actions) {
+            failed |= !executeAction(action, rule.id);
         }
-        
-        releaseWakeLock();
+        metrics.duration.record(SystemClock.elapsedRealtime() - start, failed, System.currentTimeMillis());
     }
     
-    private void executeAction(Action action, String ruleId) {
+    /**
+     * @return 动作是否成功
+     */
+    private boolean executeAction(AutomationRule.Action action, String ruleId) {
         Log.d(TAG, "执行动作：" + action.type);
         
         // 记录动作日志
-        logger.logAction(ruleId, action.type, action.title != null ? action.title : "");
-        
-        switch (action.type) {
-            case "speak":
-                executeSpeak(action);
-                break;
-            case "notify":
-                executeNotify(action, ruleId);
-                break;
-            case "launch":
-                executeLaunch(action);
-                break;
+        eventWriter.logAction(ruleId, action.type, action.title != null ? action.title : "");
+        
+        long start = SystemClock.elapsedRealtime();
+        boolean failed = false;
+        try {
+            switch (action.type) {
+                case "speak":
+                    executeSpeak(action);
+                    break;
+                case "notify":
+                    executeNotify(action, ruleId);
+                    break;
+                case "launch":
+                    executeLaunch(action);
+                    break;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "动作执行失败：" + action.type, e);
+            eventWriter.logFailure(ruleId, action.type, String.valueOf(e.getMessage()));
+            failed = true;
         }
+        AutomationMetrics.action(action.type).record(
+            SystemClock.elapsedRealtime() - start, failed, System.currentTimeMillis());
+        return !failed;
     }
     
-    private void executeSpeak(Action action) {
+    private void executeSpeak(AutomationRule.Action action) {
         String text = action.text;
         
-        // 如果是模板，生成内容
+        // 如果是模板，生成内容（输入数据来自缓存，通常已在触发前预取）
         if (action.template != null) {
             text = generateTemplateContent(action.template);
         }
@@ -409,7 +496,7 @@ public class AutomationEngine {
         }
     }
     
-    private void executeNotify(Action action, String ruleId) {
+    private void executeNotify(AutomationRule.Action action, String ruleId) {
         NotificationManager manager = (NotificationManager) 
             context.getSystemService(Context.NOTIFICATION_SERVICE);
         if (manager == null) return;
@@ -439,17 +526,39 @@ public class AutomationEngine {
         Log.d(TAG, "发送通知：" + title);
     }
     
-    private void executeLaunch(Action action) {
-        try {
-            Intent intent = context.getPackageManager().getLaunchIntentForPackage(action.packageName);
-            if (intent != null) {
-                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                context.startActivity(intent);
-                Log.d(TAG, "启动应用：" + action.packageName);
+    private void executeLaunch(AutomationRule.Action action) {
+        Intent intent = context.getPackageManager().getLaunchIntentForPackage(action.packageName);
+        if (intent == null) {
+            throw new IllegalStateException("未找到应用：" + action.packageName);
+        }
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        context.startActivity(intent);
+        Log.d(TAG, "启动应用：" + action.packageName);
+    }
+    
+    private void schedulePrefetch(AutomationRule rule) {
+        prefetchTemplates(rule, System.currentTimeMillis() + prefetchLeadMinutes * 60_000L);
+    }
+    
+    /**
+     * 预取规则中模板所需的数据，保证在 neededAt 时缓存仍新鲜
+     * 只提交到缓存的刷新线程，不阻塞调用方
+     */
+    private void prefetchTemplates(AutomationRule rule, long neededAt) {
+        for (AutomationRule.Action action : rule.actions) {
+            if (action.template == null) continue;
+            switch (action.template) {
+                case "news_brief":
+                    contentCache.prefetch(CACHE_AI_NEWS, this::fetchAINews, neededAt);
+                    contentCache.prefetch(CACHE_FINANCE_NEWS, this::fetchFinanceNews, neededAt);
+                    // fall through：资讯播报同样需要天气
+                case "weather_commute":
+                case "tomorrow_weather":
+                    contentCache.prefetch(CACHE_WEATHER, this::fetchWeather, neededAt);
+                    break;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "启动应用失败", e);
         }
+        Log.d(TAG, "预取模板内容：" + rule.name + " (" + contentCache.getStatsSummary() + ")");
     }
     
     private String generateTemplateContent(String template) {
@@ -470,13 +579,15 @@ public class AutomationEngine {
      */
     private String getNewsBrief() {
         try {
-            JSONObject weather = fetchWeather();
+            JSONObject weather = contentCache.get(CACHE_WEATHER, this::fetchWeather);
             String weatherText = weather != null ? 
                 weather.optString("weather", "晴") + "，温度" + weather.optInt("temp", 20) + "度" : 
                 "天气信息获取失败";
             
-            String aiNews = newsService.getAINewsBrief();
-            String financeNews = newsService.getFinanceNewsBrief();
+            String aiNews = NewsService.formatBrief(
+                contentCache.get(CACHE_AI_NEWS, this::fetchAINews), "AI 资讯获取中...");
+            String financeNews = NewsService.formatBrief(
+                contentCache.get(CACHE_FINANCE_NEWS, this::fetchFinanceNews), "财经资讯获取中...");
             
             return String.format("早上好！北京今天%s。AI 动态：%s。财经：%s。", 
                 weatherText, aiNews, financeNews);
@@ -492,7 +603,7 @@ public class AutomationEngine {
      */
     private String getWeatherAndCommute() {
         try {
-            JSONObject weather = fetchWeather();
+            JSONObject weather = contentCache.get(CACHE_WEATHER, this::fetchWeather);
             if (weather == null) {
                 return "早上好！天气信息获取失败，请注意查看实时天气。";
             }
@@ -514,7 +625,7 @@ public class AutomationEngine {
      */
     private String getTomorrowWeather() {
         try {
-            JSONObject weather = fetchWeather();
+            JSONObject weather = contentCache.get(CACHE_WEATHER, this::fetchWeather);
             if (weather == null) {
                 return "明天天气信息获取失败，建议查看天气预报。";
             }
@@ -530,6 +641,22 @@ public class AutomationEngine {
         }
     }
     
+    /**
+     * 获取简要 AI 资讯，没有结果时返回 null（不写入缓存）
+     */
+    private List<NewsService.NewsItem> fetchAINews() {
+        List<NewsService.NewsItem> news = newsService.getAINews(2);
+        return news.isEmpty() ? null : news;
+    }
+    
+    /**
+     * 获取简要财经资讯，没有结果时返回 null（不写入缓存）
+     */
+    private List<NewsService.NewsItem> fetchFinanceNews() {
+        List<NewsService.NewsItem> news = newsService.getFinanceNews(2);
+        return news.isEmpty() ? null : news;
+    }
+    
     /**
      * 从 wttr.in 获取天气
      */
@@ -608,180 +735,4 @@ public class AutomationEngine {
         
         return advice.toString();
     }
-    
-    // ============== WakeLock ==============
-    
-    private void acquireWakeLock() {
-        if (wakeLock == null) {
-            PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "openclaw:automation");
-        }
-        if (!wakeLock.isHeld()) {
-            wakeLock.acquire(10 * 60 * 1000L); // 最多 10 分钟
-        }
-    }
-    
-    private void releaseWakeLock() {
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
-        }
-    }
-    
-    // ============== 内部类 ==============
-    
-    /**
-     * 自动化规则
-     */
-    static class AutomationRule {
-        String id;
-        String name;
-        boolean enabled;
-        List<Trigger> triggers;
-        List<Action> actions;
-        
-        static AutomationRule fromJson(JSONObject json) {
-            try {
-                AutomationRule rule = new AutomationRule();
-                rule.id = json.getString("id");
-                rule.name = json.getString("name");
-                rule.enabled = json.optBoolean("enabled", true);
-                
-                rule.triggers = new ArrayList<>();
-                JSONArray triggersJson = json.getJSONArray("triggers");
-                for (int i = 0; i < triggersJson.length(); i++) {
-                    Trigger trigger = Trigger.fromJson(triggersJson.getJSONObject(i));
-                    if (trigger != null) rule.triggers.add(trigger);
-                }
-                
-                rule.actions = new ArrayList<>();
-                JSONArray actionsJson = json.getJSONArray("actions");
-                for (int i = 0; i < actionsJson.length(); i++) {
-                    Action action = Action.fromJson(actionsJson.getJSONObject(i));
-                    if (action != null) rule.actions.add(action);
-                }
-                
-                return rule;
-                
-            } catch (JSONException e) {
-                Log.e(TAG, "解析规则失败", e);
-                return null;
-            }
-        }
-        
-        boolean checkTimeTrigger(String currentTime, int dayOfWeek) {
-            for (Trigger trigger : triggers) {
-                if ("time".equals(trigger.type) && currentTime.equals(trigger.time)) {
-                    // 检查星期（如果指定了）
-                    if (trigger.days != null && !trigger.days.contains(dayOfWeek)) {
-                        continue;
-                    }
-                    return true;
-                }
-            }
-            return false;
-        }
-        
-        boolean checkBatteryTrigger(int batteryLevel, boolean charging) {
-            for (Trigger trigger : triggers) {
-                if ("battery".equals(trigger.type)) {
-                    if (batteryLevel <= trigger.levelBelow) {
-                        return true;
-                    }
-                }
-            }
-            return false;
-        }
-        
-        boolean checkPowerTrigger(boolean plugged) {
-            for (Trigger trigger : triggers) {
-                if ("power".equals(trigger.type)) {
-                    if ("plugged".equals(trigger.state) && plugged) return true;
-                    if ("unplugged".equals(trigger.state) && !plugged) return true;
-                }
-            }
-            return false;
-        }
-    }
-    
-    /**
-     * 触发器
-     */
-    static class Trigger {
-        String type;
-        String time;
-        List<Integer> days;
-        int levelBelow;
-        String state;
-        
-        static Trigger fromJson(JSONObject json) {
-            try {
-                Trigger trigger = new Trigger();
-                trigger.type = json.getString("type");
-                
-                switch (trigger.type) {
-                    case "time":
-                        trigger.time = json.getString("time");
-                        if (json.has("days")) {
-                            trigger.days = new ArrayList<>();
-                            JSONArray daysJson = json.getJSONArray("days");
-                            for (int i = 0; i < daysJson.length(); i++) {
-                                trigger.days.add(daysJson.getInt(i));
-                            }
-                        }
-                        break;
-                    case "battery":
-                        trigger.levelBelow = json.getInt("level_below");
-                        break;
-                    case "power":
-                        trigger.state = json.getString("state");
-                        break;
-                }
-                
-                return trigger;
-                
-            } catch (JSONException e) {
-                Log.e(TAG, "解析触发器失败", e);
-                return null;
-            }
-        }
-    }
-    
-    /**
-     * 动作
-     */
-    static class Action {
-        String type;
-        String text;
-        String template;
-        String title;
-        String message;
-        String packageName;
-        
-        static Action fromJson(JSONObject json) {
-            try {
-                Action action = new Action();
-                action.type = json.getString("type");
-                
-                switch (action.type) {
-                    case "speak":
-                        action.text = json.optString("text");
-                        action.template = json.optString("template");
-                        break;
-                    case "notify":
-                        action.title = json.getString("title");
-                        action.message = json.optString("message");
-                        break;
-                    case "launch":
-                        action.packageName = json.getString("package");
-                        break;
-                }
-                
-                return action;
-                
-            } catch (JSONException e) {
-                Log.e(TAG, "解析动作失败", e);
-                return null;
-            }
-        }
-    }
 }
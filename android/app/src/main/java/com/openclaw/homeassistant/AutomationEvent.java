@@ -0,0 +1,60 @@
+package com.openclaw.homeassistant;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 自动化历史事件（Room 表 automation_events）
+ * 由 AutomationLogger 从环形日志批量同步而来，sequence 即环形日志中的序号。
+ * 原始事件按 automation.log_retention_days 过期，长期统计见 AutomationRollup。
+ * 索引：
+ *   sequence 唯一    —— 增量同步游标，重复同步被忽略；最新优先的排序
+ *   ruleId + timestamp —— 按规则的计数与时间范围查询
+ *   timestamp        —— 按时间范围查询与过期清理
+ */
+@Entity(tableName = "automation_events",
+    indices = {
+        @Index(value = "sequence", unique = true),
+        @Index(value = {"ruleId", "timestamp"}),
+        @Index(value = "timestamp")
+    })
+public class AutomationEvent {
+    
+    public static final int KIND_TRIGGER = LogRingBuffer.KIND_TRIGGER;
+    public static final int KIND_ACTION = LogRingBuffer.KIND_ACTION;
+    public static final int KIND_FAILURE = LogRingBuffer.KIND_FAILURE;
+    
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+    
+    public long sequence;
+    public long timestamp;
+    public int kind;
+    public String ruleId;
+    // 仅触发记录有规则名
+    public String ruleName;
+    // 触发类型 / 动作类型
+    public String type;
+    public String details;
+    
+    /**
+     * 转换为界面使用的日志条目
+     */
+    public AutomationLogger.LogEntry toLogEntry() {
+        AutomationLogger.LogEntry entry = new AutomationLogger.LogEntry();
+        entry.sequence = sequence;
+        entry.timestamp = timestamp;
+        entry.ruleId = ruleId;
+        if (kind == KIND_TRIGGER) {
+            entry.ruleName = ruleName;
+            entry.triggerType = type;
+            entry.action = details;
+        } else {
+            entry.actionType = type;
+            entry.details = details;
+            entry.failed = kind == KIND_FAILURE;
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,231 @@
+package com.openclaw.homeassistant;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * 自动化历史查询
+ * 所有方法会访问数据库，需在后台线程调用
+ */
+@Dao
+public abstract class AutomationEventDao {
+    
+    private static final String TRIGGER = "kind = " + AutomationEvent.KIND_TRIGGER;
+    
+    // ============== 写入 ==============
+    
+    /**
+     * 批量写入事件，并在同一事务中累加规则触发次数和小时 / 天汇总
+     * 已同步过的序号被唯一索引忽略，不会重复计数
+     * @param zone 汇总时间段所用的本地时区
+     */
+    @Transaction
+    public void insertAll(List<AutomationEvent> events, TimeZone zone) {
+        long[] rowIds = insertEvents(events);
+        
+        Map<String, Integer> deltas = new HashMap<>();
+        Map<String, AutomationRollup> rollups = new HashMap<>();
+        for (int i = 0; i < rowIds.length; i++) {
+            AutomationEvent event = events.get(i);
+            if (rowIds[i] == -1 || event.ruleId == null) {
+                continue;
+            }
+            if (event.kind == AutomationEvent.KIND_TRIGGER) {
+                Integer delta = deltas.get(event.ruleId);
+                deltas.put(event.ruleId, delta == null ? 1 : delta + 1);
+            }
+            rollup(rollups, event, zone);
+        }
+        
+        for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+            ensureRuleCount(entry.getKey());
+            addTriggerCount(entry.getKey(), entry.getValue());
+        }
+        for (AutomationRollup r : rollups.values()) {
+            ensureRollup(r.granularity, r.bucketStart, r.ruleId);
+            addRollup(r.granularity, r.bucketStart, r.ruleId, r.triggerCount, r.actionCount,
+                r.failureCount, r.speakCount, r.notifyCount, r.launchCount);
+        }
+    }
+    
+    /**
+     * 把一个事件累加到所在小时和所在天的汇总中（键为 粒度:时间段:规则）
+     * 写入与数据库迁移共用，保证两者的分段方式一致
+     */
+    static void rollup(Map<String, AutomationRollup> rollups, AutomationEvent event, TimeZone zone) {
+        rollup(rollups, AutomationRollup.GRANULARITY_HOUR,
+            AutomationRollup.hourStart(event.timestamp, zone), event);
+        rollup(rollups, AutomationRollup.GRANULARITY_DAY,
+            AutomationRollup.dayStart(event.timestamp, zone), event);
+    }
+    
+    private static void rollup(Map<String, AutomationRollup> rollups, int granularity,
+                               long bucketStart, AutomationEvent event) {
+        String key = granularity + ":" + bucketStart + ":" + event.ruleId;
+        AutomationRollup rollup = rollups.get(key);
+        if (rollup == null) {
+            rollup = new AutomationRollup();
+            rollup.granularity = granularity;
+            rollup.bucketStart = bucketStart;
+            rollup.ruleId = event.ruleId;
+            rollups.put(key, rollup);
+        }
+        rollup.add(event);
+    }
+    
+    /**
+     * 删除早于 cutoff 的事件（时间保留策略）
+     * @return 删除的条数
+     */
+    @Transaction
+    public int deleteBefore(long cutoffMillis) {
+        int deleted = deleteEventsBefore(cutoffMillis);
+        if (deleted > 0) {
+            rebuildRuleCounts();
+        }
+        return deleted;
+    }
+    
+    /**
+     * 删除序号小于 sequence 的事件（清空日志）
+     * @return 删除的条数
+     */
+    @Transaction
+    public int deleteBeforeSequence(long sequence) {
+        int deleted = deleteEventsBeforeSequence(sequence);
+        if (deleted > 0) {
+            rebuildRuleCounts();
+        }
+        return deleted;
+    }
+    
+    // ============== 查询 ==============
+    
+    /** 已同步的最大序号，没有记录时为 -1 */
+    @Query("SELECT COALESCE(MAX(sequence), -1) FROM automation_events")
+    public abstract long getMaxSequence();
+    
+    @Query("SELECT COUNT(*) FROM automation_events")
+    public abstract int count();
+    
+    /** 规则累计触发次数（主键查询） */
+    @Query("SELECT COALESCE((SELECT triggerCount FROM automation_rule_counts WHERE ruleId = :ruleId), 0)")
+    public abstract int getTriggerCount(String ruleId);
+    
+    /** 规则在 [fromMillis, toMillis) 内的触发次数（ruleId + timestamp 索引范围） */
+    @Query("SELECT COUNT(*) FROM automation_events WHERE ruleId = :ruleId"
+        + " AND timestamp >= :fromMillis AND timestamp < :toMillis AND " + TRIGGER)
+    public abstract int countTriggers(String ruleId, long fromMillis, long toMillis);
+    
+    /**
+     * 按序号键集分页（从新到旧）：序号小于 beforeSequence 的 limit 条
+     * 第一页传 Long.MAX_VALUE，之后传上一页最后一条的序号；走 sequence 唯一索引，与翻页深度无关
+     */
+    @Query("SELECT * FROM automation_events WHERE sequence < :beforeSequence ORDER BY sequence DESC LIMIT :limit")
+    public abstract List<AutomationEvent> getPage(long beforeSequence, int limit);
+    
+    /** [fromMillis, toMillis) 内的事件（从新到旧） */
+    @Query("SELECT * FROM automation_events WHERE timestamp >= :fromMillis AND timestamp < :toMillis"
+        + " ORDER BY timestamp DESC LIMIT :limit")
+    public abstract List<AutomationEvent> getRange(long fromMillis, long toMillis, int limit);
+    
+    /** 某条规则在 [fromMillis, toMillis) 内的事件（从新到旧） */
+    @Query("SELECT * FROM automation_events WHERE ruleId = :ruleId"
+        + " AND timestamp >= :fromMillis AND timestamp < :toMillis ORDER BY timestamp DESC LIMIT :limit")
+    public abstract List<AutomationEvent> getRuleRange(String ruleId, long fromMillis, long toMillis, int limit);
+    
+    /**
+     * 导出用的键集分页（从旧到新）：[fromMillis, toMillis) 内位于 (afterTimestamp, afterId) 之后的 limit 条
+     * 第一页传 afterTimestamp = fromMillis、afterId = -1，之后传上一页最后一条的 timestamp / id；
+     * timestamp 索引隐含 rowid，按 (timestamp, id) 排序不需要额外排序
+     */
+    @Query("SELECT * FROM automation_events WHERE timestamp >= :afterTimestamp"
+        + " AND (timestamp > :afterTimestamp OR id > :afterId) AND timestamp < :toMillis"
+        + " ORDER BY timestamp, id LIMIT :limit")
+    public abstract List<AutomationEvent> getExportPage(long afterTimestamp, long afterId, long toMillis, int limit);
+    
+    /** 某条规则的导出分页（ruleId + timestamp 索引），参数同 getExportPage */
+    @Query("SELECT * FROM automation_events WHERE ruleId = :ruleId AND timestamp >= :afterTimestamp"
+        + " AND (timestamp > :afterTimestamp OR id > :afterId) AND timestamp < :toMillis"
+        + " ORDER BY timestamp, id LIMIT :limit")
+    public abstract List<AutomationEvent> getRuleExportPage(String ruleId, long afterTimestamp, long afterId,
+                                                            long toMillis, int limit);
+    
+    /**
+     * 某条规则在 [fromMillis, toMillis) 内的汇总（按时间段升序）
+     */
+    @Query("SELECT * FROM automation_rollups WHERE ruleId = :ruleId AND granularity = :granularity"
+        + " AND bucketStart >= :fromMillis AND bucketStart < :toMillis ORDER BY bucketStart")
+    public abstract List<AutomationRollup> getRollups(String ruleId, int granularity, long fromMillis, long toMillis);
+    
+    /**
+     * 所有规则在 [fromMillis, toMillis) 内按时间段合计的汇总（ruleId 为空字符串）
+     */
+    @Query("SELECT granularity, bucketStart, '' AS ruleId,"
+        + " SUM(triggerCount) AS triggerCount, SUM(actionCount) AS actionCount,"
+        + " SUM(failureCount) AS failureCount, SUM(speakCount) AS speakCount,"
+        + " SUM(notifyCount) AS notifyCount, SUM(launchCount) AS launchCount"
+        + " FROM automation_rollups WHERE granularity = :granularity"
+        + " AND bucketStart >= :fromMillis AND bucketStart < :toMillis"
+        + " GROUP BY bucketStart ORDER BY bucketStart")
+    public abstract List<AutomationRollup> getRollupTotals(int granularity, long fromMillis, long toMillis);
+    
+    /**
+     * 删除早于 cutoff 的某一粒度汇总
+     * @return 删除的行数
+     */
+    @Query("DELETE FROM automation_rollups WHERE granularity = :granularity AND bucketStart < :cutoffMillis")
+    public abstract int deleteRollupsBefore(int granularity, long cutoffMillis);
+    
+    // ============== 内部语句 ==============
+    
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract long[] insertEvents(List<AutomationEvent> events);
+    
+    @Query("INSERT OR IGNORE INTO automation_rule_counts (ruleId, triggerCount) VALUES (:ruleId, 0)")
+    abstract void ensureRuleCount(String ruleId);
+    
+    @Query("UPDATE automation_rule_counts SET triggerCount = triggerCount + :delta WHERE ruleId = :ruleId")
+    abstract void addTriggerCount(String ruleId, int delta);
+    
+    @Query("INSERT OR IGNORE INTO automation_rollups (granularity, bucketStart, ruleId,"
+        + " triggerCount, actionCount, failureCount, speakCount, notifyCount, launchCount)"
+        + " VALUES (:granularity, :bucketStart, :ruleId, 0, 0, 0, 0, 0, 0)")
+    abstract void ensureRollup(int granularity, long bucketStart, String ruleId);
+    
+    @Query("UPDATE automation_rollups SET triggerCount = triggerCount + :triggers,"
+        + " actionCount = actionCount + :actions, failureCount = failureCount + :failures,"
+        + " speakCount = speakCount + :speaks, notifyCount = notifyCount + :notifies,"
+        + " launchCount = launchCount + :launches"
+        + " WHERE granularity = :granularity AND bucketStart = :bucketStart AND ruleId = :ruleId")
+    abstract void addRollup(int granularity, long bucketStart, String ruleId, int triggers, int actions,
+                            int failures, int speaks, int notifies, int launches);
+    
+    @Query("DELETE FROM automation_events WHERE timestamp < :cutoffMillis")
+    abstract int deleteEventsBefore(long cutoffMillis);
+    
+    @Query("DELETE FROM automation_events WHERE sequence < :sequence")
+    abstract int deleteEventsBeforeSequence(long sequence);
+    
+    @Query("DELETE FROM automation_rule_counts")
+    abstract void clearRuleCounts();
+    
+    @Query("INSERT INTO automation_rule_counts (ruleId, triggerCount)"
+        + " SELECT ruleId, COUNT(*) FROM automation_events WHERE ruleId IS NOT NULL AND " + TRIGGER
+        + " GROUP BY ruleId")
+    abstract void insertRuleCountsFromEvents();
+    
+    @Transaction
+    void rebuildRuleCounts() {
+        clearRuleCounts();
+        insertRuleCountsFromEvents();
+    }
+}
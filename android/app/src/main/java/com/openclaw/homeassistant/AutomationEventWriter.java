@@ -0,0 +1,240 @@
+package com.openclaw.homeassistant;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 自动化事件写入器（组提交）
+ * 规则执行路径只调用 logTrigger / logAction 入队（无锁、无 I/O），
+ * 后台线程在第一条事件到达后最多等待 FLUSH_INTERVAL_MS，或攒够 BATCH_SIZE 条时提前，一次性取出并提交：
+ *   日志 —— 逐条追加到环形日志，最后安排一次数据库同步（单个事务）
+ *   统计 —— 触发事件累加到 UsageStatsService 的内存计数器（由其定时写入存储）
+ * 队列为空时后台线程一直休眠，不做周期性唤醒。
+ *
+ * close() 在服务销毁时调用：后台线程写完队列中所有事件后退出；
+ * 之后仍在执行的动作（执行线程池会跑完已排队的规则）改为在调用线程直接写入。
+ */
+class AutomationEventWriter {
+    
+    private static final String TAG = "AutomationEventWriter";
+    
+    static final long FLUSH_INTERVAL_MS = 200;
+    static final int BATCH_SIZE = 64;
+    // 单次提交的上限，积压时分多次提交
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+    
+    /**
+     * 队列节点即事件本身
+     */
+    private static final class Event {
+        byte kind;
+        long timestamp;
+        String ruleId;
+        String ruleName;
+        String type;
+        String details;
+        volatile Event next;
+    }
+    
+    private final AutomationLogger logger;
+    private final UsageStatsService stats;
+    private final Thread thread;
+    
+    // 多生产者单消费者队列（侵入式链表）：生产者只做一次 getAndSet，消费者不需要 CAS
+    // head 是已消费的最后一个节点（哨兵），只由后台线程访问
+    private final AtomicReference<Event> tail;
+    private Event head;
+    // 已入队未提交的事件数（生产者在链接节点之后递增）
+    private final AtomicInteger pending = new AtomicInteger();
+    // 正在入队的生产者数，关闭时用于确认不会再有事件进入队列
+    private final AtomicInteger producers = new AtomicInteger();
+    private volatile boolean closed;
+    
+    // 统计缓冲（只由后台线程使用，按需扩容）
+    private String[] statRuleIds = new String[BATCH_SIZE];
+    private String[] statRuleNames = new String[BATCH_SIZE];
+    private long[] statTimestamps = new long[BATCH_SIZE];
+    
+    AutomationEventWriter(AutomationLogger logger, UsageStatsService stats) {
+        this.logger = logger;
+        this.stats = stats;
+        
+        Event stub = new Event();
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+        
+        this.thread = new Thread(this::run, "automation-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    /**
+     * 记录规则触发（日志 + 统计）
+     */
+    void logTrigger(String ruleId, String ruleName, String triggerType) {
+        enqueue(LogRingBuffer.KIND_TRIGGER, ruleId, ruleName, triggerType, "executed");
+    }
+    
+    /**
+     * 记录动作执行
+     */
+    void logAction(String ruleId, String actionType, String details) {
+        enqueue(LogRingBuffer.KIND_ACTION, ruleId, null, actionType, details);
+    }
+    
+    /**
+     * 记录动作或规则执行失败
+     * @param actionType 失败的动作类型；规则未能执行时为 "rule"
+     */
+    void logFailure(String ruleId, String actionType, String error) {
+        enqueue(LogRingBuffer.KIND_FAILURE, ruleId, null, actionType, error);
+    }
+    
+    /**
+     * 停止后台线程，等待队列中的事件全部提交，并把统计计数写入存储
+     * @return 是否在超时前完成
+     */
+    boolean close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean finished = !thread.isAlive();
+        if (!finished) {
+            Log.w(TAG, "写入线程未在 " + CLOSE_TIMEOUT_MS + "ms 内结束，剩余 " + pending.get() + " 条");
+        }
+        stats.flush();
+        return finished;
+    }
+    
+    // ============== 生产者 ==============
+    
+    private void enqueue(byte kind, String ruleId, String ruleName, String type, String details) {
+        Event event = new Event();
+        event.kind = kind;
+        event.timestamp = System.currentTimeMillis();
+        event.ruleId = ruleId;
+        event.ruleName = ruleName;
+        event.type = type;
+        event.details = details;
+        
+        producers.incrementAndGet();
+        if (!closed) {
+            Event prev = tail.getAndSet(event);
+            prev.next = event;
+            
+            // 第一条事件开始计时，攒够一批时提前唤醒
+            int count = pending.incrementAndGet();
+            producers.decrementAndGet();
+            if (count == 1 || count == BATCH_SIZE) {
+                LockSupport.unpark(thread);
+            }
+            return;
+        }
+        producers.decrementAndGet();
+        writeDirect(event);
+    }
+    
+    /**
+     * 关闭后在调用线程直接写入；先等后台线程写完队列，保证同一线程的事件顺序
+     */
+    private void writeDirect(Event event) {
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        logger.append(event.kind, event.timestamp, event.ruleId, event.ruleName, event.type, event.details);
+        logger.commit();
+        if (event.kind == LogRingBuffer.KIND_TRIGGER) {
+            stats.recordTriggers(new String[] { event.ruleId }, new String[] { event.ruleName },
+                new long[] { event.timestamp }, 1);
+            stats.flush();
+        }
+    }
+    
+    // ============== 消费者 ==============
+    
+    private void run() {
+        while (true) {
+            if (pending.get() == 0) {
+                if (closed) {
+                    // 先确认没有正在入队的生产者，再确认队列为空
+                    if (producers.get() == 0 && pending.get() == 0) break;
+                    Thread.yield();
+                } else {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+            
+            // 攒批：最多等待 FLUSH_INTERVAL_MS，攒够一批或关闭时提前提交（积压时不等待）
+            long deadline = System.nanoTime() + FLUSH_INTERVAL_NANOS;
+            long remaining;
+            while (!closed && pending.get() < BATCH_SIZE
+                && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            
+            try {
+                commitBatch();
+            } catch (Exception e) {
+                Log.e(TAG, "提交事件失败", e);
+            }
+        }
+        Log.d(TAG, "写入线程已结束");
+    }
+    
+    /**
+     * 取出当前可见的全部事件：日志逐条追加，统计合并后一次写入
+     */
+    private void commitBatch() {
+        int drained = 0;
+        int triggers = 0;
+        
+        Event node = head.next;
+        while (node != null && drained < MAX_BATCH_SIZE) {
+            logger.append(node.kind, node.timestamp, node.ruleId, node.ruleName, node.type, node.details);
+            
+            if (node.kind == LogRingBuffer.KIND_TRIGGER) {
+                if (triggers == statRuleIds.length) {
+                    statRuleIds = Arrays.copyOf(statRuleIds, triggers * 2);
+                    statRuleNames = Arrays.copyOf(statRuleNames, triggers * 2);
+                    statTimestamps = Arrays.copyOf(statTimestamps, triggers * 2);
+                }
+                statRuleIds[triggers] = node.ruleId;
+                statRuleNames[triggers] = node.ruleName;
+                statTimestamps[triggers] = node.timestamp;
+                triggers++;
+            }
+            
+            // 已消费的节点成为新的哨兵，释放其引用的字符串
+            Event consumed = head;
+            head = node;
+            consumed.next = null;
+            node.ruleId = node.ruleName = node.type = node.details = null;
+            node = node.next;
+            drained++;
+        }
+        if (drained == 0) return;
+        
+        logger.commit();
+        if (triggers > 0) {
+            stats.recordTriggers(statRuleIds, statRuleNames, statTimestamps, triggers);
+            Arrays.fill(statRuleIds, 0, triggers, null);
+            Arrays.fill(statRuleNames, 0, triggers, null);
+        }
+        pending.addAndGet(-drained);
+    }
+}
@@ -0,0 +1,290 @@
+package com.openclaw.homeassistant;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自动化动作执行管线
+ * 功能：
+ * 1. 固定大小的后台线程池，动作不在主线程（广播接收器）执行
+ * 2. 每条规则一个串行队列：同一规则按顺序执行，不同规则互不阻塞
+ * 3. 有界排队：总队列或单规则队列满时拒绝新任务（背压）
+ * 4. 队列非空期间持有 WakeLock，清空后立即释放
+ * 5. 队列深度/吞吐统计
+ */
+class AutomationExecutor {
+    
+    private static final String TAG = "AutomationExecutor";
+    
+    static final int DEFAULT_WORKERS = 2;
+    static final int DEFAULT_MAX_PENDING = 64;
+    static final int DEFAULT_MAX_PENDING_PER_RULE = 4;
+    
+    // WakeLock 兜底超时，防止任务卡死时一直持有
+    private static final long WAKELOCK_TIMEOUT_MS = 10 * 60 * 1000L;
+    
+    private final ThreadPoolExecutor workers;
+    private final PowerManager.WakeLock wakeLock;
+    private final int maxPending;
+    private final int maxPendingPerRule;
+    
+    // 以下字段均由 lock 保护
+    private final Object lock = new Object();
+    private final Map<String, RuleQueue> queues = new HashMap<>();
+    private int pending = 0;
+    private int maxDepth = 0;
+    private long submitted = 0;
+    private long completed = 0;
+    private long rejected = 0;
+    private long failed = 0;
+    
+    AutomationExecutor(Context context) {
+        this(context, DEFAULT_WORKERS, DEFAULT_MAX_PENDING, DEFAULT_MAX_PENDING_PER_RULE);
+    }
+    
+    AutomationExecutor(Context context, int workerCount, int maxPending, int maxPendingPerRule) {
+        this.maxPending = maxPending;
+        this.maxPendingPerRule = maxPendingPerRule;
+        
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "openclaw:automation");
+            wakeLock.setReferenceCounted(false);
+        } else {
+            wakeLock = null;
+        }
+        
+        workers = new ThreadPoolExecutor(
+            workerCount, workerCount,
+            30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new WorkerThreadFactory()
+        );
+        workers.allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * 提交规则任务
+     * @return false 表示队列已满被拒绝
+     */
+    boolean submit(String ruleId, Runnable task) {
+        RuleQueue queue;
+        boolean schedule;
+        
+        synchronized (lock) {
+            if (workers.isShutdown() || pending >= maxPending) {
+                rejected++;
+                return false;
+            }
+            queue = queues.get(ruleId);
+            if (queue == null) {
+                queue = new RuleQueue(ruleId);
+                queues.put(ruleId, queue);
+            }
+            if (queue.tasks.size() >= maxPendingPerRule) {
+                rejected++;
+                return false;
+            }
+            
+            queue.tasks.add(task);
+            submitted++;
+            pending++;
+            if (pending > maxDepth) maxDepth = pending;
+            if (pending == 1) acquireWakeLock();
+            
+            schedule = !queue.scheduled;
+            queue.scheduled = true;
+        }
+        
+        if (schedule) {
+            post(queue);
+        }
+        return true;
+    }
+    
+    /**
+     * 停止接收新任务，已排队任务继续执行完
+     */
+    void shutdown() {
+        workers.shutdown();
+    }
+    
+    // ============== 统计 ==============
+    
+    /** 当前排队 + 执行中的任务数 */
+    int getPendingCount() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+    
+    /** 指定规则的排队深度 */
+    int getQueueDepth(String ruleId) {
+        synchronized (lock) {
+            RuleQueue queue = queues.get(ruleId);
+            return queue != null ? queue.tasks.size() : 0;
+        }
+    }
+    
+    /** 历史最大排队深度 */
+    int getMaxDepth() {
+        synchronized (lock) {
+            return maxDepth;
+        }
+    }
+    
+    long getSubmittedCount() {
+        synchronized (lock) {
+            return submitted;
+        }
+    }
+    
+    long getCompletedCount() {
+        synchronized (lock) {
+            return completed;
+        }
+    }
+    
+    /** 因队列已满被拒绝的任务数 */
+    long getRejectedCount() {
+        synchronized (lock) {
+            return rejected;
+        }
+    }
+    
+    long getFailedCount() {
+        synchronized (lock) {
+            return failed;
+        }
+    }
+    
+    String getStatsSummary() {
+        synchronized (lock) {
+            return "pending=" + pending + ", maxDepth=" + maxDepth
+                + ", submitted=" + submitted + ", completed=" + completed
+                + ", rejected=" + rejected + ", failed=" + failed;
+        }
+    }
+    
+    // ============== 私有方法 ==============
+    
+    private void post(RuleQueue queue) {
+        if (execute(queue)) return;
+        Log.w(TAG, "线程池已关闭，丢弃规则任务：" + queue.ruleId);
+        synchronized (lock) {
+            int dropped = queue.tasks.size();
+            queue.tasks.clear();
+            queue.scheduled = false;
+            queues.remove(queue.ruleId);
+            rejected += dropped;
+            finishLocked(dropped);
+        }
+    }
+    
+    /**
+     * @return false 表示线程池已关闭
+     */
+    private boolean execute(RuleQueue queue) {
+        try {
+            workers.execute(() -> runNext(queue));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 每次只执行一个任务，之后重新排到线程池末尾，避免单条规则占满线程
+     * 线程池关闭后无法重新排队，改为在当前线程继续执行该规则剩余的任务
+     */
+    private void runNext(RuleQueue queue) {
+        while (true) {
+            Runnable task;
+            synchronized (lock) {
+                task = queue.tasks.peek();
+            }
+            if (task == null) return;
+            
+            boolean ok = true;
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // Error 也要走下面的收尾，否则 scheduled 不会复位，该规则再也不会执行，WakeLock 也不会释放
+                ok = false;
+                Log.e(TAG, "规则任务执行失败：" + queue.ruleId, e);
+            }
+            
+            synchronized (lock) {
+                queue.tasks.poll();
+                completed++;
+                if (!ok) failed++;
+                finishLocked(1);
+                
+                if (queue.tasks.isEmpty()) {
+                    queue.scheduled = false;
+                    queues.remove(queue.ruleId);
+                    return;
+                }
+            }
+            
+            if (!workers.isShutdown() && execute(queue)) return;
+        }
+    }
+    
+    private void finishLocked(int count) {
+        pending -= count;
+        if (pending == 0) releaseWakeLock();
+    }
+    
+    private void acquireWakeLock() {
+        if (wakeLock != null && !wakeLock.isHeld()) {
+            wakeLock.acquire(WAKELOCK_TIMEOUT_MS);
+        }
+    }
+    
+    private void releaseWakeLock() {
+        if (wakeLock != null && wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+    }
+    
+    /**
+     * 单条规则的串行队列
+     */
+    private static class RuleQueue {
+        final String ruleId;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        // 是否已有任务提交到线程池
+        boolean scheduled;
+        
+        RuleQueue(String ruleId) {
+            this.ruleId = ruleId;
+        }
+    }
+    
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "automation-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
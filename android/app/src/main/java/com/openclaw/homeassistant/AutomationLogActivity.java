@@ -1,30 +1,67 @@
 package com.openclaw.homeassistant;
 
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 自动化日志查看 Activity
+ * 按序号键集分页加载：首屏只查询一页，滚动接近末尾时在后台线程加载下一页，
+ * 行文本在 getView 中按需生成，与保留的日志总量无关。
+ * 导出在后台线程流式写入文件后通过系统分享发送（见 AutomationLogExporter）。
+ * 时间列按当前时区显示：自动化服务未运行时也由本页面监听时区变更并刷新。
  */
 public class AutomationLogActivity extends AppCompatActivity {
     
+    private static final String TAG = "AutomationLogActivity";
+    
+    private static final int PAGE_SIZE = 50;
+    // 距离末尾还剩多少行时预加载下一页
+    private static final int PREFETCH_DISTANCE = 10;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    
+    private static final String[] EXPORT_FORMATS = {
+        "JSONL", "CSV", "JSONL（gzip 压缩）", "CSV（gzip 压缩）"
+    };
+    private static final String[] EXPORT_RANGES = {
+        "全部", "最近 24 小时", "最近 7 天", "最近 30 天"
+    };
+    // 与 EXPORT_RANGES 对应，0 表示不限
+    private static final long[] EXPORT_RANGE_HOURS = { 0, 24, 7 * 24, 30 * 24 };
+    
     private ListView listView;
     private LogsAdapter adapter;
-    private List<AutomationLogger.LogEntry> logList;
+    private final List<AutomationLogger.LogEntry> logList = new ArrayList<>();
     private AutomationLogger logger;
     private TextView tvEmpty;
+    private BroadcastReceiver timeZoneReceiver;
+    
+    // 分页状态（只在主线程访问）
+    private long nextBeforeSequence = Long.MAX_VALUE;
+    private boolean loading = false;
+    private boolean reachedEnd = false;
+    // 刷新 / 清空后递增，丢弃之前发出的加载结果
+    private int generation = 0;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,7 +71,35 @@ public class AutomationLogActivity extends AppCompatActivity {
         logger = new AutomationLogger(this);
         
         initViews();
-        loadLogs();
+        registerTimeZoneReceiver();
+        reload();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (timeZoneReceiver != null) {
+            unregisterReceiver(timeZoneReceiver);
+            timeZoneReceiver = null;
+        }
+    }
+    
+    /**
+     * 时区变更后刷新 TimeFormatter 缓存的时区并重绘已加载的行
+     * （AutomationEngine 也会刷新，但页面打开时服务不一定在运行）
+     */
+    private void registerTimeZoneReceiver() {
+        TimeFormatter.refreshTimeZone();
+        timeZoneReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                TimeFormatter.refreshTimeZone();
+                adapter.notifyDataSetChanged();
+            }
+        };
+        IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        ContextCompat.registerReceiver(this, timeZoneReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
     }
     
     private void initViews() {
@@ -42,19 +107,83 @@ public class AutomationLogActivity extends AppCompatActivity {
         tvEmpty = findViewById(R.id.tvEmpty);
         Button btnClear = findViewById(R.id.btnClear);
         Button btnRefresh = findViewById(R.id.btnRefresh);
+        Button btnExport = findViewById(R.id.btnExport);
+        Button btnStats = findViewById(R.id.btnStats);
         
-        logList = new ArrayList<>();
         adapter = new LogsAdapter();
         listView.setAdapter(adapter);
+        listView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+            
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
         
         btnClear.setOnClickListener(v -> showClearConfirm());
-        btnRefresh.setOnClickListener(v -> loadLogs());
+        btnRefresh.setOnClickListener(v -> reload());
+        btnExport.setOnClickListener(v -> showExportDialog());
+        btnStats.setOnClickListener(v -> showLatencyStats());
     }
     
-    private void loadLogs() {
+    /**
+     * 从最新一条重新加载
+     */
+    private void reload() {
+        generation++;
         logList.clear();
-        logList.addAll(logger.getLogs());
         adapter.notifyDataSetChanged();
+        nextBeforeSequence = Long.MAX_VALUE;
+        reachedEnd = false;
+        loading = false;
+        loadNextPage();
+    }
+    
+    /**
+     * 在后台线程查询下一页，完成后追加到列表
+     * 查询失败时也要回到主线程清除 loading，否则之后不会再触发加载
+     */
+    private void loadNextPage() {
+        if (loading || reachedEnd) return;
+        loading = true;
+        
+        final int requestGeneration = generation;
+        final long beforeSequence = nextBeforeSequence;
+        new Thread(() -> {
+            List<AutomationLogger.LogEntry> page = null;
+            try {
+                page = logger.getLogPage(beforeSequence, PAGE_SIZE);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "加载日志失败", e);
+            } finally {
+                final List<AutomationLogger.LogEntry> result = page;
+                runOnUiThread(() -> onPageLoaded(requestGeneration, result));
+            }
+        }).start();
+    }
+    
+    /**
+     * @param page 查询失败时为 null（保留已加载的行，下次滚动或刷新时重试）
+     */
+    private void onPageLoaded(int requestGeneration, List<AutomationLogger.LogEntry> page) {
+        if (isFinishing() || requestGeneration != generation) return;
+        loading = false;
+        
+        if (page == null) {
+            Toast.makeText(this, "加载日志失败", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (!page.isEmpty()) {
+            logList.addAll(page);
+            nextBeforeSequence = page.get(page.size() - 1).sequence;
+            adapter.notifyDataSetChanged();
+        }
+        reachedEnd = page.size() < PAGE_SIZE;
         
         if (logList.isEmpty()) {
             tvEmpty.setVisibility(View.VISIBLE);
@@ -69,37 +198,125 @@ public class AutomationLogActivity extends AppCompatActivity {
         new AlertDialog.Builder(this)
             .setTitle("确认清空")
             .setMessage("确定要清空所有自动化日志吗？此操作不可恢复。")
-            .setPositiveButton("清空", (dialog, which) -> {
+            .setPositiveButton("清空", (dialog, which) -> new Thread(() -> {
                 logger.clearLogs();
-                loadLogs();
+                runOnUiThread(this::reload);
+            }).start())
+            .setNegativeButton("取消", null)
+            .show();
+    }
+    
+    /**
+     * 执行耗时统计（进程内最近 24 小时的 p50 / p95 / p99）
+     */
+    private void showLatencyStats() {
+        new AlertDialog.Builder(this)
+            .setTitle("执行耗时")
+            .setMessage(AutomationMetrics.report(System.currentTimeMillis()))
+            .setPositiveButton("确定", null)
+            .show();
+    }
+    
+    // ============== 导出 ==============
+    
+    private void showExportDialog() {
+        new AlertDialog.Builder(this)
+            .setTitle("导出格式")
+            .setItems(EXPORT_FORMATS, (dialog, which) -> showExportRangeDialog(
+                which % 2 == 0 ? AutomationLogExporter.FORMAT_JSONL : AutomationLogExporter.FORMAT_CSV,
+                which >= 2))
+            .setNegativeButton("取消", null)
+            .show();
+    }
+    
+    private void showExportRangeDialog(int format, boolean gzip) {
+        new AlertDialog.Builder(this)
+            .setTitle("导出范围")
+            .setItems(EXPORT_RANGES, (dialog, which) -> {
+                long hours = EXPORT_RANGE_HOURS[which];
+                long from = hours > 0 ? System.currentTimeMillis() - hours * HOUR_MS : 0;
+                exportLogs(format, gzip, from);
             })
             .setNegativeButton("取消", null)
             .show();
     }
     
-    class LogsAdapter extends ArrayAdapter<AutomationLogger.LogEntry> {
-        LogsAdapter() {
-            super(AutomationLogActivity.this, 0, logList);
+    private void exportLogs(int format, boolean gzip, long fromMillis) {
+        Toast.makeText(this, "正在导出…", Toast.LENGTH_SHORT).show();
+        AutomationLogExporter exporter = new AutomationLogExporter(this, logger);
+        new Thread(() -> {
+            try {
+                Uri uri = exporter.exportToFile(format, gzip, null, fromMillis, Long.MAX_VALUE);
+                runOnUiThread(() -> shareExport(uri, AutomationLogExporter.mimeType(format, gzip)));
+            } catch (Exception e) {
+                runOnUiThread(() -> Toast.makeText(this, "导出失败：" + e.getMessage(), Toast.LENGTH_SHORT).show());
+            }
+        }).start();
+    }
+    
+    private void shareExport(Uri uri, String mimeType) {
+        if (isFinishing()) return;
+        Intent shareIntent = new Intent(Intent.ACTION_SEND);
+        shareIntent.setType(mimeType);
+        shareIntent.putExtra(Intent.EXTRA_STREAM, uri);
+        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        shareIntent.putExtra(Intent.EXTRA_SUBJECT, "OpenClaw 自动化日志");
+        startActivity(Intent.createChooser(shareIntent, "分享自动化日志"));
+    }
+    
+    class LogsAdapter extends BaseAdapter {
+        
+        @Override
+        public int getCount() {
+            return logList.size();
+        }
+        
+        @Override
+        public AutomationLogger.LogEntry getItem(int position) {
+            return logList.get(position);
+        }
+        
+        @Override
+        public long getItemId(int position) {
+            return logList.get(position).sequence;
+        }
+        
+        @Override
+        public boolean hasStableIds() {
+            return true;
         }
         
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
+            ViewHolder holder;
             if (convertView == null) {
                 convertView = LayoutInflater.from(AutomationLogActivity.this)
                     .inflate(R.layout.item_log, parent, false);
+                holder = new ViewHolder(convertView);
+                convertView.setTag(holder);
+            } else {
+                holder = (ViewHolder) convertView.getTag();
             }
             
             AutomationLogger.LogEntry entry = logList.get(position);
             
-            TextView tvTime = convertView.findViewById(R.id.tvTime);
-            TextView tvTitle = convertView.findViewById(R.id.tvTitle);
-            TextView tvDetails = convertView.findViewById(R.id.tvDetails);
-            
-            tvTime.setText(entry.getFormattedTime());
-            tvTitle.setText(entry.getDisplayText());
-            tvDetails.setText(entry.details != null ? entry.details : "");
+            holder.tvTime.setText(entry.getFormattedTime());
+            holder.tvTitle.setText(entry.getDisplayText());
+            holder.tvDetails.setText(entry.details != null ? entry.details : "");
             
             return convertView;
         }
     }
+    
+    static class ViewHolder {
+        final TextView tvTime;
+        final TextView tvTitle;
+        final TextView tvDetails;
+        
+        ViewHolder(View view) {
+            tvTime = view.findViewById(R.id.tvTime);
+            tvTitle = view.findViewById(R.id.tvTitle);
+            tvDetails = view.findViewById(R.id.tvDetails);
+        }
+    }
 }
@@ -0,0 +1,233 @@
+package com.openclaw.homeassistant;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.core.content.FileProvider;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 自动化日志导出（JSONL / CSV，可选 gzip 压缩）
+ * 通过 AutomationLogger.forEachEvent 按页从数据库读取，逐条编码后写入固定大小的缓冲区，
+ * 内存占用与导出的日志总量无关。
+ * 导出文件写在 cache/exports 下（只保留最近一次），通过 FileProvider 的 content URI 分享。
+ *
+ * 所有方法会访问数据库和文件，需在后台线程调用。
+ */
+class AutomationLogExporter {
+    
+    private static final String TAG = "AutomationLogExporter";
+    
+    static final int FORMAT_JSONL = 0;
+    static final int FORMAT_CSV = 1;
+    
+    private static final int BUFFER_SIZE = 8192;
+    private static final String EXPORT_DIR = "exports";
+    private static final String FILE_PREFIX = "automation-log-";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String CSV_HEADER = "sequence,timestamp,time,kind,ruleId,ruleName,type,details\r\n";
+    
+    private final Context context;
+    private final AutomationLogger logger;
+    
+    AutomationLogExporter(Context context, AutomationLogger logger) {
+        this.context = context.getApplicationContext();
+        this.logger = logger;
+    }
+    
+    /**
+     * 导出到 cache/exports 下的新文件，并删除之前的导出文件
+     * @param ruleId 为 null 时不限规则
+     * @return 可授权给其他应用读取的 FileProvider URI
+     */
+    Uri exportToFile(int format, boolean gzip, String ruleId, long fromMillis, long toMillis) throws IOException {
+        File dir = new File(context.getCacheDir(), EXPORT_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建导出目录：" + dir);
+        }
+        File[] previous = dir.listFiles();
+        if (previous != null) {
+            for (File file : previous) {
+                if (file.getName().startsWith(FILE_PREFIX)) {
+                    file.delete();
+                }
+            }
+        }
+        
+        File file = new File(dir, fileName(format, gzip, System.currentTimeMillis()));
+        try (OutputStream out = new FileOutputStream(file)) {
+            int count = export(out, format, gzip, ruleId, fromMillis, toMillis);
+            Log.d(TAG, "已导出 " + count + " 条日志到 " + file.getName());
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", file);
+    }
+    
+    /**
+     * 按时间顺序把 [fromMillis, toMillis) 内的事件写入 out（写完后不关闭 out）
+     * @param ruleId 为 null 时不限规则
+     * @return 导出的条数
+     */
+    int export(OutputStream out, int format, boolean gzip, String ruleId,
+               long fromMillis, long toMillis) throws IOException {
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        final Writer writer = new BufferedWriter(
+            new OutputStreamWriter(gzipOut != null ? gzipOut : out, UTF_8), BUFFER_SIZE);
+        
+        int count;
+        if (format == FORMAT_CSV) {
+            writer.write(CSV_HEADER);
+            count = logger.forEachEvent(ruleId, fromMillis, toMillis, event -> writeCsv(writer, event));
+        } else {
+            count = logger.forEachEvent(ruleId, fromMillis, toMillis, event -> writeJson(writer, event));
+        }
+        
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        return count;
+    }
+    
+    static String mimeType(int format, boolean gzip) {
+        if (gzip) return "application/gzip";
+        return format == FORMAT_CSV ? "text/csv" : "application/x-ndjson";
+    }
+    
+    static String fileName(int format, boolean gzip, long timestamp) {
+        String time = TimeFormatter.formatDateTime(timestamp)
+            .replace("-", "").replace(":", "").replace(' ', '-');
+        return FILE_PREFIX + time + (format == FORMAT_CSV ? ".csv" : ".jsonl") + (gzip ? ".gz" : "");
+    }
+    
+    // ============== 编码 ==============
+    
+    private static String kindName(int kind) {
+        switch (kind) {
+            case AutomationEvent.KIND_TRIGGER:
+                return "trigger";
+            case AutomationEvent.KIND_ACTION:
+                return "action";
+            case AutomationEvent.KIND_FAILURE:
+                return "failure";
+            default:
+                return "unknown";
+        }
+    }
+    
+    /**
+     * 一行一个 JSON 对象
+     */
+    private static void writeJson(Writer writer, AutomationEvent event) throws IOException {
+        writer.write("{\"sequence\":");
+        writer.write(Long.toString(event.sequence));
+        writer.write(",\"timestamp\":");
+        writer.write(Long.toString(event.timestamp));
+        writer.write(",\"time\":\"");
+        writer.write(TimeFormatter.formatDateTime(event.timestamp));
+        writer.write("\",\"kind\":\"");
+        writer.write(kindName(event.kind));
+        writer.write("\",\"ruleId\":");
+        writeJsonString(writer, event.ruleId);
+        writer.write(",\"ruleName\":");
+        writeJsonString(writer, event.ruleName);
+        writer.write(",\"type\":");
+        writeJsonString(writer, event.type);
+        writer.write(",\"details\":");
+        writeJsonString(writer, event.details);
+        writer.write("}\n");
+    }
+    
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write("\\u00");
+                        writer.write(Character.forDigit(c >> 4, 16));
+                        writer.write(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+    
+    /**
+     * RFC 4180：含逗号、引号或换行的字段加引号，引号写两遍；空值写空字段
+     */
+    private static void writeCsv(Writer writer, AutomationEvent event) throws IOException {
+        writer.write(Long.toString(event.sequence));
+        writer.write(',');
+        writer.write(Long.toString(event.timestamp));
+        writer.write(',');
+        writer.write(TimeFormatter.formatDateTime(event.timestamp));
+        writer.write(',');
+        writer.write(kindName(event.kind));
+        writer.write(',');
+        writeCsvField(writer, event.ruleId);
+        writer.write(',');
+        writeCsvField(writer, event.ruleName);
+        writer.write(',');
+        writeCsvField(writer, event.type);
+        writer.write(',');
+        writeCsvField(writer, event.details);
+        writer.write("\r\n");
+    }
+    
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) return;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
@@ -7,152 +7,369 @@ import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 自动化日志记录器
  * 功能：记录规则触发历史
+ * 存储：
+ *   写入 —— files/automation_log.ring 定长记录环形文件（见 LogRingBuffer），追加 O(1)
+ *   查询 —— Room 数据库 automation_history.db（见 AutomationEventDao），按索引计数 / 范围查询
+ * 环形日志充当预写日志：写入后由后台线程按序号增量批量同步到数据库（单个事务），
+ * 进程被杀时未同步的记录在下次打开时补同步。
+ * 同步时在同一事务中把事件折叠进按小时 / 按天的规则汇总（AutomationRollup）；
+ * 原始事件按 automation.log_retention_days 过期，小时汇总保留 HOURLY_ROLLUP_RETENTION_DAYS 天，天汇总长期保留。
+ *
+ * 查询方法会先同步再访问数据库，需在后台线程调用。
  */
 public class AutomationLogger {
     
     private static final String TAG = "AutomationLogger";
-    private static final String PREFS_NAME = "automation_logs";
-    private static final String KEY_LOGS = "logs";
-    private static final int MAX_LOGS = 100;
+    private static final String LOG_FILE = "automation_log.ring";
+    static final int DEFAULT_CAPACITY = 1000;
+    static final int DEFAULT_RETENTION_DAYS = 14;
+    static final int HOURLY_ROLLUP_RETENTION_DAYS = 90;
     
-    private final Context context;
-    private final SimpleDateFormat dateFormat;
+    // 每个事务最多写入的事件数
+    private static final int SYNC_BATCH_SIZE = 500;
+    // 流式遍历时每次从数据库读取的事件数
+    private static final int SCAN_PAGE_SIZE = 500;
+    // 过期清理间隔
+    private static final long RETENTION_INTERVAL_MS = 60 * 60 * 1000L;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    
+    // 旧版本存放在 SharedPreferences 中的日志，首次打开时迁移
+    private static final String LEGACY_PREFS_NAME = "automation_logs";
+    private static final String LEGACY_KEY_LOGS = "logs";
+    
+    // 同步在进程内串行执行（多个 AutomationLogger 实例共享环形日志和数据库）
+    private static final Object SYNC_LOCK = new Object();
+    private static final ExecutorService SYNC_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "automation-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static long lastRetentionMillis;
+    
+    private final LogRingBuffer ring;
+    private final AutomationEventDao dao;
+    private final int retentionDays;
+    private final AtomicBoolean syncPending = new AtomicBoolean(false);
     
     public AutomationLogger(Context context) {
-        this.context = context.getApplicationContext();
-        this.dateFormat = new SimpleDateFormat("MM-dd HH:mm", Locale.getDefault());
+        this(context, 0, 0);
     }
     
     /**
-     * 记录规则触发
+     * @param capacity 环形日志条数；0 表示沿用现有日志文件的容量
+     * @param retentionDays 历史保留天数；0 表示不执行过期清理
      */
-    public void logTrigger(String ruleId, String ruleName, String triggerType) {
+    public AutomationLogger(Context context, int capacity, int retentionDays) {
+        this(openRing(context.getApplicationContext(), capacity),
+            AutomationDatabase.getInstance(context.getApplicationContext()).eventDao(), retentionDays);
+    }
+    
+    /**
+     * 指定环形日志和历史数据库（测试中使用）
+     * @param ring 为 null 时只能查询数据库
+     */
+    AutomationLogger(LogRingBuffer ring, AutomationEventDao dao, int retentionDays) {
+        this.ring = ring;
+        this.dao = dao;
+        this.retentionDays = retentionDays;
+        
+        // 补同步上次进程退出前未写入数据库的记录
+        scheduleSync();
+    }
+    
+    private static LogRingBuffer openRing(Context context, int capacity) {
+        LogRingBuffer ring;
         try {
-            JSONObject logEntry = new JSONObject();
-            logEntry.put("timestamp", System.currentTimeMillis());
-            logEntry.put("ruleId", ruleId);
-            logEntry.put("ruleName", ruleName);
-            logEntry.put("triggerType", triggerType);
-            logEntry.put("action", "executed");
-            
-            saveLog(logEntry);
-            
-            Log.d(TAG, "记录触发：" + ruleName + " (" + triggerType + ")");
-            
+            ring = LogRingBuffer.open(new File(context.getFilesDir(), LOG_FILE), capacity, DEFAULT_CAPACITY);
         } catch (Exception e) {
-            Log.e(TAG, "记录日志失败", e);
+            Log.e(TAG, "打开日志文件失败", e);
+            return null;
         }
+        migrateLegacyLogs(context, ring);
+        return ring;
+    }
+    
+    /**
+     * 记录规则触发
+     */
+    public void logTrigger(String ruleId, String ruleName, String triggerType) {
+        append(LogRingBuffer.KIND_TRIGGER, System.currentTimeMillis(), ruleId, ruleName, triggerType, "executed");
+        commit();
+        
+        Log.d(TAG, "记录触发：" + ruleName + " (" + triggerType + ")");
     }
     
     /**
      * 记录动作执行
      */
     public void logAction(String ruleId, String actionType, String details) {
-        try {
-            JSONObject logEntry = new JSONObject();
-            logEntry.put("timestamp", System.currentTimeMillis());
-            logEntry.put("ruleId", ruleId);
-            logEntry.put("actionType", actionType);
-            logEntry.put("details", details);
-            
-            saveLog(logEntry);
-            
-        } catch (Exception e) {
-            Log.e(TAG, "记录动作失败", e);
-        }
+        append(LogRingBuffer.KIND_ACTION, System.currentTimeMillis(), ruleId, null, actionType, details);
+        commit();
     }
     
     /**
-     * 保存日志
+     * 只写入环形日志，不触发数据库同步（组提交时逐条调用，最后调用一次 commit）
      */
-    private synchronized void saveLog(JSONObject logEntry) {
-        try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String logsJson = prefs.getString(KEY_LOGS, "[]");
-            JSONArray logs = new JSONArray(logsJson);
-            
-            // 添加到开头
-            logs.put(0, logEntry);
-            
-            // 限制数量
-            if (logs.length() > MAX_LOGS) {
-                JSONArray newLogs = new JSONArray();
-                for (int i = 0; i < MAX_LOGS; i++) {
-                    newLogs.put(logs.getJSONObject(i));
-                }
-                logs = newLogs;
-            }
-            
-            prefs.edit().putString(KEY_LOGS, logs.toString()).apply();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "保存日志失败", e);
-        }
+    void append(byte kind, long timestamp, String ruleId, String ruleName, String type, String details) {
+        if (ring == null) return;
+        ring.append(timestamp, kind, ruleId, ruleName, type, details);
+    }
+    
+    /**
+     * 安排把已写入环形日志的记录同步到数据库
+     */
+    void commit() {
+        scheduleSync();
+    }
+    
+    // ============== 查询（后台线程） ==============
+    
+    /**
+     * 分页获取日志（从新到旧）
+     * @param beforeSequence 只返回序号小于该值的日志；第一页传 Long.MAX_VALUE，
+     *                       之后传上一页最后一条的 LogEntry.sequence
+     * @param limit 最多返回条数
+     */
+    public List<LogEntry> getLogPage(long beforeSequence, int limit) {
+        syncHistory();
+        return toLogEntries(dao.getPage(beforeSequence, limit));
+    }
+    
+    /**
+     * 获取 [fromMillis, toMillis) 内的日志（从新到旧）
+     * @param ruleId 为 null 时不限规则
+     */
+    public List<LogEntry> getLogs(String ruleId, long fromMillis, long toMillis, int limit) {
+        syncHistory();
+        return toLogEntries(ruleId != null
+            ? dao.getRuleRange(ruleId, fromMillis, toMillis, limit)
+            : dao.getRange(fromMillis, toMillis, limit));
     }
     
     /**
-     * 获取所有日志
+     * 获取保留期内的触发次数
      */
-    public List<LogEntry> getLogs() {
-        List<LogEntry> logs = new ArrayList<>();
+    public int getTriggerCount(String ruleId) {
+        if (ruleId == null) return 0;
+        syncHistory();
+        return dao.getTriggerCount(ruleId);
+    }
+    
+    /**
+     * 获取 [fromMillis, toMillis) 内的触发次数
+     */
+    public int getTriggerCount(String ruleId, long fromMillis, long toMillis) {
+        if (ruleId == null) return 0;
+        syncHistory();
+        return dao.countTriggers(ruleId, fromMillis, toMillis);
+    }
+    
+    /**
+     * 获取 [fromMillis, toMillis) 内的汇总（按时间段升序）
+     * @param ruleId 为 null 时返回所有规则按时间段的合计
+     * @param granularity AutomationRollup.GRANULARITY_HOUR / GRANULARITY_DAY
+     */
+    public List<AutomationRollup> getRollups(String ruleId, int granularity, long fromMillis, long toMillis) {
+        syncHistory();
+        return ruleId != null
+            ? dao.getRollups(ruleId, granularity, fromMillis, toMillis)
+            : dao.getRollupTotals(granularity, fromMillis, toMillis);
+    }
+    
+    /**
+     * 按时间顺序（从旧到新）逐条遍历 [fromMillis, toMillis) 内的事件
+     * 按 (timestamp, id) 键集分页读取，同一时刻只持有一页，用于导出等全量遍历
+     * @param ruleId 为 null 时不限规则
+     * @return 遍历的条数
+     */
+    int forEachEvent(String ruleId, long fromMillis, long toMillis, EventVisitor visitor) throws IOException {
+        syncHistory();
         
-        try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String logsJson = prefs.getString(KEY_LOGS, "[]");
-            JSONArray logsArray = new JSONArray(logsJson);
-            
-            for (int i = 0; i < logsArray.length(); i++) {
-                JSONObject obj = logsArray.getJSONObject(i);
-                logs.add(LogEntry.fromJson(obj));
+        int visited = 0;
+        long afterTimestamp = fromMillis;
+        long afterId = -1;
+        while (true) {
+            List<AutomationEvent> page = ruleId != null
+                ? dao.getRuleExportPage(ruleId, afterTimestamp, afterId, toMillis, SCAN_PAGE_SIZE)
+                : dao.getExportPage(afterTimestamp, afterId, toMillis, SCAN_PAGE_SIZE);
+            for (AutomationEvent event : page) {
+                visitor.visit(event);
             }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "读取日志失败", e);
+            visited += page.size();
+            if (page.size() < SCAN_PAGE_SIZE) {
+                return visited;
+            }
+            AutomationEvent last = page.get(page.size() - 1);
+            afterTimestamp = last.timestamp;
+            afterId = last.id;
         }
-        
-        return logs;
     }
     
     /**
-     * 清空日志
+     * 清空日志（汇总统计保留）
      */
     public void clearLogs() {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().putString(KEY_LOGS, "[]").apply();
+        synchronized (SYNC_LOCK) {
+            if (ring != null) alignRing();
+            long firstSequence = ring != null ? ring.clear() : dao.getMaxSequence() + 1;
+            dao.deleteBeforeSequence(firstSequence);
+        }
         Log.d(TAG, "日志已清空");
     }
     
     /**
-     * 获取最近触发次数
+     * 把环形日志刷到磁盘（数据库同步在后台继续进行）
      */
-    public int getTriggerCount(String ruleId) {
-        int count = 0;
-        try {
-            List<LogEntry> logs = getLogs();
-            for (LogEntry log : logs) {
-                if (ruleId.equals(log.ruleId)) {
-                    count++;
+    public void flush() {
+        if (ring != null) {
+            ring.force();
+        }
+    }
+    
+    // ============== 同步 ==============
+    
+    /**
+     * 合并短时间内的多次写入，只排队一次同步
+     */
+    private void scheduleSync() {
+        if (ring == null || !syncPending.compareAndSet(false, true)) return;
+        SYNC_EXECUTOR.execute(() -> {
+            syncPending.set(false);
+            try {
+                syncHistory();
+            } catch (Exception e) {
+                Log.e(TAG, "同步历史失败", e);
+            }
+        });
+    }
+    
+    /**
+     * 把环形日志中数据库尚未包含的记录批量写入，并按间隔执行过期清理
+     */
+    private void syncHistory() {
+        synchronized (SYNC_LOCK) {
+            if (ring != null) {
+                final List<AutomationEvent> batch = new ArrayList<>();
+                final TimeZone zone = TimeZone.getDefault();
+                ring.forEachFrom(alignRing() + 1, (buffer, slot, sequence) -> {
+                    AutomationEvent event = readEvent(buffer, slot, sequence);
+                    // 读取期间被覆盖的记录丢弃
+                    if (buffer.isValid(slot, sequence)) {
+                        batch.add(event);
+                    }
+                    if (batch.size() >= SYNC_BATCH_SIZE) {
+                        dao.insertAll(batch, zone);
+                        batch.clear();
+                    }
+                    return true;
+                });
+                if (!batch.isEmpty()) {
+                    dao.insertAll(batch, zone);
+                }
+            }
+            
+            long now = System.currentTimeMillis();
+            if (retentionDays > 0 && now - lastRetentionMillis >= RETENTION_INTERVAL_MS) {
+                lastRetentionMillis = now;
+                int deleted = dao.deleteBefore(now - retentionDays * DAY_MS);
+                int rollups = dao.deleteRollupsBefore(AutomationRollup.GRANULARITY_HOUR,
+                    now - HOURLY_ROLLUP_RETENTION_DAYS * DAY_MS);
+                if (deleted > 0 || rollups > 0) {
+                    Log.d(TAG, "清理过期日志 " + deleted + " 条，小时汇总 " + rollups + " 行");
                 }
             }
+        }
+    }
+    
+    /**
+     * 环形日志文件丢失或损坏后重新创建时序号从 0 开始，低于数据库中已同步的序号，
+     * 新记录会被同步游标跳过；此时把环形日志中的记录重新编号到数据库最大序号之后
+     * 调用方需持有 SYNC_LOCK
+     * @return 数据库中已同步的最大序号
+     */
+    private long alignRing() {
+        long maxSequence = dao.getMaxSequence();
+        long nextSequence = ring.getNextSequence();
+        if (nextSequence <= maxSequence) {
+            int moved = ring.rebase(maxSequence + 1);
+            Log.w(TAG, "日志序号 " + nextSequence + " 落后于历史数据库 " + maxSequence
+                + "，已重新编号 " + moved + " 条");
+        }
+        return maxSequence;
+    }
+    
+    private static AutomationEvent readEvent(LogRingBuffer buffer, int slot, long sequence) {
+        AutomationEvent event = new AutomationEvent();
+        event.sequence = sequence;
+        event.timestamp = buffer.timestamp(slot);
+        event.kind = buffer.kind(slot);
+        event.ruleId = buffer.field(slot, LogRingBuffer.FIELD_RULE_ID);
+        event.ruleName = buffer.field(slot, LogRingBuffer.FIELD_RULE_NAME);
+        event.type = buffer.field(slot, LogRingBuffer.FIELD_TYPE);
+        event.details = buffer.field(slot, LogRingBuffer.FIELD_DETAILS);
+        return event;
+    }
+    
+    private static List<LogEntry> toLogEntries(List<AutomationEvent> events) {
+        List<LogEntry> logs = new ArrayList<>(events.size());
+        for (AutomationEvent event : events) {
+            logs.add(event.toLogEntry());
+        }
+        return logs;
+    }
+    
+    /**
+     * 迁移旧版 SharedPreferences 日志（旧数据从新到旧排列，按从旧到新追加）
+     */
+    private static void migrateLegacyLogs(Context context, LogRingBuffer ring) {
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        String logsJson = prefs.getString(LEGACY_KEY_LOGS, null);
+        if (logsJson == null) return;
+        
+        try {
+            JSONArray logs = new JSONArray(logsJson);
+            for (int i = logs.length() - 1; i >= 0; i--) {
+                JSONObject json = logs.getJSONObject(i);
+                boolean trigger = json.has("triggerType");
+                ring.append(json.optLong("timestamp", 0),
+                    trigger ? LogRingBuffer.KIND_TRIGGER : LogRingBuffer.KIND_ACTION,
+                    json.optString("ruleId", null),
+                    json.optString("ruleName", null),
+                    trigger ? json.optString("triggerType", null) : json.optString("actionType", null),
+                    trigger ? json.optString("action", null) : json.optString("details", null));
+            }
+            Log.d(TAG, "已迁移旧日志 " + logs.length() + " 条");
         } catch (Exception e) {
-            Log.e(TAG, "统计触发次数失败", e);
+            Log.e(TAG, "迁移旧日志失败", e);
         }
-        return count;
+        prefs.edit().remove(LEGACY_KEY_LOGS).apply();
+    }
+    
+    /**
+     * 事件遍历回调（见 forEachEvent）
+     */
+    interface EventVisitor {
+        void visit(AutomationEvent event) throws IOException;
     }
     
     /**
      * 日志条目
      */
     public static class LogEntry {
+        // 环形日志序号，用于分页
+        public long sequence;
         public long timestamp;
         public String ruleId;
         public String ruleName;
@@ -160,31 +377,22 @@ public class AutomationLogger {
         public String actionType;
         public String details;
         public String action;
+        // 动作执行失败（details 为错误信息）
+        public boolean failed;
         
         public String getFormattedTime() {
-            return new SimpleDateFormat("MM-dd HH:mm", Locale.getDefault())
-                .format(new Date(timestamp));
+            return TimeFormatter.formatMinute(timestamp);
         }
         
         public String getDisplayText() {
             if (ruleName != null) {
                 return ruleName + " 触发 (" + triggerType + ")";
+            } else if (failed) {
+                return "失败：" + actionType + " - " + details;
             } else if (actionType != null) {
                 return "执行：" + actionType + " - " + details;
             }
             return "未知操作";
         }
-        
-        public static LogEntry fromJson(JSONObject json) {
-            LogEntry entry = new LogEntry();
-            entry.timestamp = json.optLong("timestamp", 0);
-            entry.ruleId = json.optString("ruleId");
-            entry.ruleName = json.optString("ruleName");
-            entry.triggerType = json.optString("triggerType");
-            entry.actionType = json.optString("actionType");
-            entry.details = json.optString("details");
-            entry.action = json.optString("action");
-            return entry;
-        }
     }
 }
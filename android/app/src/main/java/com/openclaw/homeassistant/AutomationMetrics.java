@@ -0,0 +1,136 @@
+package com.openclaw.homeassistant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 自动化执行耗时统计（进程内，最近 24 小时，不持久化）
+ *   按规则：触发 → 开始执行的延迟（含闹钟唤醒延迟和执行队列等待）、整条规则的执行耗时与失败次数
+ *   按动作类型：单个动作的执行耗时与失败次数
+ * AutomationEngine 在执行线程记录，AutomationLogActivity 读取快照展示 p50 / p95 / p99。
+ */
+final class AutomationMetrics {
+    
+    /**
+     * 一条规则的统计
+     */
+    static final class RuleMetrics {
+        final String ruleId;
+        volatile String ruleName;
+        final LatencyHistogram delay = new LatencyHistogram();
+        final LatencyHistogram duration = new LatencyHistogram();
+        
+        RuleMetrics(String ruleId, String ruleName) {
+            this.ruleId = ruleId;
+            this.ruleName = ruleName;
+        }
+    }
+    
+    private static final ConcurrentHashMap<String, RuleMetrics> RULES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> ACTIONS = new ConcurrentHashMap<>();
+    
+    private AutomationMetrics() {
+    }
+    
+    static RuleMetrics rule(AutomationRule rule) {
+        RuleMetrics metrics = RULES.get(rule.id);
+        if (metrics == null) {
+            RuleMetrics created = new RuleMetrics(rule.id, rule.name);
+            metrics = RULES.putIfAbsent(rule.id, created);
+            if (metrics == null) metrics = created;
+        } else if (rule.name != null && !rule.name.equals(metrics.ruleName)) {
+            metrics.ruleName = rule.name;
+        }
+        return metrics;
+    }
+    
+    static LatencyHistogram action(String type) {
+        LatencyHistogram histogram = ACTIONS.get(type);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = ACTIONS.putIfAbsent(type, created);
+            if (histogram == null) histogram = created;
+        }
+        return histogram;
+    }
+    
+    static List<RuleMetrics> rules() {
+        return new ArrayList<>(RULES.values());
+    }
+    
+    static List<String> actionTypes() {
+        return new ArrayList<>(ACTIONS.keySet());
+    }
+    
+    static void clear() {
+        RULES.clear();
+        ACTIONS.clear();
+    }
+    
+    // ============== 展示 ==============
+    
+    /**
+     * 多行文本报告：每条规则与每种动作类型的次数、p50 / p95 / p99 和失败次数，没有记录的项省略
+     */
+    static String report(long nowMillis) {
+        StringBuilder sb = new StringBuilder();
+        LatencyHistogram.Snapshot allDelay = new LatencyHistogram.Snapshot();
+        for (RuleMetrics metrics : rules()) {
+            LatencyHistogram.Snapshot delay = metrics.delay.snapshot(nowMillis);
+            LatencyHistogram.Snapshot duration = metrics.duration.snapshot(nowMillis);
+            if (delay.total == 0 && duration.total == 0 && duration.failures == 0) continue;
+            allDelay.merge(delay);
+            
+            sb.append('「').append(metrics.ruleName != null ? metrics.ruleName : metrics.ruleId).append("」\n");
+            appendLine(sb, "触发延迟", delay);
+            appendLine(sb, "执行耗时", duration);
+        }
+        if (allDelay.total > 0) {
+            sb.insert(0, "\n");
+            sb.insert(0, formatLine("全部规则触发延迟", allDelay));
+        }
+        
+        boolean header = false;
+        for (String type : actionTypes()) {
+            LatencyHistogram.Snapshot duration = action(type).snapshot(nowMillis);
+            if (duration.total == 0 && duration.failures == 0) continue;
+            if (!header) {
+                sb.append("\n动作\n");
+                header = true;
+            }
+            appendLine(sb, type, duration);
+        }
+        
+        if (sb.length() == 0) {
+            return "最近 24 小时没有执行记录";
+        }
+        return "最近 24 小时，p50 / p95 / p99\n\n" + sb;
+    }
+    
+    private static void appendLine(StringBuilder sb, String label, LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.total == 0 && snapshot.failures == 0) return;
+        sb.append("  ").append(formatLine(label, snapshot)).append('\n');
+    }
+    
+    private static String formatLine(String label, LatencyHistogram.Snapshot snapshot) {
+        StringBuilder sb = new StringBuilder(label).append("：");
+        if (snapshot.total > 0) {
+            sb.append(snapshot.total).append(" 次  ")
+                .append(formatMillis(snapshot.percentile(0.50))).append(" / ")
+                .append(formatMillis(snapshot.percentile(0.95))).append(" / ")
+                .append(formatMillis(snapshot.percentile(0.99)));
+        }
+        if (snapshot.failures > 0) {
+            sb.append("  失败 ").append(snapshot.failures).append(" 次");
+        }
+        return sb.toString();
+    }
+    
+    private static String formatMillis(long millis) {
+        if (millis < 1000) return millis + "ms";
+        if (millis < 60_000) return String.format(Locale.US, "%.1fs", millis / 1000.0);
+        return (millis / 60_000) + "min";
+    }
+}
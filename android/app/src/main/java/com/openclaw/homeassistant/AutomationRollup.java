@@ -0,0 +1,90 @@
+package com.openclaw.homeassistant;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+import java.util.TimeZone;
+
+/**
+ * 自动化历史汇总（Room 表 automation_rollups）
+ * 每条规则按小时 / 按天（本地时间）一行，在事件写入数据库的同一事务中累加，
+ * 原始事件过期后汇总仍保留：一年的按天汇总每条规则约 365 行。
+ * 主键 (granularity, bucketStart, ruleId) 支持按时间段汇总所有规则，
+ * 索引 (ruleId, granularity, bucketStart) 支持单条规则的时间段查询。
+ */
+@Entity(tableName = "automation_rollups",
+    primaryKeys = {"granularity", "bucketStart", "ruleId"},
+    indices = {
+        @Index(value = {"ruleId", "granularity", "bucketStart"})
+    })
+public class AutomationRollup {
+    
+    public static final int GRANULARITY_HOUR = 0;
+    public static final int GRANULARITY_DAY = 1;
+    
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    
+    public int granularity;
+    // 时间段起点（本地整点 / 本地零点对应的 UTC 毫秒）
+    public long bucketStart;
+    // 按时间段汇总所有规则时为空字符串
+    @NonNull
+    public String ruleId = "";
+    
+    public int triggerCount;
+    public int actionCount;
+    public int failureCount;
+    // 按动作类型细分（与 AutomationEngine 支持的动作一致，其他类型只计入 actionCount）
+    public int speakCount;
+    public int notifyCount;
+    public int launchCount;
+    
+    /**
+     * 累加一个事件
+     */
+    void add(AutomationEvent event) {
+        switch (event.kind) {
+            case AutomationEvent.KIND_TRIGGER:
+                triggerCount++;
+                break;
+            case AutomationEvent.KIND_FAILURE:
+                failureCount++;
+                break;
+            case AutomationEvent.KIND_ACTION:
+                actionCount++;
+                if ("speak".equals(event.type)) {
+                    speakCount++;
+                } else if ("notify".equals(event.type)) {
+                    notifyCount++;
+                } else if ("launch".equals(event.type)) {
+                    launchCount++;
+                }
+                break;
+        }
+    }
+    
+    /**
+     * 所在本地小时的起点（同一小时内偏移不变，直接按当前偏移取整，夏令时回拨的重复小时各自成段）
+     */
+    static long hourStart(long utcMillis, TimeZone zone) {
+        long local = utcMillis + zone.getOffset(utcMillis);
+        return utcMillis - floorMod(local, HOUR_MS);
+    }
+    
+    /**
+     * 所在本地日期的零点
+     */
+    static long dayStart(long utcMillis, TimeZone zone) {
+        long offset = zone.getOffset(utcMillis);
+        long start = utcMillis + offset - floorMod(utcMillis + offset, DAY_MS);
+        // 夏令时切换当天，零点的偏移可能与当前时刻不同
+        return start - zone.getOffset(start - offset);
+    }
+    
+    // Math.floorMod 需要 API 24
+    private static long floorMod(long x, long y) {
+        return ((x % y) + y) % y;
+    }
+}
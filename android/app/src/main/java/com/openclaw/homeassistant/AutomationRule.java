@@ -0,0 +1,255 @@
+package com.openclaw.homeassistant;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 自动化规则模型
+ * 解析规则 JSON 并编译为原始类型字段，供 TriggerIndex 使用；
+ * 不依赖 Context / 广播 / AlarmManager，可在普通 JVM 上使用（见 AutomationSimulator）
+ */
+class AutomationRule {
+    
+    private static final String TAG = "AutomationRule";
+    
+    String id;
+    String name;
+    boolean enabled;
+    Trigger[] triggers;
+    List<Action> actions;
+    
+    // 编译结果：包含的触发器类型掩码 (1 << Trigger.TYPE_*)
+    int triggerTypeMask;
+    // 编译结果：是否含模板播报（需要预取数据）
+    boolean hasTemplate;
+    // 编译结果：执行条件，null 表示无条件
+    RuleCondition condition;
+    
+    // 规则 JSON 的指纹，重新加载时用于判断规则是否变化
+    long fingerprint;
+    // 在 TriggerIndex 中的槽位，-1 表示未索引
+    int indexSlot = -1;
+    
+    static AutomationRule fromJson(JSONObject json) {
+        try {
+            AutomationRule rule = new AutomationRule();
+            rule.id = json.getString("id");
+            rule.name = json.getString("name");
+            rule.enabled = json.optBoolean("enabled", true);
+            
+            List<Trigger> triggers = new ArrayList<>();
+            JSONArray triggersJson = json.getJSONArray("triggers");
+            for (int i = 0; i < triggersJson.length(); i++) {
+                Trigger trigger = Trigger.fromJson(triggersJson.getJSONObject(i));
+                if (trigger != null) {
+                    triggers.add(trigger);
+                    rule.triggerTypeMask |= 1 << trigger.typeCode;
+                }
+            }
+            rule.triggers = triggers.toArray(new Trigger[0]);
+            
+            if (json.has("condition")) {
+                rule.condition = RuleCondition.compile(json.getJSONObject("condition"));
+            }
+            
+            rule.actions = new ArrayList<>();
+            JSONArray actionsJson = json.getJSONArray("actions");
+            for (int i = 0; i < actionsJson.length(); i++) {
+                Action action = Action.fromJson(actionsJson.getJSONObject(i));
+                if (action != null) {
+                    rule.actions.add(action);
+                    if (action.template != null) rule.hasTemplate = true;
+                }
+            }
+            
+            return rule;
+            
+        } catch (JSONException e) {
+            Log.e(TAG, "解析规则失败", e);
+            return null;
+        }
+    }
+    
+    /**
+     * 64 位 FNV-1a 哈希
+     */
+    static long fingerprint(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+    
+    /**
+     * 条件求值（无条件时恒为真）
+     */
+    boolean matchesCondition(DeviceState state) {
+        return condition == null || condition.evaluate(state);
+    }
+    
+    boolean hasTrigger(int typeCode) {
+        return (triggerTypeMask & (1 << typeCode)) != 0;
+    }
+    
+    /**
+     * 时间触发器匹配（纯原始类型比较，无分配）
+     * @param dayOfWeek 0=周日
+     */
+    boolean matchesTime(int minuteOfDay, int dayOfWeek) {
+        if (!hasTrigger(Trigger.TYPE_TIME)) return false;
+        for (Trigger trigger : triggers) {
+            if (trigger.matchesTime(minuteOfDay, dayOfWeek)) return true;
+        }
+        return false;
+    }
+    
+    // ============== 内部类 ==============
+    
+    /**
+     * 触发器
+     */
+    static class Trigger {
+        static final int TYPE_UNKNOWN = 0;
+        static final int TYPE_TIME = 1;
+        static final int TYPE_BATTERY = 2;
+        static final int TYPE_POWER = 3;
+        
+        static final int POWER_PLUGGED = 1;
+        static final int POWER_UNPLUGGED = 2;
+        
+        // 星期掩码：bit0=周日 ... bit6=周六
+        static final int ALL_DAYS = 0x7F;
+        
+        // 电量触发器默认回差：触发后电量需回升 5% 才重新布防
+        static final int DEFAULT_BATTERY_HYSTERESIS = 5;
+        
+        String type;
+        String time;
+        
+        // 编译后的原始类型字段，由 fromJson 一次性生成
+        int typeCode = TYPE_UNKNOWN;
+        int minuteOfDay = -1;
+        int dayMask = ALL_DAYS;
+        int levelBelow;
+        int hysteresis;
+        int powerState;
+        
+        boolean matchesTime(int minuteOfDay, int dayOfWeek) {
+            return typeCode == TYPE_TIME
+                && this.minuteOfDay == minuteOfDay
+                && (dayMask & (1 << dayOfWeek)) != 0;
+        }
+        
+        static Trigger fromJson(JSONObject json) {
+            try {
+                Trigger trigger = new Trigger();
+                trigger.type = json.getString("type");
+                
+                switch (trigger.type) {
+                    case "time":
+                        trigger.time = json.getString("time");
+                        trigger.minuteOfDay = parseMinuteOfDay(trigger.time);
+                        if (trigger.minuteOfDay < 0) {
+                            Log.w(TAG, "无效的时间：" + trigger.time);
+                            break;
+                        }
+                        if (json.has("days")) {
+                            trigger.dayMask = 0;
+                            JSONArray daysJson = json.getJSONArray("days");
+                            for (int i = 0; i < daysJson.length(); i++) {
+                                int day = daysJson.getInt(i);
+                                if (day >= 0 && day < 7) {
+                                    trigger.dayMask |= 1 << day;
+                                }
+                            }
+                        }
+                        trigger.typeCode = TYPE_TIME;
+                        break;
+                    case "battery":
+                        trigger.levelBelow = json.getInt("level_below");
+                        trigger.hysteresis = Math.max(1, json.optInt("hysteresis", DEFAULT_BATTERY_HYSTERESIS));
+                        trigger.typeCode = TYPE_BATTERY;
+                        break;
+                    case "power":
+                        String state = json.getString("state");
+                        if ("plugged".equals(state)) {
+                            trigger.powerState = POWER_PLUGGED;
+                        } else if ("unplugged".equals(state)) {
+                            trigger.powerState = POWER_UNPLUGGED;
+                        }
+                        trigger.typeCode = TYPE_POWER;
+                        break;
+                }
+                
+                return trigger;
+                
+            } catch (JSONException e) {
+                Log.e(TAG, "解析触发器失败", e);
+                return null;
+            }
+        }
+        
+        /**
+         * 解析 "HH:mm"，失败返回 -1
+         */
+        static int parseMinuteOfDay(String time) {
+            if (time == null) return -1;
+            try {
+                String[] parts = time.split(":");
+                int hour = Integer.parseInt(parts[0].trim());
+                int minute = Integer.parseInt(parts[1].trim());
+                if (hour < 0 || hour > 23 || minute < 0 || minute > 59) return -1;
+                return hour * 60 + minute;
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * 动作
+     */
+    static class Action {
+        String type;
+        String text;
+        String template;
+        String title;
+        String message;
+        String packageName;
+        
+        static Action fromJson(JSONObject json) {
+            try {
+                Action action = new Action();
+                action.type = json.getString("type");
+                
+                switch (action.type) {
+                    case "speak":
+                        action.text = json.optString("text");
+                        action.template = json.optString("template", null);
+                        break;
+                    case "notify":
+                        action.title = json.getString("title");
+                        action.message = json.optString("message");
+                        break;
+                    case "launch":
+                        action.packageName = json.getString("package");
+                        break;
+                }
+                
+                return action;
+                
+            } catch (JSONException e) {
+                Log.e(TAG, "解析动作失败", e);
+                return null;
+            }
+        }
+    }
+}
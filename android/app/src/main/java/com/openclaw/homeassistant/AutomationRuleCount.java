@@ -0,0 +1,19 @@
+package com.openclaw.homeassistant;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * 每条规则的触发次数（Room 表 automation_rule_counts）
+ * 与事件在同一事务中累加，按主键查询；过期清理后整体重建
+ */
+@Entity(tableName = "automation_rule_counts")
+public class AutomationRuleCount {
+    
+    @PrimaryKey
+    @NonNull
+    public String ruleId = "";
+    
+    public int triggerCount;
+}
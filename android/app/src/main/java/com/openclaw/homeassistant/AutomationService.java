@@ -72,8 +72,9 @@ public class AutomationService extends Service {
     public void onDestroy() {
         Log.d(TAG, "服务销毁");
         
+        // 停止引擎；返回前日志与统计队列已提交完毕
         if (automationEngine != null) {
-            automationEngine.stop();
+            automationEngine.shutdown();
         }
         
         super.onDestroy();
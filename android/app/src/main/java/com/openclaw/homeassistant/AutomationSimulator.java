@@ -0,0 +1,314 @@
+package com.openclaw.homeassistant;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 自动化规则无头模拟器
+ * 用虚拟时钟把合成事件流送入真实的规则解析 (AutomationRule.fromJson) 和分发 (TriggerIndex) 路径：
+ * 1. 时间触发：与 TimeTriggerScheduler 相同，按时间轮直接跳到下一个非空分钟
+ * 2. 电量变化：按充放电模型逐分钟变化，电量不变时不分发（同 AutomationEngine.onBatteryChanged）
+ * 3. 电源插拔：每晚插电、早晨拔电，白天偶尔临时充电
+ * 命中后按模拟的设备状态对规则条件 (RuleCondition) 求值，与 AutomationEngine 一致。
+ * 报告命中/执行次数、事件吞吐和单次分发延迟分位数。
+ *
+ * 不依赖 Context / AlarmManager / 墙上时钟，可在普通 JVM 上运行；
+ * 命令行入口在 benchmark 模块（AutomationSimulatorMain）：
+ *   ./gradlew :benchmark:simulate --args="规则数 天数 种子"
+ */
+class AutomationSimulator {
+    
+    static final int DEFAULT_RULES = 10_000;
+    static final int DEFAULT_DAYS = 30;
+    static final long DEFAULT_SEED = 42L;
+    
+    // 虚拟时钟起点：2024-01-01 00:00（本地分钟）
+    static final long DEFAULT_START_MINUTE = 19723L * TriggerIndex.MINUTES_PER_DAY;
+    
+    private final long seed;
+    private final long startMinute;
+    
+    AutomationSimulator(long seed) {
+        this(seed, DEFAULT_START_MINUTE);
+    }
+    
+    AutomationSimulator(long seed, long startMinute) {
+        this.seed = seed;
+        this.startMinute = startMinute;
+    }
+    
+    // ============== 规则生成 ==============
+    
+    /**
+     * 生成合成规则（经由 AutomationRule.fromJson 解析）
+     * 约 55% 时间、25% 电量、15% 电源，5% 时间 + 电量组合；约 30% 带执行条件
+     */
+    static List<AutomationRule> generateRules(int count, long seed) {
+        Random random = new Random(seed);
+        List<AutomationRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                AutomationRule rule = AutomationRule.fromJson(generateRuleJson(i, random));
+                if (rule != null) rules.add(rule);
+            } catch (JSONException e) {
+                throw new IllegalStateException("生成规则失败", e);
+            }
+        }
+        return rules;
+    }
+    
+    static JSONObject generateRuleJson(int i, Random random) throws JSONException {
+        JSONArray triggers = new JSONArray();
+        int kind = random.nextInt(100);
+        if (kind < 60) {
+            triggers.put(timeTrigger(random));
+        }
+        if (kind >= 55 && kind < 85) {
+            triggers.put(new JSONObject()
+                .put("type", "battery")
+                .put("level_below", 5 + random.nextInt(46)));
+        }
+        if (kind >= 85) {
+            triggers.put(new JSONObject()
+                .put("type", "power")
+                .put("state", random.nextBoolean() ? "plugged" : "unplugged"));
+        }
+        
+        JSONArray actions = new JSONArray()
+            .put(new JSONObject().put("type", "speak").put("text", "规则 " + i));
+        
+        JSONObject rule = new JSONObject()
+            .put("id", "sim_" + i)
+            .put("name", "模拟规则 " + i)
+            .put("enabled", true)
+            .put("triggers", triggers)
+            .put("actions", actions);
+        if (random.nextInt(10) < 3) {
+            rule.put("condition", condition(random));
+        }
+        return rule;
+    }
+    
+    /**
+     * 工作日白天且（电量充足或正在充电），部分规则再取反
+     */
+    private static JSONObject condition(Random random) throws JSONException {
+        int from = 6 + random.nextInt(6);
+        JSONObject condition = new JSONObject()
+            .put("type", "and")
+            .put("conditions", new JSONArray()
+                .put(new JSONObject().put("type", "days").put("days", new JSONArray().put(1).put(2).put(3).put(4).put(5)))
+                .put(new JSONObject().put("type", "time_window")
+                    .put("from", String.format(Locale.US, "%02d:00", from))
+                    .put("to", String.format(Locale.US, "%02d:30", from + 8)))
+                .put(new JSONObject().put("type", "or").put("conditions", new JSONArray()
+                    .put(new JSONObject().put("type", "battery_range").put("min", 20 + random.nextInt(30)))
+                    .put(new JSONObject().put("type", "charging").put("charging", true)))));
+        if (random.nextInt(4) == 0) {
+            condition = new JSONObject().put("type", "not").put("condition", condition);
+        }
+        return condition;
+    }
+    
+    private static JSONObject timeTrigger(Random random) throws JSONException {
+        // 20% 集中在整点（模拟常见的 07:00 / 08:00 等时刻），其余均匀分布
+        int minuteOfDay = random.nextInt(5) == 0
+            ? random.nextInt(24) * 60
+            : random.nextInt(TriggerIndex.MINUTES_PER_DAY);
+        JSONObject trigger = new JSONObject()
+            .put("type", "time")
+            .put("time", String.format(Locale.US, "%02d:%02d", minuteOfDay / 60, minuteOfDay % 60));
+        
+        int days = random.nextInt(4);
+        if (days == 1) {
+            trigger.put("days", new JSONArray().put(1).put(2).put(3).put(4).put(5));
+        } else if (days == 2) {
+            trigger.put("days", new JSONArray().put(0).put(6));
+        }
+        return trigger;
+    }
+    
+    // ============== 模拟 ==============
+    
+    /**
+     * 用虚拟时钟模拟 days 天
+     */
+    Report run(List<AutomationRule> rules, int days) {
+        Report report = new Report(rules.size(), days);
+        Random random = new Random(seed);
+        
+        long buildStart = System.nanoTime();
+        TriggerIndex index = new TriggerIndex();
+        for (AutomationRule rule : rules) {
+            index.add(rule);
+        }
+        report.indexBuildNanos = System.nanoTime() - buildStart;
+        
+        DeviceState state = new DeviceState();
+        int[] firedPerSlot = new int[rules.size()];
+        TriggerIndex.RuleSink sink = rule -> {
+            report.matched++;
+            if (rule.matchesCondition(state)) {
+                firedPerSlot[rule.indexSlot]++;
+                report.fired++;
+            }
+        };
+        
+        long endMinute = startMinute + (long) days * TriggerIndex.MINUTES_PER_DAY;
+        long nextTimeMinute = nextTimeMinute(index, startMinute);
+        int batteryLevel = 80;
+        boolean plugged = false;
+        state.minuteOfWeek = TriggerIndex.minuteOfWeek(startMinute * 60_000L);
+        state.batteryLevel = batteryLevel;
+        int plugAt = 23 * 60 + random.nextInt(60);
+        int unplugAt = 7 * 60 + random.nextInt(60);
+        
+        long runStart = System.nanoTime();
+        dispatchBattery(index, batteryLevel, state, sink, report);
+        
+        for (long minute = startMinute + 1; minute <= endMinute; minute++) {
+            int minuteOfDay = (int) (minute % TriggerIndex.MINUTES_PER_DAY);
+            state.minuteOfWeek = TriggerIndex.minuteOfWeek(minute * 60_000L);
+            
+            // 电源：夜间插电、早晨拔电，白天 0.1% 概率临时充电 30-90 分钟
+            boolean plugChange = false;
+            if (!plugged && minuteOfDay == plugAt) {
+                plugged = true;
+                plugChange = true;
+            } else if (!plugged && random.nextInt(1000) == 0) {
+                plugged = true;
+                plugChange = true;
+                unplugAt = (minuteOfDay + 30 + random.nextInt(60)) % TriggerIndex.MINUTES_PER_DAY;
+            } else if (plugged && minuteOfDay == unplugAt) {
+                plugged = false;
+                plugChange = true;
+                plugAt = 23 * 60 + random.nextInt(60);
+                unplugAt = 7 * 60 + random.nextInt(60);
+            }
+            if (plugChange) {
+                state.charging = plugged;
+                long t0 = System.nanoTime();
+                index.dispatchPower(plugged, sink);
+                report.recordLatency(System.nanoTime() - t0);
+                report.powerEvents++;
+            }
+            
+            // 电量：放电约每 8 分钟 -1%，充电约每 2 分钟 +1%
+            int level = batteryLevel;
+            if (plugged) {
+                if (level < 100 && random.nextBoolean()) level++;
+            } else {
+                if (level > 1 && random.nextInt(8) == 0) level--;
+            }
+            if (level != batteryLevel) {
+                batteryLevel = level;
+                state.batteryLevel = level;
+                dispatchBattery(index, batteryLevel, state, sink, report);
+            }
+            
+            // 时间：只在时间轮上的下一个非空分钟分发
+            if (minute == nextTimeMinute) {
+                long t0 = System.nanoTime();
+                index.dispatchTime(TriggerIndex.minuteOfWeek(minute * 60_000L), sink);
+                report.recordLatency(System.nanoTime() - t0);
+                report.timeEvents++;
+                nextTimeMinute = nextTimeMinute(index, minute);
+            }
+        }
+        report.wallNanos = System.nanoTime() - runStart;
+        
+        for (int count : firedPerSlot) {
+            if (count > 0) report.rulesFired++;
+        }
+        report.finish();
+        return report;
+    }
+    
+    private static void dispatchBattery(TriggerIndex index, int level, DeviceState state,
+                                        TriggerIndex.RuleSink sink, Report report) {
+        long t0 = System.nanoTime();
+        index.dispatchBattery(level, state, sink);
+        report.recordLatency(System.nanoTime() - t0);
+        report.batteryEvents++;
+    }
+    
+    private static long nextTimeMinute(TriggerIndex index, long minute) {
+        int delta = index.minutesUntilNextTime(TriggerIndex.minuteOfWeek(minute * 60_000L));
+        return delta < 0 ? Long.MAX_VALUE : minute + delta;
+    }
+    
+    /**
+     * 模拟结果
+     */
+    static class Report {
+        final int ruleCount;
+        final int days;
+        
+        long timeEvents;
+        long batteryEvents;
+        long powerEvents;
+        // 触发器命中次数 / 条件满足后实际执行次数
+        long matched;
+        long fired;
+        int rulesFired;
+        long indexBuildNanos;
+        long wallNanos;
+        
+        private long[] latencies = new long[1024];
+        private int latencyCount = 0;
+        
+        Report(int ruleCount, int days) {
+            this.ruleCount = ruleCount;
+            this.days = days;
+        }
+        
+        long events() {
+            return timeEvents + batteryEvents + powerEvents;
+        }
+        
+        double eventsPerSecond() {
+            return wallNanos > 0 ? events() * 1e9 / wallNanos : 0;
+        }
+        
+        /**
+         * 单次分发延迟分位数（纳秒），p 取 0-100
+         */
+        long latencyPercentile(double p) {
+            if (latencyCount == 0) return 0;
+            int rank = (int) Math.ceil(p / 100.0 * latencyCount) - 1;
+            return latencies[Math.max(0, Math.min(latencyCount - 1, rank))];
+        }
+        
+        void recordLatency(long nanos) {
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencyCount * 2);
+            }
+            latencies[latencyCount++] = nanos;
+        }
+        
+        void finish() {
+            Arrays.sort(latencies, 0, latencyCount);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "规则 %d 条，模拟 %d 天，索引构建 %.1f ms%n"
+                    + "事件 %d（时间 %d，电量 %d，电源 %d），耗时 %.1f ms，%.0f 事件/秒%n"
+                    + "命中 %d 次，条件满足执行 %d 次，%d 条规则至少执行一次%n"
+                    + "分发延迟 p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns",
+                ruleCount, days, indexBuildNanos / 1e6,
+                events(), timeEvents, batteryEvents, powerEvents, wallNanos / 1e6, eventsPerSecond(),
+                matched, fired, rulesFired,
+                latencyPercentile(50), latencyPercentile(90), latencyPercentile(99),
+                latencyPercentile(99.9), latencyPercentile(100));
+        }
+    }
+}
@@ -224,7 +224,7 @@ public class ConfigActivity extends AppCompatActivity {
                     automationEngine.reloadRules();
                 } else {
                     if (automationEngine != null) {
-                        automationEngine.stop();
+                        automationEngine.shutdown();
                         automationEngine = null;
                     }
                 }
@@ -417,7 +417,9 @@ public class ConfigActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         if (automationEngine != null) {
-            automationEngine.stop();
+            // 关闭执行线程池、写入线程与缓存线程，并提交排队中的日志与统计
+            automationEngine.shutdown();
+            automationEngine = null;
         }
         super.onDestroy();
     }
@@ -356,6 +356,35 @@ public class ConfigManager {
         }
     }
     
+    /**
+     * 模板内容预取提前量（分钟），0 表示不预取
+     */
+    public int getTemplatePrefetchLeadMinutes() {
+        JSONObject automation = config.optJSONObject("automation");
+        if (automation == null) return 5;
+        return Math.max(0, Math.min(60, automation.optInt("prefetch_lead_minutes", 5)));
+    }
+    
+    /**
+     * 自动化日志缓冲条数（环形日志，写入后同步到历史数据库）
+     */
+    public int getAutomationLogCapacity() {
+        JSONObject automation = config.optJSONObject("automation");
+        if (automation == null) return AutomationLogger.DEFAULT_CAPACITY;
+        return Math.max(100, Math.min(100000,
+            automation.optInt("log_capacity", AutomationLogger.DEFAULT_CAPACITY)));
+    }
+    
+    /**
+     * 自动化原始事件保留天数（汇总统计另行保留）
+     */
+    public int getAutomationLogRetentionDays() {
+        JSONObject automation = config.optJSONObject("automation");
+        if (automation == null) return AutomationLogger.DEFAULT_RETENTION_DAYS;
+        return Math.max(1, Math.min(365,
+            automation.optInt("log_retention_days", AutomationLogger.DEFAULT_RETENTION_DAYS)));
+    }
+    
     /**
      * 自动化是否启用
      */
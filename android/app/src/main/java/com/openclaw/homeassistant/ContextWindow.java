@@ -0,0 +1,172 @@
+package com.openclaw.homeassistant;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 当前会话的上下文窗口：尚未折叠的原始消息 + 滚动摘要
+ * 构建请求时从最新的消息往前按 token 预算装入，装不下的较早消息移出窗口并折叠进摘要；
+ * 移出的消息不再回到窗口，摘要只在窗口滑动时增量更新，预算不变时重复构建结果相同。
+ * 摘要在本地生成，不增加请求往返：每条移出的消息取第一句（最多 SUMMARY_LINE_LENGTH 字）成为一行，
+ * 总量超过 SUMMARY_TOKEN_BUDGET 时丢弃最早的行。
+ *
+ * 不依赖 Android 与数据库，消息类型只需实现 Turn；非线程安全，由 ConversationStore 在锁内调用。
+ */
+final class ContextWindow<M extends ContextWindow.Turn> {
+    
+    static final int SUMMARY_TOKEN_BUDGET = 300;
+    private static final int SUMMARY_LINE_LENGTH = 60;
+    private static final String SUMMARY_HEADER = "之前的对话摘要：";
+    
+    /**
+     * 窗口中的一条消息
+     */
+    interface Turn {
+        String role();
+        
+        String content();
+    }
+    
+    /**
+     * 一次构建的结果
+     */
+    static final class Window<M> {
+        // 没有摘要时为 null
+        final String summary;
+        // 按时间顺序
+        final List<M> messages;
+        
+        Window(String summary, List<M> messages) {
+            this.summary = summary;
+            this.messages = messages;
+        }
+    }
+    
+    private final int maxPending;
+    private final ArrayDeque<M> pending = new ArrayDeque<>();
+    private final ArrayDeque<String> summaryLines = new ArrayDeque<>();
+    private int summaryTokens;
+    // 摘要文本缓存，行变化时失效
+    private String summary;
+    
+    /**
+     * @param maxPending 最多保留的原始消息数，超出的最早消息直接折叠
+     */
+    ContextWindow(int maxPending) {
+        this.maxPending = maxPending;
+    }
+    
+    void add(M message) {
+        pending.addLast(message);
+        while (pending.size() > maxPending) {
+            fold(pending.removeFirst());
+        }
+    }
+    
+    /**
+     * 用已保存的消息（按时间顺序）重建窗口，之前加入的消息排在其后
+     */
+    void restore(List<M> saved) {
+        List<M> newer = new ArrayList<>(pending);
+        pending.clear();
+        for (M message : saved) {
+            add(message);
+        }
+        for (M message : newer) {
+            add(message);
+        }
+    }
+    
+    void clear() {
+        pending.clear();
+        summaryLines.clear();
+        summaryTokens = 0;
+        summary = null;
+    }
+    
+    /**
+     * 窗口中的原始消息（按时间顺序）
+     */
+    List<M> messages() {
+        return new ArrayList<>(pending);
+    }
+    
+    /**
+     * 从最新的消息往前装入，摘要与消息合计不超过 tokenBudget；最新一条消息总会装入
+     * 窗口之外的消息折叠进摘要
+     */
+    Window<M> build(int maxMessages, int tokenBudget) {
+        int count = fit(maxMessages, tokenBudget, summaryTokens());
+        if (count < pending.size()) {
+            // 需要折叠时按摘要上限预留，折叠后摘要增长也不会超出预算
+            count = fit(maxMessages, tokenBudget, TokenEstimator.MESSAGE_OVERHEAD + SUMMARY_TOKEN_BUDGET);
+            while (pending.size() > count) {
+                fold(pending.removeFirst());
+            }
+        }
+        return new Window<>(summary(), messages());
+    }
+    
+    /**
+     * 已用 used 个 token 时，从最新往前能装入的消息数
+     */
+    private int fit(int maxMessages, int tokenBudget, int used) {
+        int count = 0;
+        Iterator<M> it = pending.descendingIterator();
+        while (it.hasNext() && count < maxMessages) {
+            int cost = TokenEstimator.estimateMessage(it.next().content());
+            if (count > 0 && used + cost > tokenBudget) break;
+            used += cost;
+            count++;
+        }
+        return count;
+    }
+    
+    // ============== 摘要 ==============
+    
+    String summary() {
+        if (summary == null && !summaryLines.isEmpty()) {
+            StringBuilder sb = new StringBuilder(SUMMARY_HEADER);
+            for (String line : summaryLines) {
+                sb.append('\n').append(line);
+            }
+            summary = sb.toString();
+        }
+        return summary;
+    }
+    
+    private int summaryTokens() {
+        if (summaryLines.isEmpty()) return 0;
+        return TokenEstimator.MESSAGE_OVERHEAD + TokenEstimator.estimate(SUMMARY_HEADER) + summaryTokens;
+    }
+    
+    private void fold(M message) {
+        String line = ("user".equals(message.role()) ? "用户：" : "助手：") + firstSentence(message.content());
+        summaryLines.addLast(line);
+        summaryTokens += TokenEstimator.estimate(line);
+        while (summaryTokens > SUMMARY_TOKEN_BUDGET - TokenEstimator.estimate(SUMMARY_HEADER)
+                && summaryLines.size() > 1) {
+            summaryTokens -= TokenEstimator.estimate(summaryLines.removeFirst());
+        }
+        summary = null;
+    }
+    
+    private static String firstSentence(String content) {
+        if (content == null) return "";
+        String text = content.trim();
+        int end = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '。' || c == '！' || c == '？' || c == '!' || c == '?' || c == '\n') {
+                end = i + 1;
+                break;
+            }
+        }
+        if (end > SUMMARY_LINE_LENGTH) {
+            return text.substring(0, SUMMARY_LINE_LENGTH) + "…";
+        }
+        return text.substring(0, end).trim();
+    }
+}
@@ -0,0 +1,131 @@
+package com.openclaw.homeassistant;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+/**
+ * 对话会话与消息的读写
+ * 所有方法会访问数据库，需在后台线程调用
+ */
+@Dao
+public abstract class ConversationDao {
+    
+    // ============== 写入 ==============
+    
+    @Insert
+    public abstract long insertSession(ConversationSession session);
+    
+    /**
+     * 追加一条消息并更新会话头（一次小事务，与历史总量无关）
+     */
+    @Transaction
+    public void appendMessage(ConversationMessage message) {
+        message.id = insertMessage(message);
+        insertIndex(message.id, ConversationSearch.indexTokens(message.content));
+        touchSession(message.sessionId, message.timestamp);
+    }
+    
+    /**
+     * 写入整段会话（导入旧数据 / addToHistory）
+     * @return 会话 id
+     */
+    @Transaction
+    public long insertSessionWithMessages(ConversationSession session, List<ConversationMessage> messages) {
+        long sessionId = insertSession(session);
+        for (ConversationMessage message : messages) {
+            message.sessionId = sessionId;
+        }
+        for (ConversationMessage message : messages) {
+            message.id = insertMessage(message);
+            insertIndex(message.id, ConversationSearch.indexTokens(message.content));
+        }
+        return sessionId;
+    }
+    
+    /**
+     * 只保留最近活动的 keep 个会话
+     */
+    @Transaction
+    public void trimSessions(int keep) {
+        deleteIndexOutside(keep);
+        deleteMessagesOutside(keep);
+        deleteSessionsOutside(keep);
+    }
+    
+    @Query("INSERT OR REPLACE INTO meta (name, value) VALUES (:name, :value)")
+    public abstract void putMeta(String name, String value);
+    
+    @Transaction
+    public void clearAll() {
+        deleteAllIndex();
+        deleteAllMessages();
+        deleteAllSessions();
+    }
+    
+    // ============== 查询 ==============
+    
+    @Query("SELECT value FROM meta WHERE name = :name")
+    public abstract String getMeta(String name);
+    
+    @Query("SELECT * FROM sessions WHERE id = :sessionId")
+    public abstract ConversationSession getSession(long sessionId);
+    
+    /** 最近活动的会话（从新到旧） */
+    @Query("SELECT * FROM sessions ORDER BY updatedAt DESC LIMIT :limit")
+    public abstract List<ConversationSession> getSessions(int limit);
+    
+    /** 会话的全部消息（按顺序） */
+    @Query("SELECT * FROM messages WHERE sessionId = :sessionId ORDER BY id")
+    public abstract List<ConversationMessage> getMessages(long sessionId);
+    
+    /** 会话最近的 limit 条消息（按顺序） */
+    @Query("SELECT * FROM (SELECT * FROM messages WHERE sessionId = :sessionId ORDER BY id DESC LIMIT :limit)"
+        + " ORDER BY id")
+    public abstract List<ConversationMessage> getRecentMessages(long sessionId, int limit);
+    
+    /**
+     * 全文检索：最新的 limit 条命中（由 ConversationSearch.rank 按相关度排序）
+     * @param match ConversationSearch.matchQuery 生成的 MATCH 表达式
+     */
+    @Query("SELECT m.id AS messageId, m.sessionId, m.role, m.content, m.timestamp,"
+        + " s.preview AS sessionPreview, matchinfo(messages_fts, 'pcnalx') AS matchinfo"
+        + " FROM messages_fts JOIN messages m ON m.id = messages_fts.rowid"
+        + " LEFT JOIN sessions s ON s.id = m.sessionId"
+        + " WHERE messages_fts MATCH :match ORDER BY messages_fts.rowid DESC LIMIT :limit")
+    public abstract List<ConversationSearchHit> search(String match, int limit);
+    
+    // ============== 内部语句 ==============
+    
+    @Insert
+    abstract long insertMessage(ConversationMessage message);
+    
+    @Query("INSERT INTO messages_fts (rowid, tokens) VALUES (:rowid, :tokens)")
+    abstract void insertIndex(long rowid, String tokens);
+    
+    @Query("UPDATE sessions SET updatedAt = :timestamp, messageCount = messageCount + 1 WHERE id = :sessionId")
+    abstract void touchSession(long sessionId, long timestamp);
+    
+    @Query("DELETE FROM messages_fts WHERE rowid IN (SELECT id FROM messages WHERE sessionId NOT IN"
+        + " (SELECT id FROM sessions ORDER BY updatedAt DESC LIMIT :keep))")
+    abstract void deleteIndexOutside(int keep);
+    
+    @Query("DELETE FROM messages WHERE sessionId NOT IN"
+        + " (SELECT id FROM sessions ORDER BY updatedAt DESC LIMIT :keep)")
+    abstract void deleteMessagesOutside(int keep);
+    
+    @Query("DELETE FROM sessions WHERE id NOT IN (SELECT id FROM sessions ORDER BY updatedAt DESC LIMIT :keep)")
+    abstract void deleteSessionsOutside(int keep);
+    
+    @Query("DELETE FROM messages_fts")
+    abstract void deleteAllIndex();
+    
+    @Query("DELETE FROM messages")
+    abstract void deleteAllMessages();
+    
+    @Query("DELETE FROM sessions")
+    abstract void deleteAllSessions();
+}
@@ -0,0 +1,65 @@
+package com.openclaw.homeassistant;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * 对话历史数据库（进程内单例）
+ * 对话内容无法重新生成，结构变更需提供 Migration，不能破坏性重建
+ */
+// 版本 2：新增全文索引 messages_fts
+// 版本 3：新增元数据表 meta
+@Database(entities = {ConversationSession.class, ConversationMessage.class, ConversationMessageFts.class,
+        ConversationMeta.class},
+    version = 3, exportSchema = false)
+public abstract class ConversationDatabase extends RoomDatabase {
+    
+    private static final String DB_NAME = "conversations.db";
+    
+    private static volatile ConversationDatabase instance;
+    
+    /**
+     * 创建全文索引并为已有消息建立索引（分词在 Java 中完成，只能逐条写入）
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `messages_fts` USING FTS4(`tokens` TEXT)");
+            try (Cursor cursor = db.query("SELECT id, content FROM messages")) {
+                while (cursor.moveToNext()) {
+                    db.execSQL("INSERT INTO messages_fts (rowid, tokens) VALUES (?, ?)",
+                        new Object[]{cursor.getLong(0), ConversationSearch.indexTokens(cursor.getString(1))});
+                }
+            }
+        }
+    };
+    
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `meta` (`name` TEXT NOT NULL, `value` TEXT, PRIMARY KEY(`name`))");
+        }
+    };
+    
+    public abstract ConversationDao conversationDao();
+    
+    public static ConversationDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ConversationDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            ConversationDatabase.class, DB_NAME)
+                        .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
+                        .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
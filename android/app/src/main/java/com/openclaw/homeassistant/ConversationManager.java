@@ -1,26 +1,23 @@
 package com.openclaw.homeassistant;
 
 import android.content.Context;
-import android.content.SharedPreferences;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 对话管理器 - 处理多轮对话上下文和历史记录
+ * 当前对话即最近的一个会话；数据保存在 ConversationDatabase，由 ConversationStore 增量写入，
+ * 追加一条消息只写一行，与历史记录多少无关
  */
 public class ConversationManager {
-    private static final String PREF_CONVERSATION = "conversation_history";
-    private static final String PREF_HISTORY = "chat_history";
-    private static final int MAX_CONTEXT_SIZE = 20; // 最多保存 20 条上下文
+    // 请求上下文的默认 token 预算（含系统提示与摘要）
+    public static final int DEFAULT_TOKEN_BUDGET = 2000;
     
-    private final SharedPreferences contextPrefs;
-    private final SharedPreferences historyPrefs;
-    private List<Message> conversationContext;
-    private List<ChatHistory> chatHistory;
+    private static final String SYSTEM_PROMPT = "你是一个家庭助手，请理解用户的语音指令并提供相应的帮助。保持对话连贯性。";
     
-    public static class Message {
+    private final ConversationStore store;
+    
+    public static class Message implements ContextWindow.Turn {
         public String role;
         public String content;
         public long timestamp;
@@ -30,169 +27,119 @@ public class ConversationManager {
             this.content = content;
             this.timestamp = System.currentTimeMillis();
         }
+        
+        @Override
+        public String role() {
+            return role;
+        }
+        
+        @Override
+        public String content() {
+            return content;
+        }
     }
     
+    /**
+     * 会话头（不含消息内容，消息通过 getSessionMessages 按需读取）
+     */
     public static class ChatHistory {
-        public String id;
+        public long id;
         public String preview;
         public long timestamp;
-        public List<Message> messages;
+        public int messageCount;
         
-        public ChatHistory(String preview, List<Message> messages) {
-            this.id = String.valueOf(System.currentTimeMillis());
-            this.preview = preview;
-            this.timestamp = System.currentTimeMillis();
-            this.messages = messages;
+        ChatHistory(ConversationSession session) {
+            this.id = session.id;
+            this.preview = session.preview;
+            this.timestamp = session.updatedAt;
+            this.messageCount = session.messageCount;
         }
     }
     
     public ConversationManager(Context context) {
-        contextPrefs = context.getSharedPreferences(PREF_CONVERSATION, Context.MODE_PRIVATE);
-        historyPrefs = context.getSharedPreferences(PREF_HISTORY, Context.MODE_PRIVATE);
-        loadContext();
-        loadHistory();
-    }
-    
-    private void loadContext() {
-        conversationContext = new ArrayList<>();
-        String json = contextPrefs.getString("context", "[]");
-        try {
-            JSONArray array = new JSONArray(json);
-            for (int i = 0; i < array.length(); i++) {
-                JSONObject obj = array.getJSONObject(i);
-                conversationContext.add(new Message(
-                    obj.getString("role"),
-                    obj.getString("content")
-                ));
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-    
-    private void loadHistory() {
-        chatHistory = new ArrayList<>();
-        String json = historyPrefs.getString("history", "[]");
-        try {
-            JSONArray array = new JSONArray(json);
-            for (int i = 0; i < array.length(); i++) {
-                JSONObject obj = array.getJSONObject(i);
-                ChatHistory history = new ChatHistory(
-                    obj.getString("preview"),
-                    new ArrayList<>()
-                );
-                history.timestamp = obj.getLong("timestamp");
-                history.id = obj.getString("id");
-                
-                JSONArray messages = obj.getJSONArray("messages");
-                for (int j = 0; j < messages.length(); j++) {
-                    JSONObject msg = messages.getJSONObject(j);
-                    history.messages.add(new Message(
-                        msg.getString("role"),
-                        msg.getString("content")
-                    ));
-                }
-                chatHistory.add(history);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        store = ConversationStore.getInstance(context);
     }
     
     public void addToContext(String role, String content) {
-        conversationContext.add(new Message(role, content));
-        
-        // 限制上下文大小
-        if (conversationContext.size() > MAX_CONTEXT_SIZE) {
-            conversationContext = conversationContext.subList(
-                conversationContext.size() - MAX_CONTEXT_SIZE,
-                conversationContext.size()
-            );
-        }
-        
-        saveContext();
-    }
-    
-    public void saveContext() {
-        try {
-            JSONArray array = new JSONArray();
-            for (Message msg : conversationContext) {
-                JSONObject obj = new JSONObject();
-                obj.put("role", msg.role);
-                obj.put("content", msg.content);
-                array.put(obj);
-            }
-            contextPrefs.edit().putString("context", array.toString()).apply();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        store.append(role, content);
     }
     
+    /**
+     * 当前会话最近的消息，会等待加载完成，需在后台线程调用
+     */
     public List<Message> getContext() {
-        return new ArrayList<>(conversationContext);
+        return store.recent();
     }
     
+    /**
+     * 结束当前对话，下一条消息开始新的会话
+     */
     public void clearContext() {
-        conversationContext.clear();
-        saveContext();
+        store.newSession();
     }
     
-    public void addToHistory(String preview, List<Message> messages) {
-        ChatHistory history = new ChatHistory(preview, messages);
-        chatHistory.add(0, history); // 新记录添加到开头
-        
-        // 限制历史记录数量（最近 50 条）
-        if (chatHistory.size() > 50) {
-            chatHistory = chatHistory.subList(0, 50);
-        }
-        
-        saveHistory();
+    /**
+     * 继续历史会话：其最近的消息成为上下文，之后的消息追加到该会话
+     */
+    public void resumeSession(long sessionId) {
+        store.resumeSession(sessionId);
     }
     
-    public void saveHistory() {
-        try {
-            JSONArray array = new JSONArray();
-            for (ChatHistory history : chatHistory) {
-                JSONObject obj = new JSONObject();
-                obj.put("id", history.id);
-                obj.put("preview", history.preview);
-                obj.put("timestamp", history.timestamp);
-                
-                JSONArray messages = new JSONArray();
-                for (Message msg : history.messages) {
-                    JSONObject msgObj = new JSONObject();
-                    msgObj.put("role", msg.role);
-                    msgObj.put("content", msg.content);
-                    messages.put(msgObj);
-                }
-                obj.put("messages", messages);
-                array.put(obj);
-            }
-            historyPrefs.edit().putString("history", array.toString()).apply();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * 另存一段会话到历史记录（不影响当前对话）
+     */
+    public void addToHistory(String preview, List<Message> messages) {
+        store.addSession(preview, messages);
     }
     
+    /**
+     * 最近的会话头（从新到旧，最多 50 个），需在后台线程调用
+     */
     public List<ChatHistory> getHistory() {
-        return new ArrayList<>(chatHistory);
+        return store.sessions();
     }
     
+    /**
+     * 会话的全部消息，需在后台线程调用
+     */
+    public List<Message> getSessionMessages(long sessionId) {
+        return store.messages(sessionId);
+    }
+    
+    /**
+     * 在所有会话的消息中全文检索（按相关度排序），需在后台线程调用
+     */
+    public List<ConversationSearchHit> search(String query, int limit) {
+        return store.search(query, limit);
+    }
+    
+    /**
+     * 删除所有会话，包括当前对话
+     */
     public void clearHistory() {
-        chatHistory.clear();
-        saveHistory();
+        store.clear();
     }
     
+    /**
+     * 请求上下文：系统提示 + 最近最多 maxMessages 条消息，按默认 token 预算截取
+     * 会等待当前会话加载完成（首次启动时含旧数据导入），需在后台线程调用
+     */
     public List<Message> getContextForAPI(int maxMessages) {
-        List<Message> result = new ArrayList<>();
-        result.add(new Message("system", "你是一个家庭助手，请理解用户的语音指令并提供相应的帮助。保持对话连贯性。"));
-        
-        // 添加最近的上下文
-        int start = Math.max(0, conversationContext.size() - maxMessages);
-        for (int i = start; i < conversationContext.size(); i++) {
-            result.add(conversationContext.get(i));
-        }
+        return getContextForAPI(maxMessages, DEFAULT_TOKEN_BUDGET);
+    }
+    
+    /**
+     * 请求上下文：系统提示 + 最近最多 maxMessages 条消息，估算 token 合计不超过 tokenBudget（最新一条总会保留）
+     * 窗口外的较早消息以摘要形式附在系统提示后，摘要在本地增量生成；需在后台线程调用
+     */
+    public List<Message> getContextForAPI(int maxMessages, int tokenBudget) {
+        int budget = tokenBudget - TokenEstimator.MESSAGE_OVERHEAD - TokenEstimator.estimate(SYSTEM_PROMPT + "\n\n");
+        ContextWindow.Window<Message> window = store.buildContext(maxMessages, budget);
         
+        List<Message> result = new ArrayList<>(window.messages.size() + 1);
+        result.add(new Message("system", window.summary != null
+            ? SYSTEM_PROMPT + "\n\n" + window.summary : SYSTEM_PROMPT));
+        result.addAll(window.messages);
         return result;
     }
 }
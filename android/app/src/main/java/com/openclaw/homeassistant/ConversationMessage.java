@@ -0,0 +1,30 @@
+package com.openclaw.homeassistant;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 对话消息（Room 表 messages），只追加
+ * 索引 sessionId + id —— 按会话顺序读取与读取最近若干条
+ */
+@Entity(tableName = "messages",
+    indices = {
+        @Index(value = {"sessionId", "id"})
+    })
+public class ConversationMessage {
+    
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+    
+    public long sessionId;
+    public String role;
+    public String content;
+    public long timestamp;
+    
+    ConversationManager.Message toMessage() {
+        ConversationManager.Message message = new ConversationManager.Message(role, content);
+        message.timestamp = timestamp;
+        return message;
+    }
+}
@@ -0,0 +1,21 @@
+package com.openclaw.homeassistant;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * 消息全文索引（Room FTS4 表 messages_fts），rowid 与 messages.id 相同
+ * tokens 为 ConversationSearch.indexTokens 分好的词，与消息在同一事务中写入和删除
+ */
+@Fts4
+@Entity(tableName = "messages_fts")
+public class ConversationMessageFts {
+    
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    public long rowid;
+    
+    public String tokens;
+}
@@ -0,0 +1,19 @@
+package com.openclaw.homeassistant;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * 对话数据库的键值元数据（Room 表 meta）
+ * 与数据在同一数据库中，可与数据写入放在同一事务里（例如旧数据导入的完成标记）
+ */
+@Entity(tableName = "meta")
+public class ConversationMeta {
+    
+    @PrimaryKey
+    @NonNull
+    public String name = "";
+    
+    public String value;
+}
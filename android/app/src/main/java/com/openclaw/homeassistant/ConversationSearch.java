@@ -0,0 +1,174 @@
+package com.openclaw.homeassistant;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 对话全文检索的分词与排序
+ * SQLite FTS4 自带的 simple 分词器按空白与 ASCII 标点切分，中文整句会成为一个词，
+ * 因此写入索引前先在 Java 中分词，再以空格连接交给 simple 分词器：
+ *   中日韩文字连续段 —— 相邻两字一个词（bigram），末字单独再出一个词，保证每个字都是某个词的开头
+ *   其他字母数字段   —— 整段一个词，转小写
+ * 查询按同样规则分词：两字以上的中文段作为短语（bigram 在索引中相邻），单字和英文词做前缀匹配，各段之间为 AND。
+ * 排序用 matchinfo('pcnalx') 在 Java 中计算 BM25。
+ */
+final class ConversationSearch {
+    
+    // BM25 参数
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    
+    private ConversationSearch() {
+    }
+    
+    // ============== 分词 ==============
+    
+    /**
+     * 写入索引的文本（以空格分隔的词）
+     */
+    static String indexTokens(String text) {
+        StringBuilder sb = new StringBuilder();
+        if (text == null) return "";
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            int c = text.codePointAt(i);
+            int end = runEnd(text, i);
+            if (isCjk(c)) {
+                appendCjkRun(sb, text, i, end, true);
+            } else if (Character.isLetterOrDigit(c)) {
+                appendToken(sb, text.substring(i, end).toLowerCase(Locale.ROOT));
+            }
+            i = end;
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * 用户输入转换为 FTS MATCH 表达式，没有可检索的词时返回 null
+     */
+    static String matchQuery(String input) {
+        StringBuilder sb = new StringBuilder();
+        if (input == null) return null;
+        int i = 0;
+        int n = input.length();
+        while (i < n) {
+            int c = input.codePointAt(i);
+            int end = runEnd(input, i);
+            if (isCjk(c)) {
+                if (input.codePointCount(i, end) == 1) {
+                    appendToken(sb, input.substring(i, end) + "*");
+                } else {
+                    StringBuilder phrase = new StringBuilder();
+                    appendCjkRun(phrase, input, i, end, false);
+                    appendToken(sb, "\"" + phrase + "\"");
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                appendToken(sb, input.substring(i, end).toLowerCase(Locale.ROOT) + "*");
+            }
+            i = end;
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+    
+    /**
+     * 从 start 开始的同类字符段的结束位置：中日韩文字段、其他字母数字段，或单个其他字符
+     */
+    private static int runEnd(String text, int start) {
+        int first = text.codePointAt(start);
+        int i = start + Character.charCount(first);
+        boolean cjk = isCjk(first);
+        if (!cjk && !Character.isLetterOrDigit(first)) return i;
+        while (i < text.length()) {
+            int c = text.codePointAt(i);
+            if (isCjk(c) != cjk || (!cjk && !Character.isLetterOrDigit(c))) break;
+            i += Character.charCount(c);
+        }
+        return i;
+    }
+    
+    /**
+     * 写入一个中文段的 bigram；trailing 为 true 时末字再单独写一个词（单字段只写该字）
+     */
+    private static void appendCjkRun(StringBuilder sb, String text, int start, int end, boolean trailing) {
+        int count = text.codePointCount(start, end);
+        if (count == 1) {
+            appendToken(sb, text.substring(start, end));
+            return;
+        }
+        int i = start;
+        while (i < end) {
+            int next = i + Character.charCount(text.codePointAt(i));
+            if (next >= end) break;
+            int after = next + Character.charCount(text.codePointAt(next));
+            appendToken(sb, text.substring(i, after));
+            i = next;
+        }
+        if (trailing) {
+            appendToken(sb, text.substring(i, end));
+        }
+    }
+    
+    private static void appendToken(StringBuilder sb, String token) {
+        if (sb.length() > 0) sb.append(' ');
+        sb.append(token);
+    }
+    
+    static boolean isCjk(int c) {
+        return Character.isIdeographic(c)
+            || (c >= 0x3040 && c <= 0x30FF)     // 平假名、片假名
+            || (c >= 0xAC00 && c <= 0xD7AF);    // 韩文音节
+    }
+    
+    // ============== 排序 ==============
+    
+    /**
+     * 按 BM25 得分从高到低排序（同分时较新的在前），返回前 limit 条
+     */
+    static List<ConversationSearchHit> rank(List<ConversationSearchHit> hits, int limit) {
+        for (ConversationSearchHit hit : hits) {
+            hit.score = bm25(hit.matchinfo);
+            hit.matchinfo = null;
+        }
+        Collections.sort(hits, (a, b) -> {
+            int byScore = Double.compare(b.score, a.score);
+            return byScore != 0 ? byScore : Long.compare(b.messageId, a.messageId);
+        });
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+    
+    /**
+     * matchinfo('pcnalx')：短语数 p、列数 c、文档总数 n、各列平均词数 a[c]、本行各列词数 l[c]、
+     * 每个短语每列的 [本行命中, 全部命中, 命中文档数] x[p][c][3]，均为本机字节序的 uint32
+     */
+    static double bm25(byte[] matchinfo) {
+        if (matchinfo == null || matchinfo.length < 12) return 0;
+        ByteBuffer buffer = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+        long documents = buffer.getInt(8) & 0xFFFFFFFFL;
+        int avgOffset = 3;
+        int lengthOffset = avgOffset + columns;
+        int hitsOffset = lengthOffset + columns;
+        if (matchinfo.length < (hitsOffset + phrases * columns * 3) * 4) return 0;
+        
+        double score = 0;
+        for (int column = 0; column < columns; column++) {
+            double avgLength = Math.max(1, buffer.getInt((avgOffset + column) * 4) & 0xFFFFFFFFL);
+            double length = buffer.getInt((lengthOffset + column) * 4) & 0xFFFFFFFFL;
+            for (int phrase = 0; phrase < phrases; phrase++) {
+                int base = (hitsOffset + (phrase * columns + column) * 3) * 4;
+                double tf = buffer.getInt(base) & 0xFFFFFFFFL;
+                if (tf == 0) continue;
+                double df = buffer.getInt(base + 8) & 0xFFFFFFFFL;
+                double idf = Math.log((documents - df + 0.5) / (df + 0.5) + 1);
+                score += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,21 @@
+package com.openclaw.homeassistant;
+
+import androidx.room.Ignore;
+
+/**
+ * 全文检索命中的消息（含所属会话的预览）
+ */
+public class ConversationSearchHit {
+    
+    public long messageId;
+    public long sessionId;
+    public String role;
+    public String content;
+    public long timestamp;
+    public String sessionPreview;
+    // matchinfo('pcnalx')，排序后释放
+    public byte[] matchinfo;
+    
+    @Ignore
+    public double score;
+}
@@ -0,0 +1,26 @@
+package com.openclaw.homeassistant;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 对话会话头（Room 表 sessions）
+ * 每条消息写入时在同一事务中更新 updatedAt / messageCount，历史列表只读本表。
+ * 索引 updatedAt —— 按最近活动排序与超出数量的清理
+ */
+@Entity(tableName = "sessions",
+    indices = {
+        @Index(value = "updatedAt")
+    })
+public class ConversationSession {
+    
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+    
+    // 第一条消息的开头
+    public String preview;
+    public long createdAt;
+    public long updatedAt;
+    public int messageCount;
+}
@@ -0,0 +1,417 @@
+package com.openclaw.homeassistant;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 对话存储（进程内单例）：当前会话最近消息的内存缓存 + Room 增量写入
+ * 所有数据库操作在单个后台线程按提交顺序执行：追加一条消息是一次小事务（插入一行并更新会话头），
+ * 与历史总量无关。当前会话 id 保存在 SharedPreferences，只在该线程读写。
+ * 创建时在后台线程加载当前会话的最近消息（首次运行时迁移旧版 SharedPreferences 数据），
+ * 读取上下文会等待加载完成。
+ */
+final class ConversationStore {
+    
+    private static final String TAG = "ConversationStore";
+    
+    static final int MAX_CONTEXT_SIZE = 20;
+    // 加载会话时读取的消息数，超出窗口的较早消息用于重建摘要
+    private static final int RESTORE_SIZE = MAX_CONTEXT_SIZE * 2;
+    static final int MAX_SESSIONS = 50;
+    private static final int PREVIEW_LENGTH = 40;
+    // 全文检索先取最新的若干条命中再按相关度排序，耗时与历史总量无关
+    private static final int SEARCH_CANDIDATES = 1000;
+    
+    private static final String PREF_CONVERSATION = "conversation_history";
+    private static final String KEY_CURRENT_SESSION = "current_session";
+    // 旧版存储：整个上下文 / 全部历史各一个 JSON 字符串
+    private static final String LEGACY_PREF_HISTORY = "chat_history";
+    private static final String LEGACY_KEY_CONTEXT = "context";
+    private static final String LEGACY_KEY_HISTORY = "history";
+    // 旧数据导入完成标记（meta 表，值为导入后的当前会话 id），与导入在同一事务中写入
+    private static final String META_LEGACY_MIGRATED = "legacy_prefs_migrated";
+    
+    private static volatile ConversationStore instance;
+    
+    private final Context context;
+    private final ConversationDatabase database;
+    private final ConversationDao dao;
+    private final SharedPreferences prefs;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "conversation-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    
+    // 当前会话的上下文窗口（最近的消息 + 更早消息的滚动摘要）
+    private final ContextWindow<ConversationManager.Message> window = new ContextWindow<>(MAX_CONTEXT_SIZE);
+    
+    // 当前会话 id，0 表示下一条消息开始新会话（仅写入线程访问）
+    private long sessionId;
+    
+    static ConversationStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ConversationStore.class) {
+                if (instance == null) {
+                    instance = new ConversationStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+    
+    private ConversationStore(Context context) {
+        this.context = context;
+        this.database = ConversationDatabase.getInstance(context);
+        this.dao = database.conversationDao();
+        this.prefs = context.getSharedPreferences(PREF_CONVERSATION, Context.MODE_PRIVATE);
+        writer.execute(this::load);
+    }
+    
+    // ============== 当前会话 ==============
+    
+    /**
+     * 追加一条消息：更新内存缓存，数据库写入在后台线程完成
+     */
+    void append(String role, String content) {
+        ConversationManager.Message message = new ConversationManager.Message(role, content);
+        synchronized (this) {
+            window.add(message);
+        }
+        writer.execute(() -> {
+            try {
+                write(message);
+            } catch (Exception e) {
+                Log.e(TAG, "写入消息失败", e);
+            }
+        });
+    }
+    
+    /**
+     * 当前会话最近的消息（最多 MAX_CONTEXT_SIZE 条）
+     */
+    List<ConversationManager.Message> recent() {
+        awaitLoaded();
+        synchronized (this) {
+            return window.messages();
+        }
+    }
+    
+    /**
+     * 按 token 预算构建请求上下文，预算外的较早消息折叠进摘要（见 ContextWindow）
+     */
+    ContextWindow.Window<ConversationManager.Message> buildContext(int maxMessages, int tokenBudget) {
+        awaitLoaded();
+        synchronized (this) {
+            return window.build(maxMessages, tokenBudget);
+        }
+    }
+    
+    /**
+     * 结束当前会话，下一条消息开始新会话
+     */
+    void newSession() {
+        synchronized (this) {
+            window.clear();
+        }
+        writer.execute(() -> setSession(0));
+    }
+    
+    /**
+     * 继续一个历史会话：加载其最近消息作为上下文，之后的消息追加到该会话
+     */
+    void resumeSession(long id) {
+        writer.execute(() -> {
+            try {
+                if (dao.getSession(id) == null) return;
+                List<ConversationMessage> rows = dao.getRecentMessages(id, RESTORE_SIZE);
+                setSession(id);
+                synchronized (this) {
+                    window.clear();
+                    window.restore(toMessages(rows));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "加载会话失败", e);
+            }
+        });
+    }
+    
+    // ============== 历史 ==============
+    
+    /**
+     * 保存一段独立的会话（不影响当前会话）
+     */
+    void addSession(String preview, List<ConversationManager.Message> messages) {
+        final List<ConversationManager.Message> copy = new ArrayList<>(messages);
+        writer.execute(() -> {
+            try {
+                long now = System.currentTimeMillis();
+                dao.insertSessionWithMessages(sessionRow(preview, now, copy.size()), toRows(copy, now));
+                dao.trimSessions(MAX_SESSIONS);
+            } catch (Exception e) {
+                Log.e(TAG, "保存会话失败", e);
+            }
+        });
+    }
+    
+    /**
+     * 最近活动的会话头（从新到旧，不含消息内容），在之前提交的写入完成后读取
+     * 会等待数据库，需在后台线程调用
+     */
+    List<ConversationManager.ChatHistory> sessions() {
+        return await(() -> {
+            List<ConversationManager.ChatHistory> result = new ArrayList<>();
+            for (ConversationSession session : dao.getSessions(MAX_SESSIONS)) {
+                result.add(new ConversationManager.ChatHistory(session));
+            }
+            return result;
+        }, new ArrayList<>());
+    }
+    
+    /**
+     * 一个会话的全部消息（按顺序），打开会话时按需读取
+     * 会等待数据库，需在后台线程调用
+     */
+    List<ConversationManager.Message> messages(long sessionId) {
+        return await(() -> toMessages(dao.getMessages(sessionId)), new ArrayList<>());
+    }
+    
+    /**
+     * 全文检索消息，按相关度返回前 limit 条
+     * 会等待数据库，需在后台线程调用
+     */
+    List<ConversationSearchHit> search(String query, int limit) {
+        String match = ConversationSearch.matchQuery(query);
+        if (match == null) return new ArrayList<>();
+        return await(() -> ConversationSearch.rank(dao.search(match, SEARCH_CANDIDATES), limit),
+            new ArrayList<>());
+    }
+    
+    /**
+     * 删除所有会话（包括当前会话）
+     */
+    void clear() {
+        synchronized (this) {
+            window.clear();
+        }
+        writer.execute(() -> {
+            try {
+                dao.clearAll();
+            } catch (Exception e) {
+                Log.e(TAG, "清空历史失败", e);
+            }
+            setSession(0);
+        });
+    }
+    
+    // ============== 写入线程 ==============
+    
+    private void write(ConversationManager.Message message) {
+        if (sessionId == 0) {
+            setSession(dao.insertSession(sessionRow(message.content, message.timestamp, 0)));
+            dao.trimSessions(MAX_SESSIONS);
+        }
+        ConversationMessage row = new ConversationMessage();
+        row.sessionId = sessionId;
+        row.role = message.role;
+        row.content = message.content;
+        row.timestamp = message.timestamp;
+        dao.appendMessage(row);
+    }
+    
+    private void setSession(long id) {
+        sessionId = id;
+        if (id == 0) {
+            prefs.edit().remove(KEY_CURRENT_SESSION).apply();
+        } else {
+            prefs.edit().putLong(KEY_CURRENT_SESSION, id).apply();
+        }
+    }
+    
+    private void load() {
+        try {
+            migrateLegacyPrefs();
+        } catch (Exception e) {
+            // 导入失败不影响加载当前会话；未写入完成标记，旧数据保留到下次启动重试
+            Log.e(TAG, "迁移旧版对话记录失败", e);
+        }
+        try {
+            long id = prefs.getLong(KEY_CURRENT_SESSION, 0);
+            if (id == 0) return;
+            if (dao.getSession(id) == null) {
+                setSession(0);
+                return;
+            }
+            sessionId = id;
+            List<ConversationMessage> rows = dao.getRecentMessages(id, RESTORE_SIZE);
+            synchronized (this) {
+                // 加载完成前追加的消息排在已保存的消息之后
+                window.restore(toMessages(rows));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "加载对话失败", e);
+        } finally {
+            loaded.countDown();
+        }
+    }
+    
+    /**
+     * 导入旧版 SharedPreferences 中的历史与上下文（上下文成为当前会话），然后删除旧数据
+     * 导入与完成标记在同一事务中：中途被终止时整体回滚，下次重新导入；
+     * 已导入但旧数据未及删除时，下次只删除旧数据，不会重复导入；
+     * 无法解析的旧数据记录日志后丢弃，不会在每次启动时重复失败
+     */
+    private void migrateLegacyPrefs() {
+        SharedPreferences legacyHistory = context.getSharedPreferences(LEGACY_PREF_HISTORY, Context.MODE_PRIVATE);
+        String historyJson = legacyHistory.getString(LEGACY_KEY_HISTORY, null);
+        String contextJson = prefs.getString(LEGACY_KEY_CONTEXT, null);
+        if (historyJson == null && contextJson == null) return;
+        
+        String migrated = dao.getMeta(META_LEGACY_MIGRATED);
+        if (migrated == null) {
+            JSONArray history = parseLegacy(historyJson, "历史记录");
+            JSONArray contextArray = parseLegacy(contextJson, "上下文");
+            migrated = database.runInTransaction(() -> {
+                String current = Long.toString(importLegacy(history, contextArray));
+                dao.putMeta(META_LEGACY_MIGRATED, current);
+                return current;
+            });
+        }
+        long current = Long.parseLong(migrated);
+        if (current != 0) {
+            setSession(current);
+        }
+        
+        legacyHistory.edit().clear().apply();
+        prefs.edit().remove(LEGACY_KEY_CONTEXT).apply();
+        Log.d(TAG, "已迁移旧版对话记录");
+    }
+    
+    /**
+     * 解析旧版 JSON 数组，无法解析时返回 null（该部分数据丢弃）
+     */
+    static JSONArray parseLegacy(String json, String name) {
+        if (json == null) return null;
+        try {
+            return new JSONArray(json);
+        } catch (JSONException e) {
+            Log.w(TAG, "旧版" + name + "无法解析，已丢弃（" + json.length() + " 字符）", e);
+            return null;
+        }
+    }
+    
+    /**
+     * 写入旧版数据（在事务中调用），格式不对的会话与消息跳过
+     * @return 由旧版上下文生成的当前会话 id，没有时为 0
+     */
+    private long importLegacy(JSONArray history, JSONArray contextArray) {
+        long current = 0;
+        if (history != null) {
+            // 旧版从新到旧排列，按时间顺序导入
+            for (int i = history.length() - 1; i >= 0; i--) {
+                JSONObject obj = history.optJSONObject(i);
+                if (obj == null) continue;
+                long timestamp = obj.optLong("timestamp", System.currentTimeMillis());
+                List<ConversationManager.Message> messages = parseMessages(obj.optJSONArray("messages"));
+                dao.insertSessionWithMessages(sessionRow(obj.optString("preview", ""), timestamp, messages.size()),
+                    toRows(messages, timestamp));
+            }
+        }
+        if (contextArray != null) {
+            List<ConversationManager.Message> messages = parseMessages(contextArray);
+            if (!messages.isEmpty()) {
+                long now = System.currentTimeMillis();
+                ConversationSession session = sessionRow(messages.get(0).content, now, messages.size());
+                current = dao.insertSessionWithMessages(session, toRows(messages, now));
+            }
+        }
+        dao.trimSessions(MAX_SESSIONS);
+        return current;
+    }
+    
+    // ============== 内部 ==============
+    
+    private void awaitLoaded() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 在写入线程执行查询并等待结果，失败时返回 fallback
+     */
+    private <T> T await(Callable<T> query, T fallback) {
+        try {
+            return writer.submit(query).get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "查询对话失败", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return fallback;
+    }
+    
+    private static ConversationSession sessionRow(String preview, long timestamp, int messageCount) {
+        ConversationSession session = new ConversationSession();
+        session.preview = preview != null && preview.length() > PREVIEW_LENGTH
+            ? preview.substring(0, PREVIEW_LENGTH) : preview;
+        session.createdAt = timestamp;
+        session.updatedAt = timestamp;
+        session.messageCount = messageCount;
+        return session;
+    }
+    
+    private static List<ConversationManager.Message> toMessages(List<ConversationMessage> rows) {
+        List<ConversationManager.Message> messages = new ArrayList<>(rows.size());
+        for (ConversationMessage row : rows) {
+            messages.add(row.toMessage());
+        }
+        return messages;
+    }
+    
+    private static List<ConversationMessage> toRows(List<ConversationManager.Message> messages, long timestamp) {
+        List<ConversationMessage> rows = new ArrayList<>(messages.size());
+        for (ConversationManager.Message message : messages) {
+            ConversationMessage row = new ConversationMessage();
+            row.role = message.role;
+            row.content = message.content;
+            row.timestamp = message.timestamp > 0 ? message.timestamp : timestamp;
+            rows.add(row);
+        }
+        return rows;
+    }
+    
+    /**
+     * 旧版消息数组，缺少角色或内容的项跳过
+     */
+    static List<ConversationManager.Message> parseMessages(JSONArray array) {
+        List<ConversationManager.Message> messages = new ArrayList<>();
+        if (array == null) return messages;
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject obj = array.optJSONObject(i);
+            if (obj == null || obj.isNull("role") || obj.isNull("content")) continue;
+            ConversationManager.Message message = new ConversationManager.Message(
+                obj.optString("role"), obj.optString("content"));
+            // 旧版没有保存消息时间，使用会话时间
+            message.timestamp = 0;
+            messages.add(message);
+        }
+        return messages;
+    }
+}
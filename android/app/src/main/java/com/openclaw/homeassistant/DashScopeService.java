@@ -2,19 +2,34 @@ package com.openclaw.homeassistant;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 import okhttp3.*;
+import okio.BufferedSource;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class DashScopeService {
+    private static final String TAG = "DashScopeService";
     private static final String BASE_URL = "https://dashscope.aliyuncs.com/api/v1";
     private static final String API_KEY_PREFERENCE = "dashscope_api_key";
     
+    // 回复缓存的查找可能读磁盘，在后台线程进行
+    private static final ExecutorService CACHE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dashscope-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final String baseUrl;
     private final OkHttpClient client;
     private final SharedPreferences preferences;
+    private final ResponseCache responseCache;
     
     public interface DashScopeCallback {
         void onSuccess(String response);
@@ -29,16 +44,56 @@ public class DashScopeService {
         void onError(String error);
     }
     
+    /**
+     * 流式输出回调，均在网络线程调用
+     */
+    public interface StreamCallback {
+        /**
+         * 收到增量文本，text 为目前为止的完整回复
+         */
+        void onPartial(String text);
+        
+        /**
+         * 一句话已完整，可交给 TTS 朗读
+         */
+        void onSentence(String sentence);
+        
+        void onComplete(String response);
+        
+        void onError(String error);
+    }
+    
     public DashScopeService(Context context) {
-        this.preferences = context.getSharedPreferences("OpenClawPrefs", Context.MODE_PRIVATE);
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(60, TimeUnit.SECONDS)
-            .writeTimeout(30, TimeUnit.SECONDS)
-            .build();
+        this(BASE_URL,
+            new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build(),
+            context.getSharedPreferences("OpenClawPrefs", Context.MODE_PRIVATE),
+            ResponseCache.getInstance(context));
+    }
+    
+    /**
+     * 指定服务地址（测试中指向本地模拟服务器）
+     */
+    DashScopeService(String baseUrl, OkHttpClient client, SharedPreferences preferences, ResponseCache responseCache) {
+        this.baseUrl = baseUrl;
+        this.client = client;
+        this.preferences = preferences;
+        this.responseCache = responseCache;
     }
     
     public void processQuery(String query, DashScopeCallback callback) {
+        processQuery(query, false, callback);
+    }
+    
+    /**
+     * 单轮查询；相同的查询（规范化后）在缓存有效期内直接返回缓存的回复
+     * 注意：应用内目前没有调用方（对话走 processQueryStreaming），回复缓存只在这里生效
+     * @param bypassCache 为 true 时跳过缓存直接请求（需要最新结果时），成功后仍更新缓存
+     */
+    public void processQuery(String query, boolean bypassCache, DashScopeCallback callback) {
         String apiKey = preferences.getString(API_KEY_PREFERENCE, "");
         if (apiKey.isEmpty()) {
             callback.onError("API密钥未配置");
@@ -72,7 +127,7 @@ public class DashScopeService {
             requestBody.put("parameters", parameters);
             
             Request request = new Request.Builder()
-                .url(BASE_URL + "/services/aigc/text-generation/generation")
+                .url(baseUrl + "/services/aigc/text-generation/generation")
                 .addHeader("Authorization", "Bearer " + apiKey)
                 .addHeader("Content-Type", "application/json")
                 .post(RequestBody.create(
@@ -81,38 +136,64 @@ public class DashScopeService {
                 ))
                 .build();
             
-            client.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    callback.onError("网络请求失败: " + e.getMessage());
-                }
-                
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    try {
-                        String responseBody = response.body().string();
-                        if (response.isSuccessful()) {
-                            JSONObject jsonResponse = new JSONObject(responseBody);
-                            String aiResponse = jsonResponse
-                                .getJSONObject("output")
-                                .getJSONArray("choices")
-                                .getJSONObject(0)
-                                .getJSONObject("message")
-                                .getString("content");
-                            callback.onSuccess(aiResponse);
-                        } else {
-                            callback.onError("API错误: " + response.code());
-                        }
-                    } catch (Exception e) {
-                        callback.onError("解析响应失败: " + e.getMessage());
-                    }
+            // 上下文指纹：除查询外影响回复的请求内容
+            String cacheKey = ResponseCache.key(query,
+                requestBody.getString("model") + "\n" + systemMessage.getString("content") + "\n" + parameters);
+            if (cacheKey == null || bypassCache) {
+                if (bypassCache) responseCache.recordBypass();
+                enqueueQuery(request, cacheKey, ResponseCache.ttlFor(query), callback);
+                return;
+            }
+            CACHE_EXECUTOR.execute(() -> {
+                String cached = responseCache.get(cacheKey);
+                if (cached != null) {
+                    Log.d(TAG, "命中回复缓存（" + responseCache.getStatsSummary() + "）");
+                    callback.onSuccess(cached);
+                    return;
                 }
+                enqueueQuery(request, cacheKey, ResponseCache.ttlFor(query), callback);
             });
         } catch (Exception e) {
             callback.onError("请求构建失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 发送单轮查询，成功后写入缓存（cacheKey 为 null 时不缓存）
+     */
+    private void enqueueQuery(Request request, String cacheKey, long cacheTtlMs, DashScopeCallback callback) {
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                callback.onError("网络请求失败: " + e.getMessage());
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try {
+                    String responseBody = response.body().string();
+                    if (response.isSuccessful()) {
+                        JSONObject jsonResponse = new JSONObject(responseBody);
+                        String aiResponse = jsonResponse
+                            .getJSONObject("output")
+                            .getJSONArray("choices")
+                            .getJSONObject(0)
+                            .getJSONObject("message")
+                            .getString("content");
+                        callback.onSuccess(aiResponse);
+                        if (cacheKey != null) {
+                            responseCache.put(cacheKey, aiResponse, cacheTtlMs);
+                        }
+                    } else {
+                        callback.onError("API错误: " + response.code());
+                    }
+                } catch (Exception e) {
+                    callback.onError("解析响应失败: " + e.getMessage());
+                }
+            }
+        });
+    }
+    
     /**
      * 处理查询（带自定义消息列表 - 用于多轮对话）
      */
@@ -126,21 +207,10 @@ public class DashScopeService {
         }
         
         try {
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("model", "qwen-max");
-            
-            JSONObject input = new JSONObject();
-            input.put("messages", messages);
-            requestBody.put("input", input);
-            
-            JSONObject parameters = new JSONObject();
-            parameters.put("temperature", 0.7);
-            parameters.put("top_p", 0.8);
-            parameters.put("max_tokens", 500);
-            requestBody.put("parameters", parameters);
+            JSONObject requestBody = buildRequestBody(messages);
             
             Request request = new Request.Builder()
-                .url(BASE_URL + "/services/aigc/text-generation/generation")
+                .url(baseUrl + "/services/aigc/text-generation/generation")
                 .addHeader("Authorization", "Bearer " + apiKey)
                 .addHeader("Content-Type", "application/json")
                 .post(RequestBody.create(
@@ -181,6 +251,148 @@ public class DashScopeService {
         }
     }
     
+    /**
+     * 流式查询（带自定义消息列表）：通过 SSE 开启增量输出，边生成边回调，
+     * 每句完整后立即通过 onSentence 交出，不必等待整个回复生成完毕
+     */
+    public void processQueryStreaming(JSONArray messages, StreamCallback callback) {
+        String apiKey = preferences.getString(API_KEY_PREFERENCE, "");
+        if (apiKey.isEmpty()) {
+            callback.onError("API 密钥未配置");
+            return;
+        }
+        
+        try {
+            JSONObject requestBody = buildRequestBody(messages);
+            requestBody.getJSONObject("parameters").put("incremental_output", true);
+            
+            Request request = new Request.Builder()
+                .url(baseUrl + "/services/aigc/text-generation/generation")
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Accept", "text/event-stream")
+                .addHeader("X-DashScope-SSE", "enable")
+                .post(RequestBody.create(
+                    requestBody.toString(),
+                    MediaType.parse("application/json")
+                ))
+                .build();
+            
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    callback.onError("网络请求失败：" + e.getMessage());
+                }
+                
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (ResponseBody body = response.body()) {
+                        if (!response.isSuccessful()) {
+                            callback.onError("API 错误：" + response.code());
+                            return;
+                        }
+                        readStream(body.source(), callback);
+                    } catch (Exception e) {
+                        callback.onError("读取流式响应失败：" + e.getMessage());
+                    }
+                }
+            });
+        } catch (Exception e) {
+            callback.onError("请求构建失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 逐行读取 SSE 事件：data 行为 JSON，开启增量输出后每个事件的 content 只含新生成的部分；
+     * event:error 的 data 为错误信息。id、:HTTP_STATUS 等其他行忽略。
+     */
+    private static void readStream(BufferedSource source, StreamCallback callback)
+            throws IOException, JSONException {
+        StringBuilder text = new StringBuilder();
+        SentenceSplitter splitter = new SentenceSplitter();
+        String event = null;
+        boolean finished = false;
+        String line;
+        while (!finished && (line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                event = null;
+            } else if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                JSONObject data = new JSONObject(line.substring(5).trim());
+                if ("error".equals(event)) {
+                    callback.onError("API 错误：" + data.optString("message", data.optString("code")));
+                    return;
+                }
+                JSONObject output = data.optJSONObject("output");
+                if (output == null) continue;
+                
+                // result_format 为 message 时在 choices 中，否则为 text
+                JSONArray choices = output.optJSONArray("choices");
+                JSONObject choice = choices != null ? choices.optJSONObject(0) : null;
+                String delta;
+                String finishReason;
+                if (choice != null) {
+                    JSONObject message = choice.optJSONObject("message");
+                    delta = message != null ? message.optString("content") : "";
+                    finishReason = choice.optString("finish_reason");
+                } else {
+                    delta = output.optString("text");
+                    finishReason = output.optString("finish_reason");
+                }
+                
+                if (!delta.isEmpty()) {
+                    text.append(delta);
+                    callback.onPartial(text.toString());
+                    for (String sentence : splitter.append(delta)) {
+                        callback.onSentence(sentence);
+                    }
+                }
+                // 生成中为 "null"，结束时为 stop 或 length
+                finished = !finishReason.isEmpty() && !"null".equals(finishReason);
+            }
+        }
+        if (!finished) {
+            callback.onError("流式响应中断");
+            return;
+        }
+        String rest = splitter.flush();
+        if (rest != null) {
+            callback.onSentence(rest);
+        }
+        callback.onComplete(text.toString());
+    }
+    
+    private static JSONObject buildRequestBody(JSONArray messages) throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", "qwen-max");
+        
+        JSONObject input = new JSONObject();
+        input.put("messages", messages);
+        requestBody.put("input", input);
+        
+        JSONObject parameters = new JSONObject();
+        parameters.put("temperature", 0.7);
+        parameters.put("top_p", 0.8);
+        parameters.put("max_tokens", 500);
+        requestBody.put("parameters", parameters);
+        return requestBody;
+    }
+    
+    /**
+     * 回复缓存的命中统计
+     */
+    public String getCacheStats() {
+        return responseCache.getStatsSummary();
+    }
+    
+    /**
+     * 清空回复缓存（内存与磁盘），需在后台线程调用
+     */
+    public void clearCache() {
+        responseCache.clear();
+    }
+    
     public void saveApiKey(String apiKey) {
         preferences.edit().putString(API_KEY_PREFERENCE, apiKey).apply();
     }
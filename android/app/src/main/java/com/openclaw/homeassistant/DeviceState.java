@@ -0,0 +1,23 @@
+package com.openclaw.homeassistant;
+
+/**
+ * 设备状态快照（纯原始类型），供 RuleCondition 求值
+ * 由 AutomationEngine 在主线程上原地更新，不在事件路径上分配对象
+ */
+class DeviceState {
+    
+    // 一周中的分钟 (0=周日 00:00)，见 TriggerIndex.minuteOfWeek
+    int minuteOfWeek;
+    // 电量百分比，-1 表示未知
+    int batteryLevel = -1;
+    boolean charging;
+    
+    int minuteOfDay() {
+        return minuteOfWeek % TriggerIndex.MINUTES_PER_DAY;
+    }
+    
+    /** 0=周日 */
+    int dayOfWeek() {
+        return minuteOfWeek / TriggerIndex.MINUTES_PER_DAY;
+    }
+}
@@ -1,10 +1,15 @@
 package com.openclaw.homeassistant;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -13,6 +18,7 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -22,10 +28,23 @@ import java.util.Locale;
  */
 public class HistoryActivity extends AppCompatActivity {
     
+    // 输入停止后再检索
+    private static final long SEARCH_DELAY_MS = 200;
+    private static final int SEARCH_LIMIT = 50;
+    private static final int SNIPPET_CONTEXT = 20;
+    
     private ListView listHistory;
     private Button btnClearHistory;
+    private EditText etSearch;
     private ConversationManager conversationManager;
     private List<ConversationManager.ChatHistory> historyList;
+    private List<ConversationSearchHit> searchResults = new ArrayList<>();
+    private HistoryAdapter adapter;
+    private SearchAdapter searchAdapter;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable searchTask = this::search;
+    // 只显示最后一次输入的结果
+    private int searchGeneration;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -33,15 +52,35 @@ public class HistoryActivity extends AppCompatActivity {
         setContentView(R.layout.activity_history);
         
         conversationManager = new ConversationManager(this);
-        historyList = conversationManager.getHistory();
+        historyList = new ArrayList<>();
         
         initViews();
         setupListeners();
+        loadHistory();
     }
     
     private void initViews() {
         listHistory = findViewById(R.id.listHistory);
         btnClearHistory = findViewById(R.id.btnClearHistory);
+        etSearch = findViewById(R.id.etSearch);
+        adapter = new HistoryAdapter();
+        searchAdapter = new SearchAdapter();
+        listHistory.setAdapter(adapter);
+    }
+    
+    /**
+     * 在后台线程读取历史记录
+     */
+    private void loadHistory() {
+        new Thread(() -> {
+            List<ConversationManager.ChatHistory> history = conversationManager.getHistory();
+            runOnUiThread(() -> showHistory(history));
+        }).start();
+    }
+    
+    private void showHistory(List<ConversationManager.ChatHistory> history) {
+        if (isFinishing()) return;
+        historyList = history;
         
         if (historyList.isEmpty()) {
             listHistory.setVisibility(View.GONE);
@@ -51,7 +90,7 @@ public class HistoryActivity extends AppCompatActivity {
             emptyView.setPadding(32, 64, 32, 64);
             ((ViewGroup) listHistory.getParent()).addView(emptyView);
         } else {
-            listHistory.setAdapter(new HistoryAdapter());
+            adapter.notifyDataSetChanged();
         }
     }
     
@@ -70,23 +109,113 @@ public class HistoryActivity extends AppCompatActivity {
         });
         
         listHistory.setOnItemClickListener((parent, view, position, id) -> {
-            ConversationManager.ChatHistory session = historyList.get(position);
-            new AlertDialog.Builder(this)
-                .setTitle("查看历史对话")
-                .setMessage(session.preview + "\n\n确定要加载这段对话吗？")
-                .setPositiveButton("加载", (dialog, which) -> {
-                    // 加载历史对话到当前上下文
-                    for (ConversationManager.Message msg : session.messages) {
-                        conversationManager.addToContext(msg.role, msg.content);
-                    }
-                    Toast.makeText(this, "对话已加载", Toast.LENGTH_SHORT).show();
-                    finish();
-                })
-                .setNegativeButton("取消", null)
-                .show();
+            if (listHistory.getAdapter() == searchAdapter) {
+                ConversationSearchHit hit = searchResults.get(position);
+                openSession(hit.sessionId, hit.sessionPreview);
+            } else {
+                ConversationManager.ChatHistory session = historyList.get(position);
+                openSession(session.id, session.preview);
+            }
+        });
+        
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+            
+            @Override
+            public void afterTextChanged(Editable s) {
+                handler.removeCallbacks(searchTask);
+                handler.postDelayed(searchTask, SEARCH_DELAY_MS);
+            }
         });
     }
     
+    // ============== 搜索 ==============
+    
+    /**
+     * 在后台线程检索，输入为空时回到会话列表
+     */
+    private void search() {
+        final String query = etSearch.getText().toString().trim();
+        final int requestGeneration = ++searchGeneration;
+        if (query.isEmpty()) {
+            listHistory.setAdapter(adapter);
+            return;
+        }
+        new Thread(() -> {
+            List<ConversationSearchHit> hits = conversationManager.search(query, SEARCH_LIMIT);
+            runOnUiThread(() -> showSearchResults(requestGeneration, hits));
+        }).start();
+    }
+    
+    private void showSearchResults(int requestGeneration, List<ConversationSearchHit> hits) {
+        if (isFinishing() || requestGeneration != searchGeneration) return;
+        searchResults = hits;
+        listHistory.setVisibility(View.VISIBLE);
+        if (listHistory.getAdapter() != searchAdapter) {
+            listHistory.setAdapter(searchAdapter);
+        } else {
+            searchAdapter.notifyDataSetChanged();
+        }
+        if (hits.isEmpty()) {
+            Toast.makeText(this, "没有找到相关对话", Toast.LENGTH_SHORT).show();
+        }
+    }
+    
+    /**
+     * 命中位置附近的一段内容（找不到输入原文时取开头）
+     */
+    private String snippet(String content) {
+        String query = etSearch.getText().toString().trim().toLowerCase(Locale.ROOT);
+        int index = query.isEmpty() ? -1 : content.toLowerCase(Locale.ROOT).indexOf(query);
+        int start = Math.max(0, index - SNIPPET_CONTEXT);
+        int end = Math.min(content.length(), Math.max(index, 0) + query.length() + SNIPPET_CONTEXT * 2);
+        return (start > 0 ? "…" : "") + content.substring(start, end).replace('\n', ' ')
+            + (end < content.length() ? "…" : "");
+    }
+    
+    // ============== 会话 ==============
+    
+    /**
+     * 打开会话：在后台线程读取消息内容后显示
+     */
+    private void openSession(long sessionId, String preview) {
+        new Thread(() -> {
+            List<ConversationManager.Message> messages = conversationManager.getSessionMessages(sessionId);
+            runOnUiThread(() -> showSession(sessionId, preview, messages));
+        }).start();
+    }
+    
+    private void showSession(long sessionId, String preview, List<ConversationManager.Message> messages) {
+        if (isFinishing()) return;
+        
+        StringBuilder transcript = new StringBuilder();
+        for (ConversationManager.Message msg : messages) {
+            if (transcript.length() > 0) transcript.append("\n\n");
+            transcript.append("user".equals(msg.role) ? "👤 你：" : "🤖 AI：").append(msg.content);
+        }
+        if (transcript.length() == 0) {
+            transcript.append(preview);
+        }
+        
+        new AlertDialog.Builder(this)
+            .setTitle("查看历史对话")
+            .setMessage(transcript)
+            .setPositiveButton("继续此对话", (dialog, which) -> {
+                // 继续该会话：最近的消息成为当前上下文
+                conversationManager.resumeSession(sessionId);
+                Toast.makeText(this, "对话已加载", Toast.LENGTH_SHORT).show();
+                finish();
+            })
+            .setNegativeButton("取消", null)
+            .show();
+    }
+    
     private class HistoryAdapter extends BaseAdapter {
         private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm", Locale.CHINA);
         
@@ -117,7 +246,44 @@ public class HistoryActivity extends AppCompatActivity {
             TextView text2 = convertView.findViewById(android.R.id.text2);
             
             text1.setText(session.preview);
-            text2.setText(dateFormat.format(new Date(session.timestamp)) + " · " + session.messages.size() + " 条消息");
+            text2.setText(dateFormat.format(new Date(session.timestamp)) + " · " + session.messageCount + " 条消息");
+            
+            return convertView;
+        }
+    }
+    
+    private class SearchAdapter extends BaseAdapter {
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm", Locale.CHINA);
+        
+        @Override
+        public int getCount() {
+            return searchResults.size();
+        }
+        
+        @Override
+        public Object getItem(int position) {
+            return searchResults.get(position);
+        }
+        
+        @Override
+        public long getItemId(int position) {
+            return searchResults.get(position).messageId;
+        }
+        
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            if (convertView == null) {
+                convertView = getLayoutInflater().inflate(android.R.layout.simple_list_item_2, parent, false);
+            }
+            
+            ConversationSearchHit hit = searchResults.get(position);
+            
+            TextView text1 = convertView.findViewById(android.R.id.text1);
+            TextView text2 = convertView.findViewById(android.R.id.text2);
+            
+            text1.setText(("user".equals(hit.role) ? "👤 " : "🤖 ") + snippet(hit.content));
+            text2.setText(dateFormat.format(new Date(hit.timestamp))
+                + (hit.sessionPreview != null ? " · " + hit.sessionPreview : ""));
             
             return convertView;
         }
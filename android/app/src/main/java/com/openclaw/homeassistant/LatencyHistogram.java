@@ -0,0 +1,163 @@
+package com.openclaw.homeassistant;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 延迟直方图（毫秒，对数-线性固定分桶，无锁，可合并）
+ * 分桶：0-7ms 每 1ms 一个桶，之后每个 2 的幂区间等分为 SUB_BUCKETS 个子桶，
+ * 相对误差不超过 1/SUB_BUCKETS（12.5%），上限约 2^31ms。
+ * 滚动窗口：按小时分段计数，只保留最近 PERIODS 小时；某小时没有记录时不分配该段。
+ * 记录只做一次原子累加（进入新的小时时加锁创建一段）；读取时把窗口内的各段合并为 Snapshot。
+ */
+final class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = SUB_BUCKETS * (32 - SUB_BUCKET_BITS);
+    
+    static final long PERIOD_MS = 60 * 60 * 1000L;
+    static final int PERIODS = 24;
+    
+    /**
+     * 一个小时内的计数
+     */
+    private static final class Period {
+        final long period;
+        final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+        final AtomicInteger failures = new AtomicInteger();
+        
+        Period(long period) {
+            this.period = period;
+        }
+    }
+    
+    // 下标 period % PERIODS，旧的段在同一槽位被新的段替换
+    private final AtomicReferenceArray<Period> periods = new AtomicReferenceArray<>(PERIODS);
+    private volatile Period current;
+    
+    /**
+     * 记录一次耗时
+     * @param failed 同时计一次失败
+     */
+    void record(long valueMillis, boolean failed, long nowMillis) {
+        Period p = period(nowMillis);
+        p.counts.incrementAndGet(bucketIndex(valueMillis));
+        if (failed) {
+            p.failures.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 只记一次失败（没有可记录的耗时，如执行队列已满被丢弃）
+     */
+    void recordFailure(long nowMillis) {
+        period(nowMillis).failures.incrementAndGet();
+    }
+    
+    /**
+     * 最近 PERIODS 小时（含当前小时）的合并结果
+     */
+    Snapshot snapshot(long nowMillis) {
+        Snapshot snapshot = new Snapshot();
+        long newest = nowMillis / PERIOD_MS;
+        for (int i = 0; i < PERIODS; i++) {
+            Period p = periods.get(i);
+            if (p != null && p.period > newest - PERIODS && p.period <= newest) {
+                snapshot.add(p);
+            }
+        }
+        return snapshot;
+    }
+    
+    private Period period(long nowMillis) {
+        long period = nowMillis / PERIOD_MS;
+        Period p = current;
+        if (p != null && p.period == period) {
+            return p;
+        }
+        return advance(period);
+    }
+    
+    private synchronized Period advance(long period) {
+        int slot = (int) (period % PERIODS);
+        Period p = periods.get(slot);
+        if (p == null || p.period != period) {
+            p = new Period(period);
+            periods.set(slot, p);
+        }
+        // 时钟回拨时 current 也跟随，记录总是落在当前时间所在的段
+        current = p;
+        return p;
+    }
+    
+    // ============== 分桶 ==============
+    
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            value = Integer.MAX_VALUE;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+    
+    /**
+     * 桶内的最大值（百分位按此报告，偏保守）
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+    
+    /**
+     * 合并后的计数（不可并发修改，可继续与其他 Snapshot 合并）
+     */
+    static final class Snapshot {
+        final long[] counts = new long[BUCKETS];
+        long total;
+        long failures;
+        
+        void merge(Snapshot other) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            failures += other.failures;
+        }
+        
+        private void add(Period p) {
+            for (int i = 0; i < BUCKETS; i++) {
+                int count = p.counts.get(i);
+                counts[i] += count;
+                total += count;
+            }
+            failures += p.failures.get();
+        }
+        
+        /**
+         * 百分位（q 取 0-1），没有记录时返回 -1
+         */
+        long percentile(double q) {
+            if (total == 0) return -1;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return bucketUpperBound(BUCKETS - 1);
+        }
+    }
+}
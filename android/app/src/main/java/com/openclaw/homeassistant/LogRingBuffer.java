@@ -0,0 +1,498 @@
+package com.openclaw.homeassistant;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 定长记录环形日志（内存映射文件）
+ * 功能：
+ * 1. 追加 O(1) 且不分配对象：字符串直接按 UTF-8 编码写入映射内存
+ * 2. 写满后覆盖最旧记录，保留条数 = 容量
+ * 3. 读取按序号从新到旧遍历，不解析 JSON；按规则统计时直接比较编码后的字节
+ *
+ * 文件布局：
+ *   头部 64 字节：magic, version, recordSize, capacity, nextSequence, firstSequence
+ *   记录 RECORD_SIZE 字节 × capacity，第 n 条记录位于槽位 n % capacity
+ * 记录布局：
+ *   sequence(8) timestamp(8) kind(1) 四个字段长度(4×1) 字段 UTF-8 字节（超长截断）
+ * 写入时先把 sequence 置为 -1，字段写完后再写入真实序号；
+ * 读取前后各校验一次序号，读到正在被覆盖的记录时跳过。
+ * 序号单调递增（清空时只前移 firstSequence），可作为下游增量同步的游标。
+ *
+ * 同一文件在进程内共享一个实例（见 open），追加在实例锁内完成，读取不加锁。
+ */
+class LogRingBuffer {
+    
+    private static final String TAG = "LogRingBuffer";
+    
+    private static final int MAGIC = 0x4f434c52; // "OCLR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 192;
+    
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_RECORD_SIZE = 8;
+    private static final int OFFSET_CAPACITY = 12;
+    private static final int OFFSET_NEXT_SEQUENCE = 16;
+    private static final int OFFSET_FIRST_SEQUENCE = 24;
+    
+    // 记录内偏移
+    private static final int R_SEQUENCE = 0;
+    private static final int R_TIMESTAMP = 8;
+    private static final int R_KIND = 16;
+    private static final int R_LENGTHS = 17;
+    private static final int R_DATA = 21;
+    private static final int DATA_SIZE = RECORD_SIZE - R_DATA;
+    
+    // 字段序号及各字段最大字节数（details 使用剩余空间）
+    static final int FIELD_RULE_ID = 0;
+    static final int FIELD_RULE_NAME = 1;
+    static final int FIELD_TYPE = 2;
+    static final int FIELD_DETAILS = 3;
+    static final int FIELD_COUNT = 4;
+    private static final int[] FIELD_LIMITS = { 48, 64, 16, 255 };
+    
+    static final byte KIND_TRIGGER = 1;
+    static final byte KIND_ACTION = 2;
+    static final byte KIND_FAILURE = 3;
+    
+    private static final Map<String, LogRingBuffer> INSTANCES = new HashMap<>();
+    
+    /**
+     * 记录访问器：遍历时复用同一实例，按需解码字段
+     */
+    interface RecordVisitor {
+        /**
+         * @return false 停止遍历
+         */
+        boolean visit(LogRingBuffer buffer, int slot, long sequence);
+    }
+    
+    private final File file;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private volatile long nextSequence;
+    // 清空后第一条有效记录的序号
+    private volatile long firstSequence;
+    
+    private LogRingBuffer(File file) {
+        this.file = file;
+    }
+    
+    /**
+     * 打开（或创建）环形日志，同一路径返回同一实例
+     * @param capacity 保留条数；小于等于 0 时沿用文件中的容量（文件不存在则用 defaultCapacity）
+     */
+    static LogRingBuffer open(File file, int capacity, int defaultCapacity) throws IOException {
+        synchronized (INSTANCES) {
+            String key = file.getAbsolutePath();
+            LogRingBuffer ring = INSTANCES.get(key);
+            if (ring == null) {
+                ring = new LogRingBuffer(file);
+                ring.map(capacity > 0 ? capacity : defaultCapacity, capacity > 0);
+                INSTANCES.put(key, ring);
+            } else if (capacity > 0 && capacity != ring.capacity) {
+                ring.resize(capacity);
+            }
+            return ring;
+        }
+    }
+    
+    // ============== 写入 ==============
+    
+    /**
+     * 追加一条记录（不分配对象），写满后覆盖最旧记录
+     * @return 记录序号
+     */
+    synchronized long append(long timestamp, byte kind, String ruleId, String ruleName,
+                             String type, String details) {
+        long sequence = nextSequence;
+        int base = recordOffset(sequence);
+        
+        buffer.putLong(base + R_SEQUENCE, -1L);
+        buffer.putLong(base + R_TIMESTAMP, timestamp);
+        buffer.put(base + R_KIND, kind);
+        
+        int pos = base + R_DATA;
+        int end = base + RECORD_SIZE;
+        pos = writeField(base, FIELD_RULE_ID, ruleId, pos, end);
+        pos = writeField(base, FIELD_RULE_NAME, ruleName, pos, end);
+        pos = writeField(base, FIELD_TYPE, type, pos, end);
+        writeField(base, FIELD_DETAILS, details, pos, end);
+        
+        buffer.putLong(base + R_SEQUENCE, sequence);
+        nextSequence = sequence + 1;
+        buffer.putLong(OFFSET_NEXT_SEQUENCE, nextSequence);
+        return sequence;
+    }
+    
+    /**
+     * 清空（序号不回退，之前的记录全部失效）
+     * @return 清空后第一条记录的序号
+     */
+    synchronized long clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(HEADER_SIZE + slot * RECORD_SIZE + R_SEQUENCE, -1L);
+        }
+        firstSequence = nextSequence;
+        buffer.putLong(OFFSET_FIRST_SEQUENCE, firstSequence);
+        return firstSequence;
+    }
+    
+    /**
+     * 把保留的记录按原顺序重新编号，第一条的序号变为 base（只会增大序号）
+     * 文件丢失或损坏后重新创建时序号从 0 开始，下游游标已经更大时用于对齐
+     * @return 重新编号的记录数
+     */
+    synchronized int rebase(long base) {
+        long end = nextSequence;
+        long start = oldestSequence(end);
+        if (base <= start) return 0;
+        
+        int count = (int) (end - start);
+        byte[] records = new byte[count * RECORD_SIZE];
+        boolean[] valid = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int from = recordOffset(start + i);
+            valid[i] = buffer.getLong(from + R_SEQUENCE) == start + i;
+            for (int j = 0; j < RECORD_SIZE; j++) {
+                records[i * RECORD_SIZE + j] = buffer.get(from + j);
+            }
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(HEADER_SIZE + slot * RECORD_SIZE + R_SEQUENCE, -1L);
+        }
+        int moved = 0;
+        for (int i = 0; i < count; i++) {
+            if (!valid[i]) continue;
+            moved++;
+            int to = recordOffset(base + i);
+            // 序号最后写入，与 append 的顺序一致
+            for (int j = R_SEQUENCE + 8; j < RECORD_SIZE; j++) {
+                buffer.put(to + j, records[i * RECORD_SIZE + j]);
+            }
+            buffer.putLong(to + R_SEQUENCE, base + i);
+        }
+        
+        firstSequence = base;
+        nextSequence = base + count;
+        buffer.putLong(OFFSET_FIRST_SEQUENCE, firstSequence);
+        buffer.putLong(OFFSET_NEXT_SEQUENCE, nextSequence);
+        return moved;
+    }
+    
+    /**
+     * 把映射内存刷到磁盘（服务销毁等时机调用）
+     */
+    synchronized void force() {
+        buffer.force();
+    }
+    
+    // ============== 读取 ==============
+    
+    int getCapacity() {
+        return capacity;
+    }
+    
+    /** 下一条记录的序号（= 累计追加条数） */
+    long getNextSequence() {
+        return nextSequence;
+    }
+    
+    /** 当前保留的记录数 */
+    int size() {
+        long end = nextSequence;
+        return (int) (end - oldestSequence(end));
+    }
+    
+    /**
+     * 从新到旧遍历，跳过最新的 skip 条
+     * @return 访问的记录数
+     */
+    int forEachNewestFirst(int skip, RecordVisitor visitor) {
+        long newest = nextSequence - 1;
+        long oldest = oldestSequence(newest + 1);
+        int visited = 0;
+        for (long sequence = newest - skip; sequence >= oldest; sequence--) {
+            int slot = (int) (sequence % capacity);
+            if (readSequence(slot) != sequence) continue;
+            visited++;
+            if (!visitor.visit(this, slot, sequence)) break;
+        }
+        return visited;
+    }
+    
+    /**
+     * 从旧到新遍历序号 >= fromSequence 的记录（已被覆盖的部分自动跳过）
+     * @return 访问的记录数
+     */
+    int forEachFrom(long fromSequence, RecordVisitor visitor) {
+        long end = nextSequence;
+        long start = Math.max(fromSequence, oldestSequence(end));
+        int visited = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence % capacity);
+            if (readSequence(slot) != sequence) continue;
+            visited++;
+            if (!visitor.visit(this, slot, sequence)) break;
+        }
+        return visited;
+    }
+    
+    /**
+     * 统计 ruleId 字段等于给定值的记录数（直接比较 UTF-8 字节，不解码）
+     */
+    int count(byte kind, String ruleId) {
+        long end = nextSequence;
+        long start = oldestSequence(end);
+        int count = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence % capacity);
+            int base = HEADER_SIZE + slot * RECORD_SIZE;
+            if (buffer.getLong(base + R_SEQUENCE) != sequence) continue;
+            if (kind != 0 && buffer.get(base + R_KIND) != kind) continue;
+            if (fieldEquals(base, FIELD_RULE_ID, ruleId)) count++;
+        }
+        return count;
+    }
+    
+    long timestamp(int slot) {
+        return buffer.getLong(HEADER_SIZE + slot * RECORD_SIZE + R_TIMESTAMP);
+    }
+    
+    byte kind(int slot) {
+        return buffer.get(HEADER_SIZE + slot * RECORD_SIZE + R_KIND);
+    }
+    
+    /**
+     * 解码字段（分配 String）
+     * @return 字段为空时返回 null
+     */
+    String field(int slot, int field) {
+        int base = HEADER_SIZE + slot * RECORD_SIZE;
+        int length = fieldLength(base, field);
+        if (length == 0) return null;
+        
+        int pos = fieldOffset(base, field);
+        char[] chars = new char[length];
+        int count = 0;
+        int end = pos + length;
+        while (pos < end) {
+            int b = buffer.get(pos++) & 0xFF;
+            int codePoint;
+            // 记录可能正被覆盖，多字节序列越界时截止（调用方随后用 isValid 丢弃）
+            int extra = b < 0x80 ? 0 : b < 0xE0 ? 1 : b < 0xF0 ? 2 : 3;
+            if (pos + extra > end) break;
+            if (b < 0x80) {
+                codePoint = b;
+            } else if (b < 0xE0) {
+                codePoint = ((b & 0x1F) << 6) | (buffer.get(pos++) & 0x3F);
+            } else if (b < 0xF0) {
+                codePoint = ((b & 0x0F) << 12) | ((buffer.get(pos++) & 0x3F) << 6) | (buffer.get(pos++) & 0x3F);
+            } else {
+                codePoint = ((b & 0x07) << 18) | ((buffer.get(pos++) & 0x3F) << 12)
+                    | ((buffer.get(pos++) & 0x3F) << 6) | (buffer.get(pos++) & 0x3F);
+            }
+            count += Character.toChars(codePoint, chars, count);
+        }
+        return new String(chars, 0, count);
+    }
+    
+    /**
+     * 读取后校验：记录在读取期间未被覆盖
+     */
+    boolean isValid(int slot, long sequence) {
+        return readSequence(slot) == sequence;
+    }
+    
+    // ============== 私有方法 ==============
+    
+    private void map(int capacity, boolean resizeIfDifferent) throws IOException {
+        boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+        if (exists) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                int magic = raf.readInt();
+                int version = raf.readInt();
+                int recordSize = raf.readInt();
+                int fileCapacity = raf.readInt();
+                long expected = HEADER_SIZE + (long) fileCapacity * RECORD_SIZE;
+                if (magic == MAGIC && version == VERSION && recordSize == RECORD_SIZE
+                    && fileCapacity > 0 && file.length() >= expected) {
+                    mapExisting(fileCapacity);
+                    if (resizeIfDifferent && fileCapacity != capacity) {
+                        resize(capacity);
+                    }
+                    return;
+                }
+            }
+            Log.w(TAG, "日志文件格式不匹配，重新创建：" + file);
+        }
+        create(file, capacity);
+        mapExisting(capacity);
+    }
+    
+    private void mapExisting(int capacity) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+        this.capacity = capacity;
+        this.nextSequence = Math.max(0, buffer.getLong(OFFSET_NEXT_SEQUENCE));
+        this.firstSequence = Math.max(0, Math.min(nextSequence, buffer.getLong(OFFSET_FIRST_SEQUENCE)));
+    }
+    
+    private static void create(File file, int capacity) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录：" + parent);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            raf.seek(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(RECORD_SIZE);
+            raf.writeInt(capacity);
+            raf.writeLong(0L);
+            // 所有槽位序号置为 -1
+            for (int slot = 0; slot < capacity; slot++) {
+                raf.seek(HEADER_SIZE + (long) slot * RECORD_SIZE + R_SEQUENCE);
+                raf.writeLong(-1L);
+            }
+        }
+    }
+    
+    /**
+     * 修改容量：把最新的记录按原序号复制到新文件后替换
+     */
+    private synchronized void resize(int newCapacity) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        create(tmp, newCapacity);
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+            MappedByteBuffer target = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) newCapacity * RECORD_SIZE);
+            long end = nextSequence;
+            long start = Math.max(oldestSequence(end), end - newCapacity);
+            byte[] record = new byte[RECORD_SIZE];
+            for (long sequence = start; sequence < end; sequence++) {
+                int from = HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+                int to = HEADER_SIZE + (int) (sequence % newCapacity) * RECORD_SIZE;
+                for (int i = 0; i < RECORD_SIZE; i++) {
+                    record[i] = buffer.get(from + i);
+                }
+                for (int i = 0; i < RECORD_SIZE; i++) {
+                    target.put(to + i, record[i]);
+                }
+            }
+            target.putLong(OFFSET_NEXT_SEQUENCE, end);
+            target.putLong(OFFSET_FIRST_SEQUENCE, start);
+            target.force();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("替换日志文件失败：" + file);
+        }
+        mapExisting(newCapacity);
+        Log.d(TAG, "日志容量调整为 " + newCapacity);
+    }
+    
+    private long oldestSequence(long end) {
+        return Math.max(firstSequence, Math.max(0, end - capacity));
+    }
+    
+    private int recordOffset(long sequence) {
+        return HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+    }
+    
+    private long readSequence(int slot) {
+        return buffer.getLong(HEADER_SIZE + slot * RECORD_SIZE + R_SEQUENCE);
+    }
+    
+    private int fieldLength(int base, int field) {
+        return buffer.get(base + R_LENGTHS + field) & 0xFF;
+    }
+    
+    private int fieldOffset(int base, int field) {
+        int pos = base + R_DATA;
+        for (int i = 0; i < field; i++) {
+            pos += fieldLength(base, i);
+        }
+        return pos;
+    }
+    
+    /**
+     * 按 UTF-8 写入字段，超出字段上限或记录剩余空间时在完整字符处截断
+     * @return 写入后的位置
+     */
+    private int writeField(int base, int field, String value, int pos, int end) {
+        int limit = Math.min(end, pos + FIELD_LIMITS[field]);
+        int start = pos;
+        if (value != null) {
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (pos + 1 > limit) break;
+                    buffer.put(pos++, (byte) c);
+                } else if (c < 0x800) {
+                    if (pos + 2 > limit) break;
+                    buffer.put(pos++, (byte) (0xC0 | (c >> 6)));
+                    buffer.put(pos++, (byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    if (pos + 4 > limit) break;
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put(pos++, (byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put(pos++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put(pos++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put(pos++, (byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    if (pos + 3 > limit) break;
+                    // 孤立代理项按 '?' 处理
+                    if (Character.isSurrogate(c)) c = '?';
+                    buffer.put(pos++, (byte) (0xE0 | (c >> 12)));
+                    buffer.put(pos++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put(pos++, (byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+        buffer.put(base + R_LENGTHS + field, (byte) (pos - start));
+        return pos;
+    }
+    
+    /**
+     * 字段与字符串比较（逐字符按 UTF-8 编码比对，不分配）
+     */
+    private boolean fieldEquals(int base, int field, String value) {
+        int length = fieldLength(base, field);
+        int pos = fieldOffset(base, field);
+        int end = pos + length;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (pos >= end || buffer.get(pos++) != (byte) c) return false;
+            } else if (c < 0x800) {
+                if (pos + 2 > end
+                    || buffer.get(pos++) != (byte) (0xC0 | (c >> 6))
+                    || buffer.get(pos++) != (byte) (0x80 | (c & 0x3F))) return false;
+            } else if (Character.isSurrogate(c)) {
+                // ruleId 按 schema 只含 [a-z0-9_]，非 BMP 字符直接视为不相等
+                return false;
+            } else {
+                if (pos + 3 > end
+                    || buffer.get(pos++) != (byte) (0xE0 | (c >> 12))
+                    || buffer.get(pos++) != (byte) (0x80 | ((c >> 6) & 0x3F))
+                    || buffer.get(pos++) != (byte) (0x80 | (c & 0x3F))) return false;
+            }
+        }
+        return pos == end;
+    }
+}
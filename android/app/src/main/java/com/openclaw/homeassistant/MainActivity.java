@@ -517,9 +517,19 @@ public class MainActivity extends AppCompatActivity {
         // 保存到对话上下文
         conversationManager.addToContext("user", text);
         
-        // 获取带上下文的请求
-        java.util.List<ConversationManager.Message> context = 
-            conversationManager.getContextForAPI(10);
+        // 构建上下文会等待对话记录加载完成（首次启动时含旧数据导入），不在主线程进行
+        SharedPreferences prefs = getSharedPreferences("OpenClawPrefs", MODE_PRIVATE);
+        int contextLength = prefs.getInt("context_length", 10);
+        int tokenBudget = prefs.getInt("context_token_budget", ConversationManager.DEFAULT_TOKEN_BUDGET);
+        new Thread(() -> sendWithContext(contextLength, tokenBudget)).start();
+    }
+    
+    /**
+     * 按设置的条数和 token 预算获取上下文并发送请求（在后台线程调用）
+     */
+    private void sendWithContext(int contextLength, int tokenBudget) {
+        java.util.List<ConversationManager.Message> context =
+            conversationManager.getContextForAPI(contextLength, tokenBudget);
         
         // 构建消息列表
         JSONArray messages = new JSONArray();
@@ -534,25 +544,40 @@ public class MainActivity extends AppCompatActivity {
             }
         }
         
-        // 调用 API
-        dashScopeService.processQueryWithMessages(messages, response -> {
-            runOnUiThread(() -> {
-                appendConversation("🤖 AI：" + response);
-                tvStatus.setText("✅ 完成");
-                
-                // 保存到上下文
-                conversationManager.addToContext("assistant", response);
-                
-                // TTS 朗读
-                if (isTTSEnabled && isTTSReady) {
-                    speakOut(response);
-                }
-            });
-        }, error -> {
-            runOnUiThread(() -> {
-                appendConversation("❌ 错误：" + error);
-                tvStatus.setText("❌ 失败");
-            });
+        // 调用 API（流式：边生成边显示，每句完整后立即朗读）
+        dashScopeService.processQueryStreaming(messages, new DashScopeService.StreamCallback() {
+            private boolean firstSentence = true;
+            
+            @Override
+            public void onPartial(String text) {
+                runOnUiThread(() -> tvConversation.setText(conversationDisplay + "🤖 AI：" + text));
+            }
+            
+            @Override
+            public void onSentence(String sentence) {
+                boolean first = firstSentence;
+                firstSentence = false;
+                runOnUiThread(() -> speakSentence(sentence, first));
+            }
+            
+            @Override
+            public void onComplete(String response) {
+                runOnUiThread(() -> {
+                    appendConversation("🤖 AI：" + response);
+                    tvStatus.setText("✅ 完成");
+                    
+                    // 保存到上下文
+                    conversationManager.addToContext("assistant", response);
+                });
+            }
+            
+            @Override
+            public void onError(String error) {
+                runOnUiThread(() -> {
+                    appendConversation("❌ 错误：" + error);
+                    tvStatus.setText("❌ 失败");
+                });
+            }
         });
     }
     
@@ -565,13 +590,15 @@ public class MainActivity extends AppCompatActivity {
         scrollView.post(() -> scrollView.fullScroll(View.FOCUS_DOWN));
     }
     
-    private void speakOut(String text) {
+    /**
+     * 朗读流式回复中的一句：回复的第一句打断之前的朗读，之后的句子依次排队
+     */
+    private void speakSentence(String sentence, boolean first) {
         if (!isTTSEnabled || !isTTSReady) {
             return;
         }
         
-        textToSpeech.stop();
-        textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, null);
+        textToSpeech.speak(sentence, first ? TextToSpeech.QUEUE_FLUSH : TextToSpeech.QUEUE_ADD, null, null);
     }
     
     private void updateStatus(boolean connected, String text) {
@@ -115,23 +115,21 @@ public class NewsService {
      * 获取简要 AI 资讯 (1-2 条)
      */
     public String getAINewsBrief() {
-        List<NewsItem> news = getAINews(2);
-        if (news.isEmpty()) return "AI 资讯获取中...";
-        
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < news.size(); i++) {
-            sb.append(news.get(i).title);
-            if (i < news.size() - 1) sb.append("\n");
-        }
-        return sb.toString();
+        return formatBrief(getAINews(2), "AI 资讯获取中...");
     }
     
     /**
      * 获取简要财经资讯 (1-2 条)
      */
     public String getFinanceNewsBrief() {
-        List<NewsItem> news = getFinanceNews(2);
-        if (news.isEmpty()) return "财经资讯获取中...";
+        return formatBrief(getFinanceNews(2), "财经资讯获取中...");
+    }
+    
+    /**
+     * 简要资讯格式：每行一个标题，没有新闻时返回 emptyText
+     */
+    public static String formatBrief(List<NewsItem> news, String emptyText) {
+        if (news == null || news.isEmpty()) return emptyText;
         
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < news.size(); i++) {
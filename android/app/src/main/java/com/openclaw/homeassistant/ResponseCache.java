@@ -0,0 +1,328 @@
+package com.openclaw.homeassistant;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 助手回复的本地缓存（进程内单例），重复的查询直接返回，不再请求网络
+ * 键为 上下文指纹（模型、系统提示、参数）+ 规范化查询文本 的 SHA-256；规范化包括全角转半角、转小写、
+ * 合并空白、去掉首尾标点，"电量多少？" 与 "电量多少" 视为同一查询。
+ * 两级存储：
+ *   内存 —— LRU，最多 MEMORY_CAPACITY 条
+ *   磁盘 —— cache/dashscope_responses/ 下每条一个文件，最多 DISK_CAPACITY 条，超出时删除最久未用的；
+ *           内存未命中时读取，进程重启后仍可命中
+ * 每条记录有各自的过期时间（与时间相关的查询较短，见 ttlFor），过期即删除。
+ * get / put 可能读写磁盘，需在后台线程调用。
+ * 目前只有 DashScopeService.processQuery（单轮查询）使用，应用内暂无调用方；
+ * 对话界面走 processQueryStreaming（多轮，回复依赖历史），不经过此缓存。
+ */
+class ResponseCache {
+    
+    private static final String TAG = "ResponseCache";
+    
+    static final int MEMORY_CAPACITY = 64;
+    static final int DISK_CAPACITY = 256;
+    static final long DEFAULT_TTL_MS = 12 * 60 * 60 * 1000L;
+    static final long SHORT_TTL_MS = 10 * 60 * 1000L;
+    
+    private static final String CACHE_DIR = "dashscope_responses";
+    private static final int MAGIC = 0x4F435243;      // "OCRC"
+    private static final int VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    // 回答随时间变化的查询，缓存较短时间
+    private static final String[] TIME_SENSITIVE = {
+        "现在", "今天", "明天", "昨天", "几点", "时间", "日期", "天气", "气温", "电量", "新闻",
+        "now", "today", "tomorrow", "time", "date", "weather", "battery", "news"
+    };
+    
+    private static volatile ResponseCache instance;
+    
+    private final File dir;
+    // 磁盘读写锁，与内存锁分开，内存命中不等待磁盘
+    private final Object diskLock = new Object();
+    
+    // 以下字段均由 this 保护
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= MEMORY_CAPACITY) return false;
+            evictions++;
+            return true;
+        }
+    };
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long expired = 0;
+    private long evictions = 0;
+    private long bypasses = 0;
+    
+    static ResponseCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ResponseCache.class) {
+                if (instance == null) {
+                    instance = new ResponseCache(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR));
+                }
+            }
+        }
+        return instance;
+    }
+    
+    ResponseCache(File dir) {
+        this.dir = dir;
+    }
+    
+    // ============== 键 ==============
+    
+    /**
+     * 缓存键，查询规范化后为空时返回 null（不缓存）
+     * @param fingerprint 除查询外影响回复的请求内容
+     */
+    @Nullable
+    static String key(String query, String fingerprint) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) return null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(normalized.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+    
+    static String normalize(String query) {
+        if (query == null) return "";
+        String text = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int start = 0;
+        int end = text.length();
+        while (start < end && !Character.isLetterOrDigit(text.charAt(start))) start++;
+        while (end > start && !Character.isLetterOrDigit(text.charAt(end - 1))) end--;
+        return text.substring(start, end).replaceAll("\\s+", " ");
+    }
+    
+    /**
+     * 查询对应的缓存时长：涉及时间、天气、电量等会变化的内容时较短
+     */
+    static long ttlFor(String query) {
+        String normalized = normalize(query);
+        for (String word : TIME_SENSITIVE) {
+            if (normalized.contains(word)) return SHORT_TTL_MS;
+        }
+        return DEFAULT_TTL_MS;
+    }
+    
+    // ============== 读写 ==============
+    
+    /**
+     * 读取未过期的回复：先查内存，再查磁盘（命中后放回内存）
+     */
+    @Nullable
+    String get(String key) {
+        long now = System.currentTimeMillis();
+        boolean stale = false;
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits++;
+                    return entry.value;
+                }
+                memory.remove(key);
+                stale = true;
+            }
+        }
+        
+        Entry entry = readDisk(key);
+        if (entry != null && entry.expiresAt <= now) {
+            deleteDisk(key);
+            entry = null;
+            stale = true;
+        }
+        synchronized (this) {
+            if (entry == null) {
+                misses++;
+                if (stale) expired++;
+                return null;
+            }
+            diskHits++;
+            memory.put(key, entry);
+            return entry.value;
+        }
+    }
+    
+    /**
+     * 保存回复，ttlMs 后过期
+     */
+    void put(String key, String value, long ttlMs) {
+        Entry entry = new Entry(value, System.currentTimeMillis() + ttlMs);
+        synchronized (this) {
+            memory.put(key, entry);
+        }
+        writeDisk(key, entry);
+    }
+    
+    /**
+     * 记录一次跳过缓存的请求
+     */
+    synchronized void recordBypass() {
+        bypasses++;
+    }
+    
+    /**
+     * 清空内存与磁盘缓存
+     */
+    void clear() {
+        synchronized (this) {
+            memory.clear();
+        }
+        synchronized (diskLock) {
+            File[] files = dir.listFiles();
+            if (files == null) return;
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+    
+    synchronized String getStatsSummary() {
+        long lookups = hits + diskHits + misses;
+        long hitRate = lookups == 0 ? 0 : (hits + diskHits) * 100 / lookups;
+        return "entries=" + memory.size() + ", hits=" + hits + ", diskHits=" + diskHits
+            + ", misses=" + misses + ", hitRate=" + hitRate + "%, expired=" + expired
+            + ", evictions=" + evictions + ", bypasses=" + bypasses;
+    }
+    
+    // ============== 磁盘 ==============
+    
+    @Nullable
+    private Entry readDisk(String key) {
+        synchronized (diskLock) {
+            File file = entryFile(key);
+            Entry entry;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("缓存文件格式错误");
+                }
+                long expiresAt = in.readLong();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                entry = new Entry(new String(value, StandardCharsets.UTF_8), expiresAt);
+            } catch (FileNotFoundException e) {
+                return null;
+            } catch (IOException e) {
+                Log.w(TAG, "读取缓存文件失败：" + file.getName(), e);
+                file.delete();
+                return null;
+            }
+            
+            // 修改时间作为最近使用时间，用于淘汰
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        }
+    }
+    
+    private void writeDisk(String key, Entry entry) {
+        synchronized (diskLock) {
+            File file = entryFile(key);
+            File temp = new File(dir, key + TEMP_SUFFIX);
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("无法创建缓存目录：" + dir);
+                }
+                byte[] value = entry.value.getBytes(StandardCharsets.UTF_8);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(entry.expiresAt);
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+                if (!temp.renameTo(file)) {
+                    throw new IOException("无法写入缓存文件：" + file.getName());
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "写入缓存失败", e);
+                temp.delete();
+                return;
+            }
+            trimDisk();
+        }
+    }
+    
+    private void deleteDisk(String key) {
+        synchronized (diskLock) {
+            entryFile(key).delete();
+        }
+    }
+    
+    /**
+     * 文件数超过 DISK_CAPACITY 时删除最久未用的
+     */
+    private void trimDisk() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (files == null || files.length <= DISK_CAPACITY) return;
+        long[] lastUsed = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastUsed[i] = files[i].lastModified();
+        }
+        long[] sorted = lastUsed.clone();
+        Arrays.sort(sorted);
+        long threshold = sorted[files.length - DISK_CAPACITY];
+        int excess = files.length - DISK_CAPACITY;
+        for (int i = 0; i < files.length && excess > 0; i++) {
+            if (lastUsed[i] < threshold) {
+                files[i].delete();
+                excess--;
+            }
+        }
+        for (int i = 0; i < files.length && excess > 0; i++) {
+            if (lastUsed[i] == threshold) {
+                files[i].delete();
+                excess--;
+            }
+        }
+    }
+    
+    private File entryFile(String key) {
+        return new File(dir, key + ENTRY_SUFFIX);
+    }
+    
+    private static class Entry {
+        final String value;
+        final long expiresAt;
+        
+        Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.openclaw.homeassistant;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * 规则条件
+ * 触发器决定“何时检查”，条件决定“此刻是否执行”。
+ * 条件树 (and / or / not / time_window / battery_range / charging / days) 在加载时
+ * 编译为扁平的后缀指令序列，求值时用一个 long 作为布尔栈，不分配对象、不递归。
+ *
+ * 指令格式（int 数组，操作码后跟操作数）：
+ *   TIME_WINDOW from to   当前分钟在 [from, to) 内，from > to 表示跨零点，from == to 表示全天
+ *   BATTERY_RANGE min max 电量在 [min, max] 内（电量未知时为假）
+ *   CHARGING expected     充电状态等于 expected (0/1)
+ *   DAYS mask             当天在星期掩码内 (bit0=周日)
+ *   AND n / OR n          弹出 n 个值，压入其与 / 或（n=0 时分别为真 / 假）
+ *   NOT                   栈顶取反
+ */
+class RuleCondition {
+    
+    private static final int OP_TIME_WINDOW = 1;
+    private static final int OP_BATTERY_RANGE = 2;
+    private static final int OP_CHARGING = 3;
+    private static final int OP_DAYS = 4;
+    private static final int OP_AND = 5;
+    private static final int OP_OR = 6;
+    private static final int OP_NOT = 7;
+    
+    // 布尔栈用 long 的各个位表示
+    static final int MAX_STACK_DEPTH = 64;
+    
+    private final int[] code;
+    
+    private RuleCondition(int[] code) {
+        this.code = code;
+    }
+    
+    /**
+     * 编译条件树
+     * @throws JSONException 条件格式错误或嵌套过深
+     */
+    static RuleCondition compile(JSONObject json) throws JSONException {
+        Compiler compiler = new Compiler();
+        compiler.emit(json);
+        return new RuleCondition(Arrays.copyOf(compiler.code, compiler.length));
+    }
+    
+    /**
+     * 对设备状态快照求值（无分配）
+     */
+    boolean evaluate(DeviceState state) {
+        final int[] code = this.code;
+        final int minuteOfDay = state.minuteOfDay();
+        final int dayOfWeek = state.dayOfWeek();
+        
+        long stack = 0;
+        int sp = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            boolean value;
+            int n;
+            switch (code[pc]) {
+                case OP_TIME_WINDOW: {
+                    int from = code[pc + 1];
+                    int to = code[pc + 2];
+                    if (from < to) {
+                        value = minuteOfDay >= from && minuteOfDay < to;
+                    } else if (from > to) {
+                        value = minuteOfDay >= from || minuteOfDay < to;
+                    } else {
+                        value = true;
+                    }
+                    pc += 3;
+                    n = 0;
+                    break;
+                }
+                case OP_BATTERY_RANGE:
+                    value = state.batteryLevel >= 0
+                        && state.batteryLevel >= code[pc + 1]
+                        && state.batteryLevel <= code[pc + 2];
+                    pc += 3;
+                    n = 0;
+                    break;
+                case OP_CHARGING:
+                    value = state.charging == (code[pc + 1] != 0);
+                    pc += 2;
+                    n = 0;
+                    break;
+                case OP_DAYS:
+                    value = (code[pc + 1] & (1 << dayOfWeek)) != 0;
+                    pc += 2;
+                    n = 0;
+                    break;
+                case OP_AND: {
+                    n = code[pc + 1];
+                    long mask = n == 64 ? -1L : (1L << n) - 1;
+                    value = ((stack >>> (sp - n)) & mask) == mask;
+                    pc += 2;
+                    break;
+                }
+                case OP_OR: {
+                    n = code[pc + 1];
+                    long mask = n == 64 ? -1L : (1L << n) - 1;
+                    value = ((stack >>> (sp - n)) & mask) != 0;
+                    pc += 2;
+                    break;
+                }
+                case OP_NOT:
+                    n = 1;
+                    value = (stack & (1L << (sp - 1))) == 0;
+                    pc += 1;
+                    break;
+                default:
+                    throw new IllegalStateException("未知条件指令：" + code[pc]);
+            }
+            
+            // 弹出 n 个值后压入结果
+            sp -= n;
+            if (value) {
+                stack |= 1L << sp;
+            } else {
+                stack &= ~(1L << sp);
+            }
+            sp++;
+        }
+        return (stack & 1L) != 0;
+    }
+    
+    /**
+     * 条件树 -> 后缀指令
+     */
+    private static class Compiler {
+        int[] code = new int[16];
+        int length = 0;
+        int depth = 0;
+        
+        void emit(JSONObject node) throws JSONException {
+            String type = node.getString("type");
+            switch (type) {
+                case "and":
+                case "or": {
+                    JSONArray children = node.getJSONArray("conditions");
+                    if (children.length() >= MAX_STACK_DEPTH) {
+                        throw new JSONException("条件过多：" + children.length());
+                    }
+                    for (int i = 0; i < children.length(); i++) {
+                        emit(children.getJSONObject(i));
+                    }
+                    append("and".equals(type) ? OP_AND : OP_OR, children.length());
+                    depth -= children.length();
+                    push();
+                    break;
+                }
+                case "not":
+                    emit(node.getJSONObject("condition"));
+                    append(OP_NOT);
+                    break;
+                case "time_window": {
+                    int from = AutomationRule.Trigger.parseMinuteOfDay(node.getString("from"));
+                    int to = AutomationRule.Trigger.parseMinuteOfDay(node.getString("to"));
+                    if (from < 0 || to < 0) {
+                        throw new JSONException("无效的时间段：" + node);
+                    }
+                    append(OP_TIME_WINDOW, from, to);
+                    push();
+                    break;
+                }
+                case "battery_range": {
+                    int min = node.optInt("min", 0);
+                    int max = node.optInt("max", 100);
+                    if (min > max) {
+                        throw new JSONException("无效的电量范围：" + node);
+                    }
+                    append(OP_BATTERY_RANGE, min, max);
+                    push();
+                    break;
+                }
+                case "charging":
+                    append(OP_CHARGING, node.optBoolean("charging", true) ? 1 : 0);
+                    push();
+                    break;
+                case "days": {
+                    int mask = 0;
+                    JSONArray days = node.getJSONArray("days");
+                    for (int i = 0; i < days.length(); i++) {
+                        int day = days.getInt(i);
+                        if (day >= 0 && day < 7) {
+                            mask |= 1 << day;
+                        }
+                    }
+                    append(OP_DAYS, mask);
+                    push();
+                    break;
+                }
+                default:
+                    throw new JSONException("未知条件类型：" + type);
+            }
+        }
+        
+        private void push() throws JSONException {
+            if (++depth > MAX_STACK_DEPTH) {
+                throw new JSONException("条件嵌套过深");
+            }
+        }
+        
+        private void append(int... values) {
+            if (length + values.length > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, length + values.length));
+            }
+            System.arraycopy(values, 0, code, length, values.length);
+            length += values.length;
+        }
+    }
+}
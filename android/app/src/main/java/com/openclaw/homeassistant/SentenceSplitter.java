@@ -0,0 +1,101 @@
+package com.openclaw.homeassistant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 把流式输出的增量文本切分为句子，供 TTS 逐句朗读
+ * 句末标点（。！？；… 及换行）后立即成句；英文句点后跟空白才成句，避免切开小数，
+ * 且句点前是单个字母（首字母缩写、e.g.）或常见称谓缩写（Mr. Dr. 等）时不成句；
+ * 没有句末标点的长段在超过 MAX_CLAUSE_LENGTH 后于逗号处切开，避免首句过长推迟开始朗读。
+ * 非线程安全，每次流式请求使用一个实例。
+ */
+final class SentenceSplitter {
+    
+    static final int MAX_CLAUSE_LENGTH = 40;
+    
+    // 句点后跟空白也不成句的缩写（小写，不含句点）
+    private static final String[] ABBREVIATIONS = {
+        "mr", "mrs", "ms", "dr", "prof", "st", "vs", "no", "approx"
+    };
+    
+    private final StringBuilder buffer = new StringBuilder();
+    
+    /**
+     * 追加一段增量文本，返回因此完整的句子（可能为空）
+     */
+    List<String> append(String delta) {
+        List<String> sentences = new ArrayList<>();
+        if (delta == null || delta.isEmpty()) return sentences;
+        buffer.append(delta);
+        
+        int start = 0;
+        int lastComma = -1;
+        for (int i = 0; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            int end = -1;
+            if (c == '。' || c == '！' || c == '？' || c == '；' || c == '…' || c == '!' || c == '?'
+                    || c == ';' || c == '\n') {
+                end = i + 1;
+            } else if (c == '.') {
+                // 句点后的字符未到时先等待
+                if (i + 1 >= buffer.length()) break;
+                if (Character.isWhitespace(buffer.charAt(i + 1)) && !isAbbreviation(start, i)) end = i + 1;
+            } else if (c == '，' || c == ',' || c == '、') {
+                lastComma = i;
+            }
+            if (end < 0 && i - start + 1 > MAX_CLAUSE_LENGTH && lastComma >= start) {
+                end = lastComma + 1;
+            }
+            if (end >= 0) {
+                emit(sentences, start, end);
+                start = end;
+                i = end - 1;
+            }
+        }
+        buffer.delete(0, start);
+        return sentences;
+    }
+    
+    /**
+     * 输出结束，返回剩余的不完整句子（没有时返回 null）
+     */
+    String flush() {
+        String rest = buffer.toString().trim();
+        buffer.setLength(0);
+        return rest.isEmpty() ? null : rest;
+    }
+    
+    /**
+     * 句点 dot 前（不早于 start）的单词是否为缩写
+     */
+    private boolean isAbbreviation(int start, int dot) {
+        int from = dot;
+        while (from > start && isAsciiLetter(buffer.charAt(from - 1))) from--;
+        int length = dot - from;
+        if (length == 0) return false;
+        // 单个字母：首字母缩写（J. K.）或 e.g. / i.e. 的末段
+        if (length == 1) return true;
+        String word = buffer.substring(from, dot).toLowerCase(Locale.ROOT);
+        for (String abbreviation : ABBREVIATIONS) {
+            if (abbreviation.equals(word)) return true;
+        }
+        return false;
+    }
+    
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+    
+    private void emit(List<String> sentences, int start, int end) {
+        String sentence = buffer.substring(start, end).trim();
+        // 只有标点或空白时不朗读
+        for (int i = 0; i < sentence.length(); i++) {
+            if (Character.isLetterOrDigit(sentence.charAt(i))) {
+                sentences.add(sentence);
+                return;
+            }
+        }
+    }
+}
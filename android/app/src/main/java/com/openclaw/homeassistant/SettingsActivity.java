@@ -15,8 +15,12 @@ import androidx.appcompat.app.AppCompatActivity;
  */
 public class SettingsActivity extends AppCompatActivity {
     
+    // 上下文 token 预算选项，与 spinnerTokenBudget 的选项顺序一致
+    private static final int[] TOKEN_BUDGETS = {1000, ConversationManager.DEFAULT_TOKEN_BUDGET, 4000, 8000};
+    
     private EditText etApiKey;
     private Spinner spinnerContextLength;
+    private Spinner spinnerTokenBudget;
     private Button btnSave;
     private Button btnCancel;
     
@@ -33,6 +37,7 @@ public class SettingsActivity extends AppCompatActivity {
     private void initViews() {
         etApiKey = findViewById(R.id.etApiKey);
         spinnerContextLength = findViewById(R.id.spinnerContextLength);
+        spinnerTokenBudget = findViewById(R.id.spinnerTokenBudget);
         btnSave = findViewById(R.id.btnSave);
         btnCancel = findViewById(R.id.btnCancel);
         
@@ -42,15 +47,27 @@ public class SettingsActivity extends AppCompatActivity {
             android.R.layout.simple_spinner_item, options);
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         spinnerContextLength.setAdapter(adapter);
+        
+        // 设置上下文 token 预算选项（含系统提示与摘要）
+        String[] budgetOptions = new String[TOKEN_BUDGETS.length];
+        for (int i = 0; i < TOKEN_BUDGETS.length; i++) {
+            budgetOptions[i] = TOKEN_BUDGETS[i] + " tokens";
+        }
+        ArrayAdapter<String> budgetAdapter = new ArrayAdapter<>(this,
+            android.R.layout.simple_spinner_item, budgetOptions);
+        budgetAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerTokenBudget.setAdapter(budgetAdapter);
     }
     
     private void loadSettings() {
         SharedPreferences prefs = getSharedPreferences("OpenClawPrefs", MODE_PRIVATE);
         String apiKey = prefs.getString("dashscope_api_key", "");
         int contextLength = prefs.getInt("context_length", 10);
+        int tokenBudget = prefs.getInt("context_token_budget", ConversationManager.DEFAULT_TOKEN_BUDGET);
         
         etApiKey.setText(apiKey);
         spinnerContextLength.setSelection(contextLength == 5 ? 0 : contextLength == 20 ? 2 : 1);
+        spinnerTokenBudget.setSelection(budgetPosition(tokenBudget));
     }
     
     private void setupListeners() {
@@ -62,14 +79,27 @@ public class SettingsActivity extends AppCompatActivity {
         String apiKey = etApiKey.getText().toString().trim();
         int contextLength = spinnerContextLength.getSelectedItemPosition() == 0 ? 5 : 
                            spinnerContextLength.getSelectedItemPosition() == 2 ? 20 : 10;
+        int tokenBudget = TOKEN_BUDGETS[spinnerTokenBudget.getSelectedItemPosition()];
         
         SharedPreferences prefs = getSharedPreferences("OpenClawPrefs", MODE_PRIVATE);
         prefs.edit()
             .putString("dashscope_api_key", apiKey)
             .putInt("context_length", contextLength)
+            .putInt("context_token_budget", tokenBudget)
             .apply();
         
         Toast.makeText(this, "✅ 设置已保存", Toast.LENGTH_SHORT).show();
         finish();
     }
+    
+    /**
+     * 已保存的预算对应的选项位置；不在选项中的值取不超过它的最大一项
+     */
+    private static int budgetPosition(int tokenBudget) {
+        int position = 0;
+        for (int i = 0; i < TOKEN_BUDGETS.length; i++) {
+            if (TOKEN_BUDGETS[i] <= tokenBudget) position = i;
+        }
+        return position;
+    }
 }
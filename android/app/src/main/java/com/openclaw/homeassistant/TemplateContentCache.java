@@ -0,0 +1,220 @@
+package com.openclaw.homeassistant;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 模板内容缓存（天气、资讯等模板输入数据）
+ * 功能：
+ * 1. TTL 内直接返回缓存
+ * 2. 过期但仍在可容忍范围内时先返回旧值，同时后台刷新（stale-while-revalidate）
+ * 3. 预取：在规则触发前按需刷新，保证触发时缓存仍新鲜
+ * 同一键同时只有一次加载：进行中的加载以 FutureTask 记录在条目上，
+ * 预取或后台刷新期间的同步读取等待同一结果，不会重复发起请求。
+ * 加载失败（loader 返回 null）时不覆盖已有缓存
+ */
+class TemplateContentCache {
+    
+    private static final String TAG = "TemplateContentCache";
+    
+    static final long DEFAULT_TTL_MS = 30 * 60 * 1000L;
+    static final long DEFAULT_MAX_STALE_MS = 6 * 60 * 60 * 1000L;
+    
+    /**
+     * 数据加载器，失败时返回 null
+     */
+    interface Loader<T> {
+        @Nullable
+        T load();
+    }
+    
+    private final Executor refresher;
+    private final long ttlMs;
+    private final long maxStaleMs;
+    
+    // 以下字段均由 this 保护
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long hits = 0;
+    private long staleHits = 0;
+    private long misses = 0;
+    private long prefetches = 0;
+    
+    TemplateContentCache(Executor refresher) {
+        this(refresher, DEFAULT_TTL_MS, DEFAULT_MAX_STALE_MS);
+    }
+    
+    /**
+     * @param refresher 预取与后台刷新使用的执行器（会执行网络请求，不要传入规则执行队列）
+     * @param ttlMs 缓存新鲜期
+     * @param maxStaleMs 过期后仍可返回旧值的时长
+     */
+    TemplateContentCache(Executor refresher, long ttlMs, long maxStaleMs) {
+        this.refresher = refresher;
+        this.ttlMs = ttlMs;
+        this.maxStaleMs = maxStaleMs;
+    }
+    
+    /**
+     * 读取缓存：新鲜直接返回；陈旧返回旧值并后台刷新；
+     * 没有可用值时同步加载，已有加载在进行中则等待其结果
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    <T> T get(String key, Loader<T> loader) {
+        long now = System.currentTimeMillis();
+        Object stale = null;
+        FutureTask<Object> task;
+        boolean started = false;
+        
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.value != null) {
+                long age = now - entry.fetchedAt;
+                if (age < ttlMs) {
+                    hits++;
+                    return (T) entry.value;
+                }
+                if (age < ttlMs + maxStaleMs) {
+                    staleHits++;
+                    stale = entry.value;
+                }
+            }
+            if (stale == null) {
+                misses++;
+            }
+            task = entry != null ? entry.loading : null;
+            if (task == null) {
+                task = startLoad(key, loader);
+                started = true;
+            }
+        }
+        
+        if (stale != null) {
+            if (started) {
+                refreshAsync(key, task);
+            }
+            return (T) stale;
+        }
+        if (started) {
+            task.run();
+        }
+        return (T) await(key, task);
+    }
+    
+    /**
+     * 预取：若缓存到 neededAtMillis 时已不新鲜，则在刷新执行器上异步加载（可在任意线程调用）
+     * @return 是否发起了加载
+     */
+    <T> boolean prefetch(String key, Loader<T> loader, long neededAtMillis) {
+        FutureTask<Object> task;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.loading != null) return false;
+                if (entry.value != null && entry.fetchedAt + ttlMs > neededAtMillis) return false;
+            }
+            task = startLoad(key, loader);
+            prefetches++;
+        }
+        
+        return refreshAsync(key, task);
+    }
+    
+    /**
+     * 清空缓存
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+    
+    synchronized String getStatsSummary() {
+        return "entries=" + entries.size() + ", hits=" + hits + ", staleHits=" + staleHits
+            + ", misses=" + misses + ", prefetches=" + prefetches;
+    }
+    
+    // ============== 私有方法 ==============
+    
+    /**
+     * 创建加载任务并记录到条目上（调用方持有 this 锁）
+     * 任务完成时写入的是创建时的条目：期间 clear 过则结果随旧条目丢弃
+     */
+    private FutureTask<Object> startLoad(String key, Loader<?> loader) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        final Entry target = entry;
+        FutureTask<Object> task = new FutureTask<>(() -> load(target, key, loader));
+        entry.loading = task;
+        return task;
+    }
+    
+    @Nullable
+    private Object load(Entry entry, String key, Loader<?> loader) {
+        Object value = null;
+        try {
+            value = loader.load();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "加载缓存内容失败：" + key, e);
+        }
+        
+        synchronized (this) {
+            entry.loading = null;
+            if (value != null) {
+                entry.value = value;
+                entry.fetchedAt = System.currentTimeMillis();
+            }
+        }
+        return value;
+    }
+    
+    /**
+     * @return 是否已提交；被拒绝时撤销任务，等待它的读取返回 null
+     */
+    private boolean refreshAsync(String key, FutureTask<Object> task) {
+        try {
+            refresher.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "后台刷新被拒绝：" + key);
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.loading == task) entry.loading = null;
+            }
+            task.cancel(false);
+            return false;
+        }
+    }
+    
+    @Nullable
+    private Object await(String key, FutureTask<Object> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        } catch (ExecutionException e) {
+            Log.w(TAG, "加载缓存内容失败：" + key, e.getCause());
+            return null;
+        }
+    }
+    
+    private static class Entry {
+        Object value;
+        long fetchedAt;
+        // 进行中的加载，没有时为 null
+        FutureTask<Object> loading;
+    }
+}
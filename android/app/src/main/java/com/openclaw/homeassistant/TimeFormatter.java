@@ -0,0 +1,106 @@
+package com.openclaw.homeassistant;
+
+import java.util.TimeZone;
+
+/**
+ * 共享的时间格式化（线程安全、无锁）
+ * 替代列表每行 new SimpleDateFormat：时区缓存为静态字段，日期由本地天数直接换算，
+ * 每次格式化只分配结果字符串。
+ * 时区变更时需调用 refreshTimeZone（AutomationEngine 收到 ACTION_TIMEZONE_CHANGED 时调用）。
+ */
+final class TimeFormatter {
+    
+    private static final long SECOND_MS = 1000L;
+    private static final long MINUTE_MS = 60 * SECOND_MS;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+    
+    // 缓存时区，避免每次 TimeZone.getDefault() 复制对象
+    private static volatile TimeZone timeZone = TimeZone.getDefault();
+    
+    private TimeFormatter() {
+    }
+    
+    static void refreshTimeZone() {
+        timeZone = TimeZone.getDefault();
+    }
+    
+    /**
+     * 格式化为 "MM-dd HH:mm"（本地时间）
+     */
+    static String formatMinute(long utcMillis) {
+        long local = utcMillis + timeZone.getOffset(utcMillis);
+        long day = floorDiv(local, DAY_MS);
+        int minuteOfDay = (int) ((local - day * DAY_MS) / MINUTE_MS);
+        int monthDay = civilMonthDay(day);
+        
+        char[] out = new char[11];
+        putTwoDigits(out, 0, monthDay / 100);
+        out[2] = '-';
+        putTwoDigits(out, 3, monthDay % 100);
+        out[5] = ' ';
+        putTwoDigits(out, 6, minuteOfDay / 60);
+        out[8] = ':';
+        putTwoDigits(out, 9, minuteOfDay % 60);
+        return new String(out);
+    }
+    
+    /**
+     * 格式化为 "yyyy-MM-dd HH:mm:ss"（本地时间，用于导出）
+     */
+    static String formatDateTime(long utcMillis) {
+        long local = utcMillis + timeZone.getOffset(utcMillis);
+        long day = floorDiv(local, DAY_MS);
+        int secondOfDay = (int) ((local - day * DAY_MS) / SECOND_MS);
+        int date = civilDate(day);
+        int year = date / 10000;
+        
+        char[] out = new char[19];
+        putTwoDigits(out, 0, year / 100);
+        putTwoDigits(out, 2, year % 100);
+        out[4] = '-';
+        putTwoDigits(out, 5, date / 100 % 100);
+        out[7] = '-';
+        putTwoDigits(out, 8, date % 100);
+        out[10] = ' ';
+        putTwoDigits(out, 11, secondOfDay / 3600);
+        out[13] = ':';
+        putTwoDigits(out, 14, secondOfDay / 60 % 60);
+        out[16] = ':';
+        putTwoDigits(out, 17, secondOfDay % 60);
+        return new String(out);
+    }
+    
+    /**
+     * 自 1970-01-01 起的天数 -> 月 * 100 + 日
+     */
+    static int civilMonthDay(long epochDay) {
+        return civilDate(epochDay) % 10000;
+    }
+    
+    /**
+     * 自 1970-01-01 起的天数 -> 年 * 10000 + 月 * 100 + 日（公历 0000-9999 年，Howard Hinnant 的 civil_from_days）
+     */
+    static int civilDate(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) year * 10000 + month * 100 + day;
+    }
+    
+    // Math.floorDiv 需要 API 24
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+    
+    private static void putTwoDigits(char[] out, int offset, int value) {
+        out[offset] = (char) ('0' + value / 10);
+        out[offset + 1] = (char) ('0' + value % 10);
+    }
+}
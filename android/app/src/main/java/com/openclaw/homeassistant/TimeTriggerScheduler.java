@@ -0,0 +1,225 @@
+package com.openclaw.homeassistant;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.TimeZone;
+
+/**
+ * 时间触发器调度器
+ * 所有时间触发器共用一个精确闹钟：
+ * 1. 以 TriggerIndex 的一周分钟桶作为时间轮，找出最近的下一次触发
+ * 2. 只为最近的一次触发设置闹钟
+ * 3. 闹钟到达时批量分发所有到期的桶（包括因休眠延迟而错过的分钟），然后重新设置
+ * 4. 设置了预取时，闹钟也会在含模板规则触发前 leadMinutes 分钟响起，用于预取模板内容
+ */
+class TimeTriggerScheduler {
+    
+    private static final String TAG = "TimeTriggerScheduler";
+    
+    static final String ACTION_TIME_TICK = "com.openclaw.TIME_TICK";
+    
+    // 唯一闹钟的 requestCode
+    private static final int REQUEST_CODE = 0x7105;
+    
+    // 闹钟延迟时最多补发的分钟数，超过的视为过期不再触发
+    private static final int MAX_CATCH_UP_MINUTES = 60;
+    
+    private final Context context;
+    private final TriggerIndex index;
+    private PendingIntent alarmIntent;
+    
+    // 模板预取提前量（分钟），0 表示不预取
+    private int prefetchLeadMinutes = 0;
+    private TriggerIndex.RuleSink prefetchSink;
+    
+    // 缓存时区，避免每次 TimeZone.getDefault() 复制对象
+    private TimeZone timeZone = TimeZone.getDefault();
+    
+    // 最后一次分发到的本地分钟（自 1970-01-01 本地零点起）
+    private long lastDispatchedMinute = Long.MIN_VALUE;
+    // 当前闹钟对应的本地分钟，-1 表示未设置
+    private long armedMinute = -1;
+    // onAlarm 正在分发的本地分钟
+    private long dispatchingMinute;
+    
+    TimeTriggerScheduler(Context context, TriggerIndex index) {
+        this.context = context.getApplicationContext();
+        this.index = index;
+    }
+    
+    /**
+     * 设置模板预取：含模板的规则触发前 leadMinutes 分钟回调 sink
+     */
+    void setPrefetch(int leadMinutes, TriggerIndex.RuleSink sink) {
+        prefetchLeadMinutes = sink != null ? Math.max(0, leadMinutes) : 0;
+        prefetchSink = sink;
+    }
+    
+    /**
+     * 开始调度：当前分钟之前的触发器视为已过，从下一分钟开始
+     */
+    void start(long nowMillis) {
+        lastDispatchedMinute = localMinute(nowMillis);
+        reschedule(nowMillis);
+    }
+    
+    /**
+     * 按索引重新计算下一次触发并设置闹钟（规则变更后调用）
+     */
+    void reschedule(long nowMillis) {
+        long nowMinute = localMinute(nowMillis);
+        int delta = index.minutesUntilNextTime(TriggerIndex.minuteOfWeek(nowMinute * 60_000L));
+        if (delta > 0 && prefetchLeadMinutes > 0) {
+            // 下一次预取时刻 = 下一个（当前 + 提前量之后的）模板触发时刻 - 提前量
+            int prefetchDelta = index.minutesUntilNextTemplate(
+                TriggerIndex.minuteOfWeek((nowMinute + prefetchLeadMinutes) * 60_000L));
+            if (prefetchDelta > 0 && prefetchDelta < delta) {
+                delta = prefetchDelta;
+            }
+        }
+        if (delta < 0) {
+            cancel();
+            Log.d(TAG, "没有时间触发器，不设置闹钟");
+            return;
+        }
+        
+        long target = nowMinute + delta;
+        if (target == armedMinute) return;
+        
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+        
+        long triggerAt = utcMillis(target);
+        PendingIntent pendingIntent = getAlarmIntent();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        } else {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        }
+        armedMinute = target;
+        
+        Log.d(TAG, "下一次时间触发/预取：" + delta + " 分钟后");
+    }
+    
+    /**
+     * 闹钟到达：分发 (上次分发, 当前分钟] 之间所有到期的桶，
+     * 以及提前量之后将要触发的模板规则的预取，然后重新设置闹钟
+     * @return 命中的规则数（不含预取）
+     */
+    int onAlarm(long nowMillis, TriggerIndex.RuleSink sink) {
+        long nowMinute = localMinute(nowMillis);
+        long from = Math.max(lastDispatchedMinute + 1, nowMinute - MAX_CATCH_UP_MINUTES + 1);
+        
+        int matched = 0;
+        for (long minute = from; minute <= nowMinute; minute++) {
+            if (prefetchLeadMinutes > 0) {
+                index.dispatchTemplates(
+                    TriggerIndex.minuteOfWeek((minute + prefetchLeadMinutes) * 60_000L), prefetchSink);
+            }
+            dispatchingMinute = minute;
+            matched += index.dispatchTime(TriggerIndex.minuteOfWeek(minute * 60_000L), sink);
+        }
+        if (nowMinute > lastDispatchedMinute) {
+            lastDispatchedMinute = nowMinute;
+        }
+        
+        armedMinute = -1;
+        reschedule(nowMillis);
+        return matched;
+    }
+    
+    /**
+     * 正在分发的触发时刻（UTC 毫秒），只在 onAlarm 的 sink 回调中有效
+     * 与实际执行时间之差即闹钟唤醒延迟
+     */
+    long dispatchingMillis() {
+        return utcMillis(dispatchingMinute);
+    }
+    
+    /**
+     * 时区或系统时间变更：刷新时区，从当前时间重新调度
+     */
+    void onClockChanged(long nowMillis) {
+        timeZone = TimeZone.getDefault();
+        lastDispatchedMinute = localMinute(nowMillis);
+        armedMinute = -1;
+        reschedule(nowMillis);
+    }
+    
+    /**
+     * 当前本地时间在一周中的分钟（使用缓存的时区，无分配）
+     */
+    int minuteOfWeek(long nowMillis) {
+        return TriggerIndex.minuteOfWeek(localMinute(nowMillis) * 60_000L);
+    }
+    
+    /**
+     * 取消闹钟
+     */
+    void cancel() {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            alarmManager.cancel(getAlarmIntent());
+        }
+        armedMinute = -1;
+    }
+    
+    /**
+     * 取消旧版本按规则设置的重复闹钟（requestCode 为 ruleId.hashCode()）
+     */
+    void cancelLegacyAlarms(Iterable<String> ruleIds) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+        
+        for (String ruleId : ruleIds) {
+            PendingIntent legacy = PendingIntent.getBroadcast(
+                context, ruleId.hashCode(), new Intent(ACTION_TIME_TICK),
+                PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE
+            );
+            if (legacy != null) {
+                alarmManager.cancel(legacy);
+                legacy.cancel();
+            }
+        }
+    }
+    
+    // ============== 私有方法 ==============
+    
+    private PendingIntent getAlarmIntent() {
+        if (alarmIntent == null) {
+            Intent intent = new Intent(ACTION_TIME_TICK);
+            intent.setPackage(context.getPackageName());
+            alarmIntent = PendingIntent.getBroadcast(
+                context, REQUEST_CODE, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+        }
+        return alarmIntent;
+    }
+    
+    /**
+     * UTC 毫秒 -> 本地分钟
+     */
+    private long localMinute(long utcMillis) {
+        long local = utcMillis + timeZone.getOffset(utcMillis);
+        long minute = local / 60_000L;
+        if (local % 60_000L < 0) minute--;
+        return minute;
+    }
+    
+    /**
+     * 本地分钟 -> UTC 毫秒（按目标时刻的时区偏移修正夏令时）
+     */
+    private long utcMillis(long localMinute) {
+        long local = localMinute * 60_000L;
+        long guess = local - timeZone.getOffset(local);
+        return local - timeZone.getOffset(guess);
+    }
+}
@@ -0,0 +1,50 @@
+package com.openclaw.homeassistant;
+
+/**
+ * 中英混合文本的 token 数估算（偏高估计，用于控制请求大小，不要求与模型分词器一致）
+ *   中日韩文字    —— 每字 1 个
+ *   连续字母数字  —— 每 4 个字符 1 个（不足 4 个按 1 个）
+ *   空白          —— 不计
+ *   其他标点符号  —— 每个 1 个
+ */
+final class TokenEstimator {
+    
+    // 每条消息的角色、分隔等固定开销
+    static final int MESSAGE_OVERHEAD = 4;
+    
+    private static final int LATIN_CHARS_PER_TOKEN = 4;
+    
+    private TokenEstimator() {
+    }
+    
+    static int estimate(String text) {
+        if (text == null) return 0;
+        int tokens = 0;
+        int latinRun = 0;
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.isLetterOrDigit(c) && !ConversationSearch.isCjk(c)) {
+                latinRun++;
+                continue;
+            }
+            tokens += latinTokens(latinRun);
+            latinRun = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + latinTokens(latinRun);
+    }
+    
+    /**
+     * 一条消息的估算 token 数（含固定开销）
+     */
+    static int estimateMessage(String content) {
+        return MESSAGE_OVERHEAD + estimate(content);
+    }
+    
+    private static int latinTokens(int chars) {
+        return (chars + LATIN_CHARS_PER_TOKEN - 1) / LATIN_CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,454 @@
+package com.openclaw.homeassistant;
+
+import java.util.Arrays;
+
+/**
+ * 触发器索引
+ * 在 loadRules() 时构建，规则变更时按条增删；事件到来时只访问可能命中的规则：
+ * 1. 时间触发器：按一周中的分钟 (0=周日 00:00) 分桶，
+ *    另记录含模板播报的规则所在分钟，供提前预取模板内容
+ * 2. 电量触发器：按 level_below 升序排列的阈值数组，边沿触发：
+ *    电量降到阈值时触发一次，回升到 阈值 + 回差 后才重新布防
+ * 3. 电源触发器：plugged / unplugged 两个桶
+ *
+ * 非线程安全，只在主线程（广播接收器所在线程）访问。
+ */
+class TriggerIndex {
+    
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    
+    /**
+     * 命中回调
+     */
+    interface RuleSink {
+        void onRuleMatched(AutomationRule rule);
+    }
+    
+    // 规则槽位，桶中保存的是槽位下标；删除规则后槽位进入空闲栈复用
+    private AutomationRule[] rules = new AutomationRule[16];
+    private int slotCount = 0;
+    private int ruleCount = 0;
+    private int[] freeSlots = new int[8];
+    private int freeCount = 0;
+    
+    // 时间桶：下标为一周中的分钟，未使用的桶为 null
+    private final int[][] timeBuckets = new int[MINUTES_PER_WEEK][];
+    // 非空时间桶位图，用于快速查找下一次触发
+    private final long[] occupiedMinutes = new long[(MINUTES_PER_WEEK + 63) / 64];
+    // 含模板规则的时间桶位图
+    private final long[] templateMinutes = new long[(MINUTES_PER_WEEK + 63) / 64];
+    
+    // 电量阈值（升序）及对应槽位、重新布防电量
+    private int[] batteryThresholds = new int[8];
+    private int[] batterySlots = new int[8];
+    private int[] batteryRearmLevels = new int[8];
+    private int batteryCount = 0;
+    
+    // 电量规则状态位图（按槽位），置位表示已触发、等待回升重新布防
+    private long[] batteryFired = new long[1];
+    private int batteryFiredCount = 0;
+    
+    // 电源桶
+    private int[] pluggedSlots = new int[8];
+    private int pluggedCount = 0;
+    private int[] unpluggedSlots = new int[8];
+    private int unpluggedCount = 0;
+    
+    /**
+     * 添加规则并建立其触发器索引
+     */
+    void add(AutomationRule rule) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == rules.length) {
+                rules = Arrays.copyOf(rules, slotCount * 2);
+            }
+            slot = slotCount++;
+        }
+        rules[slot] = rule;
+        rule.indexSlot = slot;
+        ruleCount++;
+        
+        for (AutomationRule.Trigger trigger : rule.triggers) {
+            if (trigger.typeCode == AutomationRule.Trigger.TYPE_TIME) {
+                indexTime(slot, trigger);
+            }
+        }
+        
+        AutomationRule.Trigger battery = batteryTrigger(rule);
+        if (battery != null) {
+            insertBattery(slot, battery.levelBelow, battery.levelBelow + battery.hysteresis);
+        }
+        if (hasPowerState(rule, AutomationRule.Trigger.POWER_PLUGGED)) {
+            if (pluggedCount == pluggedSlots.length) {
+                pluggedSlots = Arrays.copyOf(pluggedSlots, pluggedCount * 2);
+            }
+            pluggedSlots[pluggedCount++] = slot;
+        }
+        if (hasPowerState(rule, AutomationRule.Trigger.POWER_UNPLUGGED)) {
+            if (unpluggedCount == unpluggedSlots.length) {
+                unpluggedSlots = Arrays.copyOf(unpluggedSlots, unpluggedCount * 2);
+            }
+            unpluggedSlots[unpluggedCount++] = slot;
+        }
+    }
+    
+    /**
+     * 删除规则及其全部索引项，只触及该规则所在的桶
+     */
+    void remove(AutomationRule rule) {
+        int slot = rule.indexSlot;
+        if (slot < 0 || slot >= slotCount || rules[slot] != rule) return;
+        
+        for (AutomationRule.Trigger trigger : rule.triggers) {
+            if (trigger.typeCode == AutomationRule.Trigger.TYPE_TIME) {
+                unindexTime(slot, trigger);
+            }
+        }
+        
+        AutomationRule.Trigger battery = batteryTrigger(rule);
+        if (battery != null) {
+            removeBattery(slot, battery.levelBelow);
+        }
+        pluggedCount = removeSlot(pluggedSlots, pluggedCount, slot);
+        unpluggedCount = removeSlot(unpluggedSlots, unpluggedCount, slot);
+        
+        rules[slot] = null;
+        rule.indexSlot = -1;
+        ruleCount--;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+    
+    /**
+     * 清空索引
+     */
+    void clear() {
+        for (int i = 0; i < slotCount; i++) {
+            if (rules[i] != null) {
+                rules[i].indexSlot = -1;
+                rules[i] = null;
+            }
+        }
+        slotCount = 0;
+        ruleCount = 0;
+        freeCount = 0;
+        Arrays.fill(timeBuckets, null);
+        Arrays.fill(occupiedMinutes, 0L);
+        Arrays.fill(templateMinutes, 0L);
+        batteryCount = 0;
+        Arrays.fill(batteryFired, 0L);
+        batteryFiredCount = 0;
+        pluggedCount = 0;
+        unpluggedCount = 0;
+    }
+    
+    int size() {
+        return ruleCount;
+    }
+    
+    // ============== 事件分发 ==============
+    
+    /**
+     * 分发时间事件
+     * @param minuteOfWeek 一周中的分钟，0=周日 00:00
+     * @return 命中的规则数
+     */
+    int dispatchTime(int minuteOfWeek, RuleSink sink) {
+        int[] bucket = timeBuckets[minuteOfWeek];
+        if (bucket == null) return 0;
+        
+        for (int slot : bucket) {
+            sink.onRuleMatched(rules[slot]);
+        }
+        return bucket.length;
+    }
+    
+    /**
+     * 分发电量事件（边沿触发）
+     * 1. level_below >= batteryLevel 且处于布防状态、条件满足的规则触发一次
+     * 2. 已触发的规则在电量回升到 阈值 + 回差 后重新布防
+     * 条件在撤防之前求值：条件不满足（如不在时间窗口内）时保持布防，之后的电量事件仍可触发
+     * @param state 当前设备状态，用于求值规则条件
+     * @return 命中的规则数
+     */
+    int dispatchBattery(int batteryLevel, DeviceState state, RuleSink sink) {
+        int from = lowerBound(batteryThresholds, batteryCount, batteryLevel);
+        
+        // 阈值低于当前电量的规则才可能重新布防
+        if (batteryFiredCount > 0) {
+            for (int i = 0; i < from; i++) {
+                int slot = batterySlots[i];
+                if (batteryLevel >= batteryRearmLevels[i] && isBatteryFired(slot)) {
+                    setBatteryFired(slot, false);
+                }
+            }
+        }
+        
+        int matched = 0;
+        for (int i = from; i < batteryCount; i++) {
+            int slot = batterySlots[i];
+            if (!isBatteryFired(slot) && rules[slot].matchesCondition(state)) {
+                setBatteryFired(slot, true);
+                sink.onRuleMatched(rules[slot]);
+                matched++;
+            }
+        }
+        return matched;
+    }
+    
+    /**
+     * 分发电源事件
+     * @return 命中的规则数
+     */
+    int dispatchPower(boolean plugged, RuleSink sink) {
+        int[] slots = plugged ? pluggedSlots : unpluggedSlots;
+        int count = plugged ? pluggedCount : unpluggedCount;
+        for (int i = 0; i < count; i++) {
+            sink.onRuleMatched(rules[slots[i]]);
+        }
+        return count;
+    }
+    
+    /**
+     * 距离下一个非空时间桶的分钟数（严格晚于 minuteOfWeek，跨周循环）
+     * @return 1..MINUTES_PER_WEEK，没有时间触发器时返回 -1
+     */
+    int minutesUntilNextTime(int minuteOfWeek) {
+        return minutesUntilNext(occupiedMinutes, minuteOfWeek);
+    }
+    
+    /**
+     * 距离下一个含模板规则的时间桶的分钟数，语义同 minutesUntilNextTime
+     */
+    int minutesUntilNextTemplate(int minuteOfWeek) {
+        return minutesUntilNext(templateMinutes, minuteOfWeek);
+    }
+    
+    /**
+     * 分发指定分钟内含模板的规则（用于预取，不影响触发状态）
+     * @return 命中的规则数
+     */
+    int dispatchTemplates(int minuteOfWeek, RuleSink sink) {
+        if ((templateMinutes[minuteOfWeek >> 6] & (1L << minuteOfWeek)) == 0) return 0;
+        int[] bucket = timeBuckets[minuteOfWeek];
+        int matched = 0;
+        for (int slot : bucket) {
+            if (rules[slot].hasTemplate) {
+                sink.onRuleMatched(rules[slot]);
+                matched++;
+            }
+        }
+        return matched;
+    }
+    
+    // ============== 私有方法 ==============
+    
+    /**
+     * 同一规则多个电量触发器时，取最大阈值的那个即可覆盖其余
+     */
+    private static AutomationRule.Trigger batteryTrigger(AutomationRule rule) {
+        AutomationRule.Trigger result = null;
+        for (AutomationRule.Trigger trigger : rule.triggers) {
+            if (trigger.typeCode == AutomationRule.Trigger.TYPE_BATTERY
+                && (result == null || trigger.levelBelow > result.levelBelow)) {
+                result = trigger;
+            }
+        }
+        return result;
+    }
+    
+    private static boolean hasPowerState(AutomationRule rule, int powerState) {
+        for (AutomationRule.Trigger trigger : rule.triggers) {
+            if (trigger.typeCode == AutomationRule.Trigger.TYPE_POWER && trigger.powerState == powerState) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 从无序槽位数组中删除 slot（保持其余顺序），返回新长度
+     */
+    private static int removeSlot(int[] slots, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) {
+                System.arraycopy(slots, i + 1, slots, i, count - i - 1);
+                return count - 1;
+            }
+        }
+        return count;
+    }
+    
+    private static int minutesUntilNext(long[] bitmap, int minuteOfWeek) {
+        int next = nextSetMinute(bitmap, minuteOfWeek + 1);
+        if (next >= 0) return next - minuteOfWeek;
+        
+        next = nextSetMinute(bitmap, 0);
+        if (next < 0) return -1;
+        return next + MINUTES_PER_WEEK - minuteOfWeek;
+    }
+    
+    private static int nextSetMinute(long[] bitmap, int from) {
+        if (from >= MINUTES_PER_WEEK) return -1;
+        int word = from >> 6;
+        long bits = bitmap[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int minute = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return minute < MINUTES_PER_WEEK ? minute : -1;
+            }
+            if (++word == bitmap.length) return -1;
+            bits = bitmap[word];
+        }
+    }
+    
+    private void indexTime(int slot, AutomationRule.Trigger trigger) {
+        for (int day = 0; day < 7; day++) {
+            if ((trigger.dayMask & (1 << day)) == 0) {
+                continue;
+            }
+            int minuteOfWeek = day * MINUTES_PER_DAY + trigger.minuteOfDay;
+            int[] bucket = timeBuckets[minuteOfWeek];
+            if (bucket == null) {
+                timeBuckets[minuteOfWeek] = new int[] { slot };
+                occupiedMinutes[minuteOfWeek >> 6] |= 1L << minuteOfWeek;
+            } else if (bucket[bucket.length - 1] != slot) {
+                // 同一规则的多个触发器落在同一分钟时只登记一次
+                int[] grown = Arrays.copyOf(bucket, bucket.length + 1);
+                grown[bucket.length] = slot;
+                timeBuckets[minuteOfWeek] = grown;
+            }
+            if (rules[slot].hasTemplate) {
+                templateMinutes[minuteOfWeek >> 6] |= 1L << minuteOfWeek;
+            }
+        }
+    }
+    
+    private void unindexTime(int slot, AutomationRule.Trigger trigger) {
+        for (int day = 0; day < 7; day++) {
+            if ((trigger.dayMask & (1 << day)) == 0) {
+                continue;
+            }
+            int minuteOfWeek = day * MINUTES_PER_DAY + trigger.minuteOfDay;
+            int[] bucket = timeBuckets[minuteOfWeek];
+            if (bucket == null) continue;
+            
+            int pos = -1;
+            for (int i = 0; i < bucket.length; i++) {
+                if (bucket[i] == slot) {
+                    pos = i;
+                    break;
+                }
+            }
+            if (pos < 0) continue;
+            
+            if (bucket.length == 1) {
+                timeBuckets[minuteOfWeek] = null;
+                occupiedMinutes[minuteOfWeek >> 6] &= ~(1L << minuteOfWeek);
+                templateMinutes[minuteOfWeek >> 6] &= ~(1L << minuteOfWeek);
+            } else {
+                int[] shrunk = new int[bucket.length - 1];
+                System.arraycopy(bucket, 0, shrunk, 0, pos);
+                System.arraycopy(bucket, pos + 1, shrunk, pos, bucket.length - pos - 1);
+                timeBuckets[minuteOfWeek] = shrunk;
+                if (rules[slot].hasTemplate && !anyTemplate(shrunk)) {
+                    templateMinutes[minuteOfWeek >> 6] &= ~(1L << minuteOfWeek);
+                }
+            }
+        }
+    }
+    
+    private boolean anyTemplate(int[] bucket) {
+        for (int slot : bucket) {
+            if (rules[slot].hasTemplate) return true;
+        }
+        return false;
+    }
+    
+    private void insertBattery(int slot, int threshold, int rearmLevel) {
+        if (batteryCount == batteryThresholds.length) {
+            batteryThresholds = Arrays.copyOf(batteryThresholds, batteryCount * 2);
+            batterySlots = Arrays.copyOf(batterySlots, batteryCount * 2);
+            batteryRearmLevels = Arrays.copyOf(batteryRearmLevels, batteryCount * 2);
+        }
+        int pos = lowerBound(batteryThresholds, batteryCount, threshold);
+        System.arraycopy(batteryThresholds, pos, batteryThresholds, pos + 1, batteryCount - pos);
+        System.arraycopy(batterySlots, pos, batterySlots, pos + 1, batteryCount - pos);
+        System.arraycopy(batteryRearmLevels, pos, batteryRearmLevels, pos + 1, batteryCount - pos);
+        batteryThresholds[pos] = threshold;
+        batterySlots[pos] = slot;
+        batteryRearmLevels[pos] = rearmLevel;
+        batteryCount++;
+        
+        if ((slot >> 6) >= batteryFired.length) {
+            batteryFired = Arrays.copyOf(batteryFired, Math.max(batteryFired.length * 2, (slot >> 6) + 1));
+        }
+    }
+    
+    private void removeBattery(int slot, int threshold) {
+        for (int i = lowerBound(batteryThresholds, batteryCount, threshold); i < batteryCount; i++) {
+            if (batterySlots[i] != slot) continue;
+            
+            int tail = batteryCount - i - 1;
+            System.arraycopy(batteryThresholds, i + 1, batteryThresholds, i, tail);
+            System.arraycopy(batterySlots, i + 1, batterySlots, i, tail);
+            System.arraycopy(batteryRearmLevels, i + 1, batteryRearmLevels, i, tail);
+            batteryCount--;
+            
+            if (isBatteryFired(slot)) {
+                setBatteryFired(slot, false);
+            }
+            return;
+        }
+    }
+    
+    private boolean isBatteryFired(int slot) {
+        return (batteryFired[slot >> 6] & (1L << slot)) != 0;
+    }
+    
+    private void setBatteryFired(int slot, boolean fired) {
+        if (fired) {
+            batteryFired[slot >> 6] |= 1L << slot;
+            batteryFiredCount++;
+        } else {
+            batteryFired[slot >> 6] &= ~(1L << slot);
+            batteryFiredCount--;
+        }
+    }
+    
+    /**
+     * 返回第一个 >= key 的下标
+     */
+    private static int lowerBound(int[] sorted, int length, int key) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * 本地时间毫秒数（UTC 毫秒 + 时区偏移）换算为一周中的分钟
+     * 纯整数运算，供每分钟的时间检查使用
+     */
+    static int minuteOfWeek(long localMillis) {
+        long minutes = localMillis / 60_000L;
+        if (localMillis % 60_000L < 0) minutes--;
+        // 1970-01-01 是周四，以周日为 0 时偏移 4 天
+        long minuteOfWeek = (minutes + 4L * MINUTES_PER_DAY) % MINUTES_PER_WEEK;
+        if (minuteOfWeek < 0) minuteOfWeek += MINUTES_PER_WEEK;
+        return (int) minuteOfWeek;
+    }
+}
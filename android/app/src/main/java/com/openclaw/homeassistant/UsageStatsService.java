@@ -7,179 +7,656 @@ import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * 使用统计服务
  * 功能：统计规则触发次数/时间分布
+ *
+ * 存储：files/usage_stats/ 下每天一个列式文件（规则 × 小时的计数矩阵，见 UsageStatsStore），
+ * 保留最近 RETENTION_DAYS 天，更早的日期压缩进累计汇总后删除。
+ * 写回缓存：记录触发只累加内存中的计数器（无锁、无 I/O），
+ * 有新计数后最多 FLUSH_DELAY_MS 由后台线程合并写入当天的文件，
+ * 服务销毁时由 flush() 立即写入。查询结果 = 文件中的值 + 内存中尚未写入的增量。
+ * 进程被杀时最多丢失 FLUSH_DELAY_MS 内的统计（触发历史以 AutomationLogger 为准）。
+ *
+ * 查询与 flush 可能读写文件，需在后台线程调用。
+ * 进程内共享一个实例（见 getInstance）：flush 用已加载的内容整体重写当天文件，
+ * 多个实例会互相覆盖对方写入的计数。
  */
 public class UsageStatsService {
     
     private static final String TAG = "UsageStatsService";
-    private static final String PREFS_NAME = "usage_stats";
+    private static final String STATS_DIR = "usage_stats";
+    // 旧版本存放在 SharedPreferences 中的统计，首次使用时迁移
+    private static final String LEGACY_PREFS_NAME = "usage_stats";
+    
+    // 按天保留的统计天数，更早的只保留累计值
+    static final int RETENTION_DAYS = 30;
+    // 有新计数后最多延迟多久写入存储
+    static final long FLUSH_DELAY_MS = 30 * 1000L;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    
+    private static final ScheduledExecutorService FLUSH_EXECUTOR =
+        Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "usage-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+    
+    private static volatile UsageStatsService instance;
+    
+    /**
+     * 某天某条规则的待写入计数（按小时）
+     */
+    private static final class RuleCounter {
+        final AtomicIntegerArray hours = new AtomicIntegerArray(UsageStatsStore.HOURS);
+        volatile String name;
+    }
+    
+    /**
+     * 某个本地日期的待写入计数
+     */
+    private static final class DayCounters {
+        final long epochDay;
+        final ConcurrentHashMap<String, RuleCounter> rules = new ConcurrentHashMap<>();
+        
+        DayCounters(long epochDay) {
+            this.epochDay = epochDay;
+        }
+    }
+    
+    /**
+     * 最近一次记录所在的本地小时：落在 [startUtc, endUtc) 内的触发不需要时区换算
+     */
+    private static final class HourWindow {
+        final long startUtc;
+        final long endUtc;
+        final int hour;
+        final DayCounters day;
+        
+        HourWindow(long startUtc, int hour, DayCounters day) {
+            this.startUtc = startUtc;
+            this.endUtc = startUtc + HOUR_MS;
+            this.hour = hour;
+            this.day = day;
+        }
+    }
     
     private final Context context;
-    private final SharedPreferences prefs;
+    private final UsageStatsStore store;
     private final SimpleDateFormat dateFormat;
-    private final SimpleDateFormat hourFormat;
     
-    public UsageStatsService(Context context) {
+    // 待写入的增量：记录路径只做原子累加；写入与查询在 this 上同步，
+    // 写入时 getAndSet(0) 取走增量，不会丢失并发的累加
+    // 本地日期 -> 当天计数（只在 this 上同步访问）
+    private final Map<Long, DayCounters> pendingDays = new HashMap<>();
+    private volatile HourWindow window;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    
+    // 已加载的文件内容（只在 this 上同步访问）
+    private UsageStatsStore.Summary summary;
+    private final Map<Long, UsageStatsStore.DayStats> loadedDays = new HashMap<>();
+    private boolean allDaysLoaded = false;
+    private long lastCompactionDay = Long.MIN_VALUE;
+    
+    public static UsageStatsService getInstance(Context context) {
+        if (instance == null) {
+            synchronized (UsageStatsService.class) {
+                if (instance == null) {
+                    instance = new UsageStatsService(context);
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * 应用内使用 getInstance；直接构造仅用于基准测试等独立目录的场景
+     */
+    UsageStatsService(Context context) {
         this.context = context.getApplicationContext();
-        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.store = new UsageStatsStore(new File(this.context.getFilesDir(), STATS_DIR));
         this.dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        this.hourFormat = new SimpleDateFormat("HH", Locale.getDefault());
     }
     
     /**
      * 记录规则触发
      */
-    public synchronized void recordTrigger(String ruleId, String ruleName) {
-        try {
-            String today = dateFormat.format(new Date());
-            String hour = hourFormat.format(new Date());
-            
-            // 今日统计
-            String todayKey = "today_" + today;
-            int todayCount = prefs.getInt(todayKey, 0);
-            prefs.edit().putInt(todayKey, todayCount + 1).apply();
-            
-            // 规则统计
-            String ruleKey = "rule_" + ruleId;
-            int ruleCount = prefs.getInt(ruleKey, 0);
-            prefs.edit().putInt(ruleKey, ruleCount + 1).apply();
-            
-            // 小时分布
-            String hourKey = "hour_" + hour;
-            int hourCount = prefs.getInt(hourKey, 0);
-            prefs.edit().putInt(hourKey, hourCount + 1).apply();
-            
-            // 最近 7 天统计
-            recordDailyStats(today, ruleId, ruleName);
-            
-            Log.d(TAG, "记录触发：" + ruleName + " (今日：" + (todayCount + 1) + ")");
-            
-        } catch (Exception e) {
-            Log.e(TAG, "记录统计失败", e);
+    public void recordTrigger(String ruleId, String ruleName) {
+        record(ruleId, ruleName, System.currentTimeMillis());
+        scheduleFlush();
+    }
+    
+    /**
+     * 批量记录规则触发（AutomationEventWriter 组提交时调用）
+     * @param count 数组中有效元素个数
+     */
+    public void recordTriggers(String[] ruleIds, String[] ruleNames, long[] timestamps, int count) {
+        if (count <= 0) return;
+        for (int i = 0; i < count; i++) {
+            record(ruleIds[i], ruleNames[i], timestamps[i]);
         }
+        scheduleFlush();
     }
     
     /**
-     * 记录每日统计
+     * 累加规则在当天当前小时的计数
      */
-    private void recordDailyStats(String date, String ruleId, String ruleName) {
+    private void record(String ruleId, String ruleName, long timestamp) {
+        if (ruleId == null) return;
+        
+        HourWindow w = window;
+        if (w == null || timestamp < w.startUtc || timestamp >= w.endUtc) {
+            w = windowFor(timestamp);
+        }
+        counter(w.day.rules, ruleId, ruleName).hours.incrementAndGet(w.hour);
+    }
+    
+    private static RuleCounter counter(ConcurrentHashMap<String, RuleCounter> counters,
+                                       String ruleId, String ruleName) {
+        RuleCounter counter = counters.get(ruleId);
+        if (counter == null) {
+            RuleCounter created = new RuleCounter();
+            counter = counters.putIfAbsent(ruleId, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        if (ruleName != null && ruleName != counter.name) {
+            counter.name = ruleName;
+        }
+        return counter;
+    }
+    
+    /**
+     * 时间戳所在的本地小时（跨小时或时区变更后调用）
+     */
+    private synchronized HourWindow windowFor(long timestamp) {
+        HourWindow current = window;
+        if (current != null && timestamp >= current.startUtc && timestamp < current.endUtc) {
+            return current;
+        }
+        
+        long local = timestamp + TimeZone.getDefault().getOffset(timestamp);
+        long localHour = floorDiv(local, HOUR_MS);
+        long epochDay = floorDiv(local, DAY_MS);
+        
+        DayCounters day = pendingDays.get(epochDay);
+        if (day == null) {
+            day = new DayCounters(epochDay);
+            pendingDays.put(epochDay, day);
+        }
+        HourWindow created = new HourWindow(timestamp - (local - localHour * HOUR_MS),
+            (int) (localHour - epochDay * 24), day);
+        // 只让窗口向前移动，迟到的旧时间戳不把窗口拉回去
+        if (current == null || created.startUtc > current.startUtc) {
+            window = created;
+        }
+        return created;
+    }
+    
+    /**
+     * 时区变更后调用，下一次记录重新计算本地小时
+     */
+    public void onTimeZoneChanged() {
+        window = null;
+    }
+    
+    // ============== 写入存储 ==============
+    
+    private void scheduleFlush() {
+        if (flushScheduled.get() || !flushScheduled.compareAndSet(false, true)) return;
+        FLUSH_EXECUTOR.schedule(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                Log.e(TAG, "写入统计失败", e);
+            }
+        }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 把内存中的增量合并写入当天的统计文件（定时调用；服务销毁时立即调用）
+     * 同时按天执行过期压缩
+     */
+    public synchronized void flush() {
+        // 先清除标记：之后到达的计数会安排下一次写入
+        flushScheduled.set(false);
+        
         try {
-            String dailyKey = "daily_" + date;
-            String dailyJson = prefs.getString(dailyKey, "{}");
-            JSONObject daily = new JSONObject(dailyJson);
+            UsageStatsStore.Summary summary = summary();
+            compact(summary, localEpochDay(System.currentTimeMillis()));
             
-            JSONObject ruleStats = daily.optJSONObject(ruleId);
-            if (ruleStats == null) {
-                ruleStats = new JSONObject();
-                ruleStats.put("name", ruleName);
-                ruleStats.put("count", 0);
+            int flushed = 0;
+            boolean summaryDirty = false;
+            HourWindow current = window;
+            Iterator<DayCounters> iterator = pendingDays.values().iterator();
+            while (iterator.hasNext()) {
+                DayCounters pending = iterator.next();
+                // 已压缩的日期（时钟回拨等）直接计入汇总
+                UsageStatsStore.DayStats day = pending.epochDay > summary.compactedThrough
+                    ? day(pending.epochDay) : null;
+                
+                for (Map.Entry<String, RuleCounter> entry : pending.rules.entrySet()) {
+                    RuleCounter counter = entry.getValue();
+                    int slot = -1;
+                    for (int hour = 0; hour < UsageStatsStore.HOURS; hour++) {
+                        int delta = counter.hours.getAndSet(hour, 0);
+                        if (delta == 0) continue;
+                        flushed += delta;
+                        if (day != null) {
+                            if (slot < 0) {
+                                slot = day.slot(entry.getKey(), counter.name);
+                            }
+                            day.add(slot, hour, delta);
+                        } else {
+                            summary.addRule(entry.getKey(), delta);
+                            summary.hours[hour] += delta;
+                            summaryDirty = true;
+                        }
+                    }
+                }
+                
+                // 写入路径只经由当前窗口的日期累加，更早的日期写完后不再保留
+                if (current != null && pending.epochDay < current.day.epochDay - 1) {
+                    iterator.remove();
+                }
             }
             
-            ruleStats.put("count", ruleStats.getInt("count") + 1);
-            daily.put(ruleId, ruleStats);
-            
-            prefs.edit().putString(dailyKey, daily.toString()).apply();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "记录每日统计失败", e);
+            // 包括之前写入失败的日期
+            for (UsageStatsStore.DayStats day : loadedDays.values()) {
+                if (day.dirty) {
+                    store.writeDay(day);
+                }
+            }
+            if (summaryDirty) {
+                store.writeSummary(summary);
+            }
+            if (flushed > 0) {
+                Log.d(TAG, "写入触发统计 " + flushed + " 次");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "写入统计文件失败", e);
         }
     }
     
+    /**
+     * 把超出保留期的日期并入汇总并删除其文件（每天最多执行一次）
+     * 先写入汇总（含 compactedThrough）再删除文件，中途退出时残留的文件下次直接删除，不会重复计数
+     */
+    private void compact(UsageStatsStore.Summary summary, long today) throws IOException {
+        if (lastCompactionDay == today) return;
+        
+        long keepFrom = today - RETENTION_DAYS + 1;
+        long[] stored = store.listDays();
+        int expired = 0;
+        for (long epochDay : stored) {
+            if (epochDay >= keepFrom) break;
+            if (epochDay > summary.compactedThrough) {
+                summary.fold(day(epochDay));
+            }
+            expired++;
+        }
+        if (keepFrom - 1 > summary.compactedThrough) {
+            summary.compactedThrough = keepFrom - 1;
+            store.writeSummary(summary);
+        }
+        for (int i = 0; i < expired; i++) {
+            store.deleteDay(stored[i]);
+        }
+        // 包括只在内存中的日期（如没有文件的空日期）
+        Iterator<Long> iterator = loadedDays.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() < keepFrom) {
+                iterator.remove();
+            }
+        }
+        lastCompactionDay = today;
+        if (expired > 0) {
+            Log.d(TAG, "压缩过期统计 " + expired + " 天");
+        }
+    }
+    
+    // ============== 查询 ==============
+    
     /**
      * 获取今日触发次数
      */
-    public int getTodayCount() {
-        String today = dateFormat.format(new Date());
-        return prefs.getInt("today_" + today, 0);
+    public synchronized int getTodayCount() {
+        long today = localEpochDay(System.currentTimeMillis());
+        int count = 0;
+        try {
+            if (today > summary().compactedThrough) {
+                count = day(today).total();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取统计失败", e);
+        }
+        DayCounters pending = pendingDays.get(today);
+        if (pending != null) {
+            for (RuleCounter counter : pending.rules.values()) {
+                count += sum(counter.hours);
+            }
+        }
+        return count;
     }
     
     /**
      * 获取规则总触发次数
      */
-    public int getRuleCount(String ruleId) {
-        return prefs.getInt("rule_" + ruleId, 0);
+    public synchronized int getRuleCount(String ruleId) {
+        if (ruleId == null) return 0;
+        int count = 0;
+        try {
+            count = summary().ruleTotal(ruleId);
+            for (UsageStatsStore.DayStats day : allDays()) {
+                int slot = day.find(ruleId);
+                if (slot >= 0) {
+                    count += day.ruleTotal(slot);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取统计失败", e);
+        }
+        for (DayCounters pending : pendingDays.values()) {
+            RuleCounter counter = pending.rules.get(ruleId);
+            if (counter != null) {
+                count += sum(counter.hours);
+            }
+        }
+        return count;
     }
     
     /**
      * 获取小时分布
      */
-    public Map<Integer, Integer> getHourlyDistribution() {
-        Map<Integer, Integer> distribution = new HashMap<>();
-        
-        for (int hour = 0; hour < 24; hour++) {
-            String hourKey = "hour_" + String.format(Locale.getDefault(), "%02d", hour);
-            int count = prefs.getInt(hourKey, 0);
-            if (count > 0) {
-                distribution.put(hour, count);
+    public synchronized Map<Integer, Integer> getHourlyDistribution() {
+        int[] hours = new int[UsageStatsStore.HOURS];
+        try {
+            System.arraycopy(summary().hours, 0, hours, 0, hours.length);
+            for (UsageStatsStore.DayStats day : allDays()) {
+                for (int slot = 0; slot < day.ruleCount(); slot++) {
+                    for (int hour = 0; hour < hours.length; hour++) {
+                        hours[hour] += day.get(slot, hour);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取统计失败", e);
+        }
+        for (DayCounters pending : pendingDays.values()) {
+            for (RuleCounter counter : pending.rules.values()) {
+                for (int hour = 0; hour < hours.length; hour++) {
+                    hours[hour] += counter.hours.get(hour);
+                }
             }
         }
         
+        Map<Integer, Integer> distribution = new HashMap<>();
+        for (int hour = 0; hour < hours.length; hour++) {
+            if (hours[hour] > 0) {
+                distribution.put(hour, hours[hour]);
+            }
+        }
         return distribution;
     }
     
     /**
-     * 获取最近 7 天统计
+     * 获取最近 7 天统计（从旧到新）
      */
-    public List<DailyStats> getLast7DaysStats() {
+    public synchronized List<DailyStats> getLast7DaysStats() {
         List<DailyStats> stats = new ArrayList<>();
+        dateFormat.setTimeZone(TimeZone.getDefault());
         
-        Calendar calendar = Calendar.getInstance();
         for (int i = 6; i >= 0; i--) {
+            Calendar calendar = Calendar.getInstance();
             calendar.add(Calendar.DAY_OF_YEAR, -i);
-            String date = dateFormat.format(calendar.getTime());
-            
-            String dailyKey = "daily_" + date;
-            String dailyJson = prefs.getString(dailyKey, "{}");
+            long epochDay = localEpochDay(calendar.getTimeInMillis());
             
             DailyStats dailyStats = new DailyStats();
-            dailyStats.date = date;
+            dailyStats.date = dateFormat.format(calendar.getTime());
             dailyStats.rules = new ArrayList<>();
             
             try {
-                JSONObject daily = new JSONObject(dailyJson);
-                JSONArray keys = daily.names();
-                if (keys != null) {
-                    for (int j = 0; j < keys.length(); j++) {
-                        String ruleId = keys.getString(j);
-                        JSONObject ruleStats = daily.getJSONObject(ruleId);
+                if (epochDay > summary().compactedThrough) {
+                    UsageStatsStore.DayStats day = day(epochDay);
+                    for (int slot = 0; slot < day.ruleCount(); slot++) {
+                        int count = day.ruleTotal(slot);
+                        if (count == 0) continue;
                         
                         RuleStats ruleStat = new RuleStats();
-                        ruleStat.ruleId = ruleId;
-                        ruleStat.ruleName = ruleStats.optString("name", ruleId);
-                        ruleStat.count = ruleStats.getInt("count");
-                        
+                        ruleStat.ruleId = day.ruleId(slot);
+                        ruleStat.ruleName = day.ruleName(slot) != null ? day.ruleName(slot) : ruleStat.ruleId;
+                        ruleStat.count = count;
                         dailyStats.rules.add(ruleStat);
                     }
                 }
-            } catch (Exception e) {
-                // 忽略解析错误
+            } catch (IOException e) {
+                Log.e(TAG, "读取统计失败：" + dailyStats.date, e);
             }
             
+            addPendingDailyStats(dailyStats, epochDay);
             stats.add(dailyStats);
         }
         
         return stats;
     }
     
+    /**
+     * 合并内存中尚未写入的当天规则计数
+     */
+    private void addPendingDailyStats(DailyStats dailyStats, long epochDay) {
+        DayCounters pending = pendingDays.get(epochDay);
+        if (pending == null) return;
+        
+        for (Map.Entry<String, RuleCounter> entry : pending.rules.entrySet()) {
+            int count = sum(entry.getValue().hours);
+            if (count == 0) continue;
+            
+            RuleStats ruleStat = null;
+            for (RuleStats existing : dailyStats.rules) {
+                if (existing.ruleId.equals(entry.getKey())) {
+                    ruleStat = existing;
+                    break;
+                }
+            }
+            if (ruleStat == null) {
+                ruleStat = new RuleStats();
+                ruleStat.ruleId = entry.getKey();
+                String name = entry.getValue().name;
+                ruleStat.ruleName = name != null ? name : entry.getKey();
+                dailyStats.rules.add(ruleStat);
+            }
+            ruleStat.count += count;
+        }
+    }
+    
     /**
      * 清空统计
      */
-    public void clearStats() {
-        prefs.edit().clear().apply();
+    public synchronized void clearStats() {
+        for (DayCounters pending : pendingDays.values()) {
+            for (RuleCounter counter : pending.rules.values()) {
+                for (int hour = 0; hour < UsageStatsStore.HOURS; hour++) {
+                    counter.hours.set(hour, 0);
+                }
+            }
+        }
+        store.clear();
+        loadedDays.clear();
+        allDaysLoaded = false;
+        lastCompactionDay = Long.MIN_VALUE;
+        summary = new UsageStatsStore.Summary();
+        summary.compactedThrough = localEpochDay(System.currentTimeMillis()) - RETENTION_DAYS;
+        try {
+            store.writeSummary(summary);
+        } catch (IOException e) {
+            Log.e(TAG, "写入统计文件失败", e);
+        }
         Log.d(TAG, "统计已清空");
     }
     
+    // ============== 文件缓存（锁内） ==============
+    
+    private UsageStatsStore.Summary summary() throws IOException {
+        if (summary == null) {
+            UsageStatsStore.Summary loaded;
+            try {
+                loaded = store.readSummary();
+            } catch (IOException e) {
+                // 损坏的汇总按不存在处理，下次写入时覆盖
+                Log.e(TAG, "读取统计汇总失败", e);
+                loaded = null;
+            }
+            summary = loaded != null ? loaded : migrateLegacyPrefs();
+        }
+        return summary;
+    }
+    
+    private UsageStatsStore.DayStats day(long epochDay) {
+        UsageStatsStore.DayStats day = loadedDays.get(epochDay);
+        if (day == null) {
+            try {
+                day = store.readDay(epochDay);
+            } catch (IOException e) {
+                // 损坏的文件按空统计处理，下次写入时覆盖
+                Log.e(TAG, "读取统计文件失败：" + epochDay, e);
+                day = new UsageStatsStore.DayStats(epochDay);
+            }
+            loadedDays.put(epochDay, day);
+        }
+        return day;
+    }
+    
+    /**
+     * 保留期内的全部日期（首次调用时加载所有日期文件，每个只有几 KB）
+     */
+    private Iterable<UsageStatsStore.DayStats> allDays() throws IOException {
+        UsageStatsStore.Summary summary = summary();
+        if (!allDaysLoaded) {
+            for (long epochDay : store.listDays()) {
+                if (epochDay > summary.compactedThrough) {
+                    day(epochDay);
+                }
+            }
+            allDaysLoaded = true;
+        }
+        return loadedDays.values();
+    }
+    
+    /**
+     * 迁移旧版 SharedPreferences 统计：
+     * 保留期内的 daily_<date> 写入日期文件的时段未知列，
+     * rule_ 累计值扣除这部分后计入汇总；hour_ 不含日期信息，全部计入汇总
+     */
+    private UsageStatsStore.Summary migrateLegacyPrefs() throws IOException {
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        long keepFrom = localEpochDay(System.currentTimeMillis()) - RETENTION_DAYS + 1;
+        
+        UsageStatsStore.Summary migrated = new UsageStatsStore.Summary();
+        migrated.compactedThrough = keepFrom - 1;
+        Map<String, Integer> migratedDaily = new HashMap<>();
+        Map<String, ?> all = prefs.getAll();
+        
+        dateFormat.setTimeZone(TimeZone.getDefault());
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith("daily_")) continue;
+            try {
+                Date date = dateFormat.parse(key.substring("daily_".length()));
+                long epochDay = localEpochDay(date.getTime());
+                if (epochDay < keepFrom) continue;
+                
+                UsageStatsStore.DayStats day = day(epochDay);
+                JSONObject daily = new JSONObject(String.valueOf(entry.getValue()));
+                JSONArray ruleIds = daily.names();
+                for (int i = 0; ruleIds != null && i < ruleIds.length(); i++) {
+                    String ruleId = ruleIds.getString(i);
+                    JSONObject ruleStats = daily.getJSONObject(ruleId);
+                    int count = ruleStats.optInt("count", 0);
+                    if (count <= 0) continue;
+                    
+                    int slot = day.slot(ruleId, ruleStats.optString("name", null));
+                    day.add(slot, UsageStatsStore.UNKNOWN_HOUR, count);
+                    Integer sum = migratedDaily.get(ruleId);
+                    migratedDaily.put(ruleId, sum == null ? count : sum + count);
+                }
+                store.writeDay(day);
+            } catch (Exception e) {
+                Log.w(TAG, "跳过无法迁移的统计：" + key, e);
+            }
+        }
+        
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            String key = entry.getKey();
+            if (!(entry.getValue() instanceof Integer)) continue;
+            int value = (Integer) entry.getValue();
+            if (key.startsWith("rule_")) {
+                String ruleId = key.substring("rule_".length());
+                Integer daily = migratedDaily.get(ruleId);
+                int remaining = value - (daily != null ? daily : 0);
+                if (remaining > 0) {
+                    migrated.addRule(ruleId, remaining);
+                }
+            } else if (key.startsWith("hour_")) {
+                try {
+                    int hour = Integer.parseInt(key.substring("hour_".length()));
+                    if (hour >= 0 && hour < UsageStatsStore.HOURS) {
+                        migrated.hours[hour] += value;
+                    }
+                } catch (NumberFormatException e) {
+                    // 忽略无法识别的键
+                }
+            }
+        }
+        
+        store.writeSummary(migrated);
+        if (!all.isEmpty()) {
+            prefs.edit().clear().apply();
+            Log.d(TAG, "已迁移旧统计 " + all.size() + " 项");
+        }
+        return migrated;
+    }
+    
+    // ============== 工具 ==============
+    
+    private static long localEpochDay(long utcMillis) {
+        return floorDiv(utcMillis + TimeZone.getDefault().getOffset(utcMillis), DAY_MS);
+    }
+    
+    private static int sum(AtomicIntegerArray values) {
+        int sum = 0;
+        for (int i = 0; i < values.length(); i++) {
+            sum += values.get(i);
+        }
+        return sum;
+    }
+    
+    // Math.floorDiv 需要 API 24
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+    
     /**
      * 每日统计
      */
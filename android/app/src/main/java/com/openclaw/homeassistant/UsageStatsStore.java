@@ -0,0 +1,361 @@
+package com.openclaw.homeassistant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用统计的列式文件存储（files/usage_stats/）
+ *   <epochDay>.day —— 每个本地日期一个文件：规则字典（ruleId、规则名）+ 规则槽位 × COLUMNS 的 int 矩阵，
+ *                     第 0-23 列为各小时的触发次数，第 24 列为迁移自旧版、没有小时信息的次数
+ *   summary.bin    —— 已超出保留期并删除的日期的累计值（按规则、按小时）
+ * 文件整体读写，先写临时文件再重命名；写入日期文件时去掉计数全为 0 的规则（字典压缩）。
+ *
+ * 非线程安全，由 UsageStatsService 在锁内调用。
+ */
+class UsageStatsStore {
+    
+    static final int HOURS = 24;
+    static final int UNKNOWN_HOUR = 24;
+    static final int COLUMNS = 25;
+    
+    private static final int MAGIC_DAY = 0x4F435344;      // "OCSD"
+    private static final int MAGIC_SUMMARY = 0x4F435353;  // "OCSS"
+    private static final int VERSION = 1;
+    private static final String DAY_SUFFIX = ".day";
+    private static final String SUMMARY_FILE = "summary.bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    /**
+     * 一天的统计矩阵
+     */
+    static final class DayStats {
+        final long epochDay;
+        private final List<String> ruleIds = new ArrayList<>();
+        private final List<String> ruleNames = new ArrayList<>();
+        private final Map<String, Integer> slots = new HashMap<>();
+        private int[] counts = new int[8 * COLUMNS];
+        // 内存中的计数尚未写入文件
+        boolean dirty;
+        
+        DayStats(long epochDay) {
+            this.epochDay = epochDay;
+        }
+        
+        int ruleCount() {
+            return ruleIds.size();
+        }
+        
+        String ruleId(int slot) {
+            return ruleIds.get(slot);
+        }
+        
+        String ruleName(int slot) {
+            return ruleNames.get(slot);
+        }
+        
+        /**
+         * 规则的槽位，不存在时返回 -1
+         */
+        int find(String ruleId) {
+            Integer slot = slots.get(ruleId);
+            return slot != null ? slot : -1;
+        }
+        
+        /**
+         * 规则的槽位，不存在时追加；规则名以最新的为准
+         */
+        int slot(String ruleId, String ruleName) {
+            Integer slot = slots.get(ruleId);
+            if (slot != null) {
+                if (ruleName != null && !ruleName.equals(ruleNames.get(slot))) {
+                    ruleNames.set(slot, ruleName);
+                    dirty = true;
+                }
+                return slot;
+            }
+            int created = ruleIds.size();
+            ruleIds.add(ruleId);
+            ruleNames.add(ruleName);
+            slots.put(ruleId, created);
+            if ((created + 1) * COLUMNS > counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+            return created;
+        }
+        
+        int get(int slot, int column) {
+            return counts[slot * COLUMNS + column];
+        }
+        
+        void add(int slot, int column, int delta) {
+            counts[slot * COLUMNS + column] += delta;
+            dirty = true;
+        }
+        
+        /** 规则当天的总次数（含时段未知列） */
+        int ruleTotal(int slot) {
+            int total = 0;
+            for (int column = 0, base = slot * COLUMNS; column < COLUMNS; column++) {
+                total += counts[base + column];
+            }
+            return total;
+        }
+        
+        int total() {
+            int total = 0;
+            for (int i = 0, n = ruleIds.size() * COLUMNS; i < n; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+    }
+    
+    /**
+     * 已压缩（删除日期文件）部分的累计值
+     */
+    static final class Summary {
+        // 该日期及之前的日期文件已并入本汇总
+        long compactedThrough = Long.MIN_VALUE;
+        final int[] hours = new int[HOURS];
+        final Map<String, Integer> ruleTotals = new HashMap<>();
+        
+        int ruleTotal(String ruleId) {
+            Integer total = ruleTotals.get(ruleId);
+            return total != null ? total : 0;
+        }
+        
+        void addRule(String ruleId, int delta) {
+            ruleTotals.put(ruleId, ruleTotal(ruleId) + delta);
+        }
+        
+        /**
+         * 并入一天的统计（时段未知列只计入规则累计）
+         */
+        void fold(DayStats day) {
+            for (int slot = 0; slot < day.ruleCount(); slot++) {
+                int total = day.ruleTotal(slot);
+                if (total > 0) {
+                    addRule(day.ruleId(slot), total);
+                }
+                for (int hour = 0; hour < HOURS; hour++) {
+                    hours[hour] += day.get(slot, hour);
+                }
+            }
+        }
+    }
+    
+    private final File dir;
+    
+    UsageStatsStore(File dir) {
+        this.dir = dir;
+    }
+    
+    // ============== 日期文件 ==============
+    
+    /**
+     * 已存储的日期（升序）
+     */
+    long[] listDays() {
+        String[] names = dir.list();
+        if (names == null) return new long[0];
+        
+        long[] days = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (!name.endsWith(DAY_SUFFIX)) continue;
+            try {
+                days[count++] = Long.parseLong(name.substring(0, name.length() - DAY_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                // 忽略无法识别的文件
+            }
+        }
+        days = Arrays.copyOf(days, count);
+        Arrays.sort(days);
+        return days;
+    }
+    
+    /**
+     * 读取一天的统计，文件不存在时返回空矩阵
+     */
+    DayStats readDay(long epochDay) throws IOException {
+        DayStats day = new DayStats(epochDay);
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(dayFile(epochDay))));
+        } catch (FileNotFoundException e) {
+            return day;
+        }
+        try {
+            checkHeader(in, MAGIC_DAY);
+            long storedDay = in.readLong();
+            int columns = in.readInt();
+            int rules = in.readInt();
+            if (storedDay != epochDay || columns != COLUMNS || rules < 0) {
+                throw new IOException("统计文件格式错误：" + epochDay);
+            }
+            for (int i = 0; i < rules; i++) {
+                String ruleId = in.readUTF();
+                String ruleName = in.readUTF();
+                day.slot(ruleId, ruleName.isEmpty() ? null : ruleName);
+            }
+            for (int i = 0; i < rules * COLUMNS; i++) {
+                day.counts[i] = in.readInt();
+            }
+        } finally {
+            in.close();
+        }
+        day.dirty = false;
+        return day;
+    }
+    
+    /**
+     * 写入一天的统计；没有计数时删除文件
+     */
+    void writeDay(DayStats day) throws IOException {
+        int rules = 0;
+        for (int slot = 0; slot < day.ruleCount(); slot++) {
+            if (day.ruleTotal(slot) > 0) rules++;
+        }
+        if (rules == 0) {
+            deleteDay(day.epochDay);
+            day.dirty = false;
+            return;
+        }
+        
+        File file = dayFile(day.epochDay);
+        File temp = new File(dir, file.getName() + TEMP_SUFFIX);
+        DataOutputStream out = open(temp);
+        try {
+            out.writeInt(MAGIC_DAY);
+            out.writeInt(VERSION);
+            out.writeLong(day.epochDay);
+            out.writeInt(COLUMNS);
+            out.writeInt(rules);
+            for (int slot = 0; slot < day.ruleCount(); slot++) {
+                if (day.ruleTotal(slot) == 0) continue;
+                String ruleName = day.ruleName(slot);
+                out.writeUTF(day.ruleId(slot));
+                out.writeUTF(ruleName != null ? ruleName : "");
+            }
+            for (int slot = 0; slot < day.ruleCount(); slot++) {
+                if (day.ruleTotal(slot) == 0) continue;
+                for (int column = 0; column < COLUMNS; column++) {
+                    out.writeInt(day.get(slot, column));
+                }
+            }
+        } finally {
+            out.close();
+        }
+        replace(temp, file);
+        day.dirty = false;
+    }
+    
+    void deleteDay(long epochDay) {
+        dayFile(epochDay).delete();
+    }
+    
+    // ============== 汇总文件 ==============
+    
+    /**
+     * 读取汇总，文件不存在时返回 null
+     */
+    Summary readSummary() throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(new File(dir, SUMMARY_FILE))));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        Summary summary = new Summary();
+        try {
+            checkHeader(in, MAGIC_SUMMARY);
+            summary.compactedThrough = in.readLong();
+            for (int hour = 0; hour < HOURS; hour++) {
+                summary.hours[hour] = in.readInt();
+            }
+            int rules = in.readInt();
+            for (int i = 0; i < rules; i++) {
+                summary.ruleTotals.put(in.readUTF(), in.readInt());
+            }
+        } finally {
+            in.close();
+        }
+        return summary;
+    }
+    
+    void writeSummary(Summary summary) throws IOException {
+        File file = new File(dir, SUMMARY_FILE);
+        File temp = new File(dir, SUMMARY_FILE + TEMP_SUFFIX);
+        DataOutputStream out = open(temp);
+        try {
+            out.writeInt(MAGIC_SUMMARY);
+            out.writeInt(VERSION);
+            out.writeLong(summary.compactedThrough);
+            for (int hour = 0; hour < HOURS; hour++) {
+                out.writeInt(summary.hours[hour]);
+            }
+            out.writeInt(summary.ruleTotals.size());
+            for (Map.Entry<String, Integer> entry : summary.ruleTotals.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        replace(temp, file);
+    }
+    
+    /**
+     * 删除所有统计文件
+     */
+    void clear() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+    
+    // ============== 内部 ==============
+    
+    private File dayFile(long epochDay) {
+        return new File(dir, epochDay + DAY_SUFFIX);
+    }
+    
+    private DataOutputStream open(File file) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建统计目录：" + dir);
+        }
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+    
+    private static void replace(File temp, File file) throws IOException {
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("无法写入统计文件：" + file);
+        }
+    }
+    
+    private static void checkHeader(DataInputStream in, int magic) throws IOException {
+        if (in.readInt() != magic) {
+            throw new IOException("统计文件标识错误");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的统计文件版本：" + version);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContextWrapper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行管线的关闭与异常处理：关闭后已排队任务仍执行完，任务抛出 Error 后规则队列不会卡死
+ */
+public class AutomationExecutorTest {
+    
+    @Test
+    public void shutdownDrainsQueuedTasksInOrder() throws Exception {
+        AutomationExecutor executor = newExecutor(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        
+        assertTrue(executor.submit("rule", () -> {
+            await(release);
+            ran.add("a");
+        }));
+        assertTrue(executor.submit("rule", () -> ran.add("b")));
+        assertTrue(executor.submit("rule", () -> {
+            ran.add("c");
+            done.countDown();
+        }));
+        
+        executor.shutdown();
+        assertFalse(executor.submit("rule", () -> ran.add("late")));
+        release.countDown();
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "b", "c"), ran);
+        waitForIdle(executor);
+        assertEquals(3, executor.getCompletedCount());
+        assertEquals(1, executor.getRejectedCount());
+    }
+    
+    @Test
+    public void shutdownDrainsEveryRule() throws Exception {
+        AutomationExecutor executor = newExecutor(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        
+        for (String rule : new String[] { "r1", "r2", "r3" }) {
+            assertTrue(executor.submit(rule, () -> {
+                await(release);
+                done.countDown();
+            }));
+            assertTrue(executor.submit(rule, done::countDown));
+        }
+        executor.shutdown();
+        release.countDown();
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        waitForIdle(executor);
+        assertEquals(6, executor.getCompletedCount());
+        assertEquals(0, executor.getRejectedCount());
+    }
+    
+    @Test
+    public void errorInTaskDoesNotWedgeRule() throws Exception {
+        AutomationExecutor executor = newExecutor(1);
+        CountDownLatch done = new CountDownLatch(1);
+        
+        assertTrue(executor.submit("rule", () -> {
+            throw new AssertionError("任务内部错误");
+        }));
+        assertTrue(executor.submit("rule", done::countDown));
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        waitForIdle(executor);
+        assertEquals(1, executor.getFailedCount());
+        
+        // 队列已复位，之后提交的任务照常执行
+        CountDownLatch again = new CountDownLatch(1);
+        assertTrue(executor.submit("rule", again::countDown));
+        assertTrue(again.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+    
+    private static AutomationExecutor newExecutor(int workers) {
+        return new AutomationExecutor(new ContextWrapper(null), workers,
+            AutomationExecutor.DEFAULT_MAX_PENDING, AutomationExecutor.DEFAULT_MAX_PENDING_PER_RULE);
+    }
+    
+    private static void waitForIdle(AutomationExecutor executor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, executor.getPendingCount());
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * 环形日志到历史数据库的增量同步：日志文件重新创建（序号从 0 开始）后新记录仍能同步
+ */
+public class AutomationLoggerSyncTest {
+    
+    private static final int CAPACITY = 16;
+    
+    private File dir;
+    private InMemoryEventDao dao;
+    
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("automation-log-test").toFile();
+        dao = new InMemoryEventDao();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+    
+    @Test
+    public void eventsAfterRingRecreationAreSynced() throws Exception {
+        AutomationLogger logger = new AutomationLogger(openRing("before.ring"), dao, 0);
+        for (int i = 0; i < 5; i++) {
+            logger.append(LogRingBuffer.KIND_TRIGGER, 1000 + i, "rule", "规则", "time", "old-" + i);
+        }
+        assertEquals(5, logger.getLogPage(Long.MAX_VALUE, 100).size());
+        assertEquals(4, dao.getMaxSequence());
+        
+        // 日志文件丢失后重新创建：序号从 0 开始，在首次同步前已写入一条
+        LogRingBuffer recreated = openRing("after.ring");
+        recreated.append(2000, LogRingBuffer.KIND_TRIGGER, "rule", "规则", "time", "new-0");
+        assertEquals(1, recreated.getNextSequence());
+        
+        AutomationLogger restarted = new AutomationLogger(recreated, dao, 0);
+        restarted.append(LogRingBuffer.KIND_ACTION, 2001, "rule", null, "speak", "new-1");
+        restarted.append(LogRingBuffer.KIND_ACTION, 2002, "rule", null, "notify", "new-2");
+        
+        List<AutomationLogger.LogEntry> page = restarted.getLogPage(Long.MAX_VALUE, 100);
+        
+        assertEquals(8, page.size());
+        assertEquals("new-2", page.get(0).details);
+        assertEquals(7, page.get(0).sequence);
+        assertEquals("new-1", page.get(1).details);
+        assertEquals("new-0", page.get(2).action);
+        assertEquals(5, page.get(2).sequence);
+        assertEquals("old-4", page.get(3).action);
+        assertEquals(8, recreated.getNextSequence());
+    }
+    
+    @Test
+    public void appendsContinueAfterRebase() throws Exception {
+        AutomationLogger logger = new AutomationLogger(openRing("before.ring"), dao, 0);
+        for (int i = 0; i < 3; i++) {
+            logger.append(LogRingBuffer.KIND_TRIGGER, 1000 + i, "rule", "规则", "time", "old-" + i);
+        }
+        logger.getLogPage(Long.MAX_VALUE, 100);
+        
+        AutomationLogger restarted = new AutomationLogger(openRing("after.ring"), dao, 0);
+        restarted.getLogPage(Long.MAX_VALUE, 100);
+        restarted.append(LogRingBuffer.KIND_TRIGGER, 2000, "rule", "规则", "time", "new-0");
+        
+        List<AutomationLogger.LogEntry> page = restarted.getLogPage(Long.MAX_VALUE, 100);
+        
+        assertEquals(4, page.size());
+        assertEquals(3, page.get(0).sequence);
+        assertEquals("new-0", page.get(0).action);
+    }
+    
+    @Test
+    public void clearAfterRingRecreationRemovesOldHistory() throws Exception {
+        AutomationLogger logger = new AutomationLogger(openRing("before.ring"), dao, 0);
+        for (int i = 0; i < 5; i++) {
+            logger.append(LogRingBuffer.KIND_TRIGGER, 1000 + i, "rule", "规则", "time", "old-" + i);
+        }
+        logger.getLogPage(Long.MAX_VALUE, 100);
+        
+        LogRingBuffer recreated = openRing("after.ring");
+        recreated.append(2000, LogRingBuffer.KIND_TRIGGER, "rule", "规则", "time", "new-0");
+        AutomationLogger restarted = new AutomationLogger(recreated, dao, 0);
+        restarted.clearLogs();
+        restarted.append(LogRingBuffer.KIND_TRIGGER, 3000, "rule", "规则", "time", "after-clear");
+        
+        List<AutomationLogger.LogEntry> page = restarted.getLogPage(Long.MAX_VALUE, 100);
+        
+        assertEquals(1, page.size());
+        assertEquals("after-clear", page.get(0).action);
+    }
+    
+    private LogRingBuffer openRing(String name) throws Exception {
+        return LogRingBuffer.open(new File(dir, name), CAPACITY, CAPACITY);
+    }
+    
+    /**
+     * 内存中的历史表：按序号唯一，只实现同步和分页用到的语句
+     */
+    private static class InMemoryEventDao extends AutomationEventDao {
+        private final TreeMap<Long, AutomationEvent> events = new TreeMap<>();
+        private long nextId = 1;
+        
+        @Override
+        synchronized long[] insertEvents(List<AutomationEvent> batch) {
+            long[] rowIds = new long[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                AutomationEvent event = batch.get(i);
+                if (events.containsKey(event.sequence)) {
+                    rowIds[i] = -1;
+                    continue;
+                }
+                event.id = nextId++;
+                events.put(event.sequence, event);
+                rowIds[i] = event.id;
+            }
+            return rowIds;
+        }
+        
+        @Override
+        public synchronized long getMaxSequence() {
+            return events.isEmpty() ? -1 : events.lastKey();
+        }
+        
+        @Override
+        public synchronized int count() {
+            return events.size();
+        }
+        
+        @Override
+        public synchronized List<AutomationEvent> getPage(long beforeSequence, int limit) {
+            List<AutomationEvent> page = new ArrayList<>();
+            for (AutomationEvent event : events.headMap(beforeSequence, false).descendingMap().values()) {
+                if (page.size() == limit) break;
+                page.add(event);
+            }
+            return page;
+        }
+        
+        @Override
+        synchronized int deleteEventsBeforeSequence(long sequence) {
+            int before = events.size();
+            events.headMap(sequence, false).clear();
+            return before - events.size();
+        }
+        
+        // 以下语句与同步无关
+        
+        @Override
+        public int getTriggerCount(String ruleId) {
+            return 0;
+        }
+        
+        @Override
+        public int countTriggers(String ruleId, long fromMillis, long toMillis) {
+            return 0;
+        }
+        
+        @Override
+        public List<AutomationEvent> getRange(long fromMillis, long toMillis, int limit) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public List<AutomationEvent> getRuleRange(String ruleId, long fromMillis, long toMillis, int limit) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public List<AutomationEvent> getExportPage(long afterTimestamp, long afterId, long toMillis, int limit) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public List<AutomationEvent> getRuleExportPage(String ruleId, long afterTimestamp, long afterId,
+                                                       long toMillis, int limit) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public List<AutomationRollup> getRollups(String ruleId, int granularity, long fromMillis, long toMillis) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public List<AutomationRollup> getRollupTotals(int granularity, long fromMillis, long toMillis) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public int deleteRollupsBefore(int granularity, long cutoffMillis) {
+            return 0;
+        }
+        
+        @Override
+        void ensureRuleCount(String ruleId) {
+        }
+        
+        @Override
+        void addTriggerCount(String ruleId, int delta) {
+        }
+        
+        @Override
+        void ensureRollup(int granularity, long bucketStart, String ruleId) {
+        }
+        
+        @Override
+        void addRollup(int granularity, long bucketStart, String ruleId, int triggers, int actions,
+                       int failures, int speaks, int notifies, int launches) {
+        }
+        
+        @Override
+        int deleteEventsBefore(long cutoffMillis) {
+            return 0;
+        }
+        
+        @Override
+        void clearRuleCounts() {
+        }
+        
+        @Override
+        void insertRuleCountsFromEvents() {
+        }
+    }
+}
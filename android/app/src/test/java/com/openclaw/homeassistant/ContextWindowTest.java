@@ -0,0 +1,169 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上下文窗口的装入与折叠：最新一条总会保留，摘要预留使合计不超过预算，预算不变时重复构建结果相同
+ */
+public class ContextWindowTest {
+    
+    @Test
+    public void newestMessageKeptEvenOverBudget() {
+        ContextWindow<Turn> window = new ContextWindow<>(100);
+        window.add(new Turn("user", "你好"));
+        window.add(new Turn("assistant", "你好，有什么可以帮你？"));
+        Turn newest = new Turn("user", repeat("超长的问题", 100));
+        window.add(newest);
+        
+        ContextWindow.Window<Turn> built = window.build(10, 50);
+        assertEquals(1, built.messages.size());
+        assertTrue(built.messages.get(0) == newest);
+        // 装不下的较早消息折叠进摘要
+        assertNotNull(built.summary);
+        assertTrue(built.summary.contains("用户：你好"));
+    }
+    
+    @Test
+    public void newestMessageKeptWhenMaxMessagesIsOne() {
+        ContextWindow<Turn> window = new ContextWindow<>(100);
+        for (int i = 0; i < 5; i++) {
+            window.add(new Turn("user", "消息" + i));
+        }
+        
+        ContextWindow.Window<Turn> built = window.build(1, 10_000);
+        assertEquals(1, built.messages.size());
+        assertEquals("消息4", built.messages.get(0).content);
+    }
+    
+    @Test
+    public void totalStaysWithinBudgetAsWindowSlides() {
+        ContextWindow<Turn> window = new ContextWindow<>(100);
+        int budget = 400;
+        for (int i = 0; i < 80; i++) {
+            window.add(new Turn(i % 2 == 0 ? "user" : "assistant",
+                "第" + i + "条消息。" + repeat("后面的内容不进摘要", 3)));
+            ContextWindow.Window<Turn> built = window.build(50, budget);
+            assertTrue("第 " + i + " 次构建超出预算：" + total(built), total(built) <= budget);
+            assertEquals("第" + i + "条消息。" + repeat("后面的内容不进摘要", 3),
+                built.messages.get(built.messages.size() - 1).content);
+        }
+        
+        ContextWindow.Window<Turn> built = window.build(50, budget);
+        assertNotNull(built.summary);
+        // 摘要本身也受 SUMMARY_TOKEN_BUDGET 限制，最早的行已被丢弃
+        assertTrue(summaryCost(built) <= TokenEstimator.MESSAGE_OVERHEAD + ContextWindow.SUMMARY_TOKEN_BUDGET);
+        assertTrue(!built.summary.contains("第0条消息"));
+        assertTrue(built.summary.contains("助手：第"));
+    }
+    
+    @Test
+    public void noSummaryWhenEverythingFits() {
+        ContextWindow<Turn> window = new ContextWindow<>(100);
+        window.add(new Turn("user", "开灯"));
+        window.add(new Turn("assistant", "已打开客厅的灯。"));
+        
+        ContextWindow.Window<Turn> built = window.build(10, 2000);
+        assertNull(built.summary);
+        assertEquals(2, built.messages.size());
+    }
+    
+    @Test
+    public void unchangedBudgetGivesSameWindow() {
+        ContextWindow<Turn> window = new ContextWindow<>(100);
+        for (int i = 0; i < 30; i++) {
+            window.add(new Turn("user", "第" + i + "个问题，" + repeat("内容", 10)));
+        }
+        
+        ContextWindow.Window<Turn> first = window.build(20, 300);
+        ContextWindow.Window<Turn> second = window.build(20, 300);
+        assertEquals(first.summary, second.summary);
+        assertEquals(first.messages, second.messages);
+        assertTrue(first.summary == second.summary);
+        
+        // 移出的消息不再回到窗口：放宽预算后消息与摘要都不变
+        ContextWindow.Window<Turn> wider = window.build(100, 100_000);
+        assertEquals(first.summary, wider.summary);
+        assertEquals(first.messages, wider.messages);
+    }
+    
+    @Test
+    public void pendingLimitFoldsOldestOnAdd() {
+        ContextWindow<Turn> window = new ContextWindow<>(3);
+        for (int i = 0; i < 5; i++) {
+            window.add(new Turn("user", "消息" + i));
+        }
+        
+        assertEquals(3, window.messages().size());
+        assertEquals("消息2", window.messages().get(0).content);
+        assertEquals("之前的对话摘要：\n用户：消息0\n用户：消息1", window.summary());
+    }
+    
+    @Test
+    public void restorePutsSavedMessagesFirst() {
+        ContextWindow<Turn> window = new ContextWindow<>(100);
+        window.add(new Turn("user", "新消息"));
+        List<Turn> saved = new ArrayList<>();
+        saved.add(new Turn("user", "旧问题"));
+        saved.add(new Turn("assistant", "旧回答"));
+        window.restore(saved);
+        
+        List<Turn> messages = window.messages();
+        assertEquals(3, messages.size());
+        assertEquals("旧问题", messages.get(0).content);
+        assertEquals("新消息", messages.get(2).content);
+    }
+    
+    // ============== 辅助 ==============
+    
+    /**
+     * 摘要与消息的估算 token 合计，与 ContextWindow 的计算方式一致
+     */
+    private static int total(ContextWindow.Window<Turn> built) {
+        int tokens = summaryCost(built);
+        for (Turn message : built.messages) {
+            tokens += TokenEstimator.estimateMessage(message.content);
+        }
+        return tokens;
+    }
+    
+    private static int summaryCost(ContextWindow.Window<Turn> built) {
+        if (built.summary == null) return 0;
+        return TokenEstimator.estimateMessage(built.summary);
+    }
+    
+    private static String repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+    
+    private static final class Turn implements ContextWindow.Turn {
+        final String role;
+        final String content;
+        
+        Turn(String role, String content) {
+            this.role = role;
+            this.content = content;
+        }
+        
+        @Override
+        public String role() {
+            return role;
+        }
+        
+        @Override
+        public String content() {
+            return content;
+        }
+    }
+}
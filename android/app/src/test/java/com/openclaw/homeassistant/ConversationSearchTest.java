@@ -0,0 +1,188 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 全文检索的分词、MATCH 表达式与 BM25 排序
+ */
+public class ConversationSearchTest {
+    
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    
+    // ============== 索引分词 ==============
+    
+    @Test
+    public void indexSingleCjkCharacter() {
+        assertEquals("灯", ConversationSearch.indexTokens("灯"));
+        // 单字段前后是标点或空白
+        assertEquals("灯 关", ConversationSearch.indexTokens("灯，关"));
+    }
+    
+    @Test
+    public void indexCjkRunWritesBigramsAndTrailingUnigram() {
+        assertEquals("开灯 灯", ConversationSearch.indexTokens("开灯"));
+        assertEquals("打开 开客 客厅 厅", ConversationSearch.indexTokens("打开客厅"));
+        // 扩展区汉字是代理对，按码点切分
+        assertEquals("𠀀𠀁 𠀁", ConversationSearch.indexTokens("𠀀𠀁"));
+    }
+    
+    @Test
+    public void indexMixedCjkAndLatinRuns() {
+        assertEquals("打开 开 tv 模式 式", ConversationSearch.indexTokens("打开TV模式"));
+        assertEquals("把 wifi 密码 码改 改成 成 abc123", ConversationSearch.indexTokens("把 WiFi 密码改成 abc123！"));
+    }
+    
+    @Test
+    public void indexEmptyInput() {
+        assertEquals("", ConversationSearch.indexTokens(null));
+        assertEquals("", ConversationSearch.indexTokens(" ，。!? "));
+    }
+    
+    // ============== 查询 ==============
+    
+    @Test
+    public void singleCjkCharacterIsPrefixQuery() {
+        // 索引中每个字都是某个词的开头（末字单独成词），前缀匹配能找到任意位置的字
+        assertEquals("灯*", ConversationSearch.matchQuery("灯"));
+        assertTrue(ConversationSearch.indexTokens("开灯").contains(" 灯"));
+    }
+    
+    @Test
+    public void cjkRunIsPhraseOfBigrams() {
+        assertEquals("\"开灯\"", ConversationSearch.matchQuery("开灯"));
+        assertEquals("\"打开 开客 客厅\"", ConversationSearch.matchQuery("打开客厅"));
+        // 短语中的 bigram 在索引中相邻出现
+        assertTrue(ConversationSearch.indexTokens("请打开客厅的灯").contains("打开 开客 客厅"));
+    }
+    
+    @Test
+    public void mixedRunsAreAndedTogether() {
+        assertEquals("\"打开\" tv* \"模式\"", ConversationSearch.matchQuery("打开TV模式"));
+        assertEquals("空* \"调温\" 26*", ConversationSearch.matchQuery("空 调温 26"));
+    }
+    
+    @Test
+    public void ftsOperatorsAndQuotesAreNeutralized() {
+        // 引号、括号、减号、星号、冒号不会进入表达式
+        assertEquals("\"电视\" wifi*", ConversationSearch.matchQuery("\"电视\" -(wifi*)"));
+        assertEquals("content* \"天气\"", ConversationSearch.matchQuery("content:天气"));
+        // 大写的运算符转成小写后只是普通的前缀词
+        assertEquals("a* or* b* not* c* near* d*", ConversationSearch.matchQuery("a OR b NOT c NEAR d"));
+        assertEquals("x* and* y*", ConversationSearch.matchQuery("x AND y"));
+        // 不配对的引号
+        assertEquals("\"空调\" 开*", ConversationSearch.matchQuery("空调\"开"));
+        assertEquals("开*", ConversationSearch.matchQuery("\"开"));
+    }
+    
+    @Test
+    public void noSearchableTermsGivesNull() {
+        assertNull(ConversationSearch.matchQuery(null));
+        assertNull(ConversationSearch.matchQuery(""));
+        assertNull(ConversationSearch.matchQuery("\"\" * - ( ) ？"));
+    }
+    
+    // ============== BM25 ==============
+    
+    @Test
+    public void bm25SinglePhraseSingleColumn() {
+        // 10 篇文档，平均 5 词；本行 5 词，命中 2 次；3 篇文档包含该词
+        byte[] matchinfo = matchinfo(1, 1, 10, new int[] { 5 }, new int[] { 5 },
+            new int[] { 2, 7, 3 });
+        assertEquals(expected(10, 3, 2, 5, 5), ConversationSearch.bm25(matchinfo), 1e-9);
+    }
+    
+    @Test
+    public void bm25SumsPhrasesAndColumnsAndSkipsMisses() {
+        // 2 个短语 x 2 列，第二个短语在第一列未命中
+        byte[] matchinfo = matchinfo(2, 2, 20, new int[] { 8, 4 }, new int[] { 6, 2 },
+            new int[] {
+                1, 5, 4,    // 短语 0，列 0
+                3, 9, 6,    // 短语 0，列 1
+                0, 2, 2,    // 短语 1，列 0
+                1, 1, 1,    // 短语 1，列 1
+            });
+        double score = expected(20, 4, 1, 6, 8) + expected(20, 6, 3, 2, 4) + expected(20, 1, 1, 2, 4);
+        assertEquals(score, ConversationSearch.bm25(matchinfo), 1e-9);
+    }
+    
+    @Test
+    public void bm25PrefersShorterRowsAndRarerTerms() {
+        double shortRow = ConversationSearch.bm25(matchinfo(1, 1, 10, new int[] { 5 }, new int[] { 2 },
+            new int[] { 1, 3, 3 }));
+        double longRow = ConversationSearch.bm25(matchinfo(1, 1, 10, new int[] { 5 }, new int[] { 20 },
+            new int[] { 1, 3, 3 }));
+        double commonTerm = ConversationSearch.bm25(matchinfo(1, 1, 10, new int[] { 5 }, new int[] { 2 },
+            new int[] { 1, 9, 9 }));
+        assertTrue(shortRow > longRow);
+        assertTrue(shortRow > commonTerm);
+        assertTrue(commonTerm > 0);
+    }
+    
+    @Test
+    public void bm25MalformedBlobScoresZero() {
+        assertEquals(0, ConversationSearch.bm25(null), 0);
+        assertEquals(0, ConversationSearch.bm25(new byte[8]), 0);
+        byte[] full = matchinfo(1, 1, 10, new int[] { 5 }, new int[] { 5 }, new int[] { 2, 7, 3 });
+        byte[] truncated = new byte[full.length - 4];
+        System.arraycopy(full, 0, truncated, 0, truncated.length);
+        assertEquals(0, ConversationSearch.bm25(truncated), 0);
+    }
+    
+    @Test
+    public void rankOrdersByScoreThenNewest() {
+        List<ConversationSearchHit> hits = new ArrayList<>();
+        hits.add(hit(1, 1));
+        hits.add(hit(2, 3));
+        hits.add(hit(3, 1));
+        hits.add(hit(4, 2));
+        
+        List<ConversationSearchHit> ranked = ConversationSearch.rank(hits, 3);
+        assertEquals(3, ranked.size());
+        assertEquals(2, ranked.get(0).messageId);
+        assertEquals(4, ranked.get(1).messageId);
+        // 同分时较新的在前
+        assertEquals(3, ranked.get(2).messageId);
+        assertNull(ranked.get(0).matchinfo);
+    }
+    
+    // ============== 辅助 ==============
+    
+    private static double expected(long documents, double df, double tf, double length, double avgLength) {
+        double idf = Math.log((documents - df + 0.5) / (df + 0.5) + 1);
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+    }
+    
+    /**
+     * 按 SQLite 的布局构造 matchinfo('pcnalx')：本机字节序的 uint32
+     */
+    private static byte[] matchinfo(int phrases, int columns, int documents, int[] avgLengths,
+                                    int[] lengths, int[] hits) {
+        ByteBuffer buffer = ByteBuffer.allocate((3 + columns * 2 + hits.length) * 4)
+            .order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases).putInt(columns).putInt(documents);
+        for (int avg : avgLengths) buffer.putInt(avg);
+        for (int length : lengths) buffer.putInt(length);
+        for (int value : hits) buffer.putInt(value);
+        return buffer.array();
+    }
+    
+    /**
+     * tf 次命中、本行 4 词的单短语命中
+     */
+    private static ConversationSearchHit hit(long messageId, int tf) {
+        ConversationSearchHit hit = new ConversationSearchHit();
+        hit.messageId = messageId;
+        hit.matchinfo = matchinfo(1, 1, 10, new int[] { 4 }, new int[] { 4 }, new int[] { tf, tf, 2 });
+        return hit;
+    }
+}
@@ -0,0 +1,59 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * 旧版 SharedPreferences 数据的解析：无法解析的数据丢弃而不是让迁移每次启动都失败
+ */
+public class ConversationStoreLegacyTest {
+    
+    @Test
+    public void malformedJsonIsDropped() {
+        assertNull(ConversationStore.parseLegacy(null, "上下文"));
+        assertNull(ConversationStore.parseLegacy("[{\"role\":\"user\",", "上下文"));
+        assertNull(ConversationStore.parseLegacy("{\"role\":\"user\"}", "上下文"));
+        assertNull(ConversationStore.parseLegacy("", "上下文"));
+    }
+    
+    @Test
+    public void validJsonIsParsed() {
+        JSONArray array = ConversationStore.parseLegacy("[{\"role\":\"user\",\"content\":\"开灯\"}]", "上下文");
+        assertNotNull(array);
+        assertEquals(1, array.length());
+    }
+    
+    @Test
+    public void malformedMessagesAreSkipped() {
+        JSONArray array = ConversationStore.parseLegacy("["
+            + "{\"role\":\"user\",\"content\":\"开灯\"},"
+            + "\"不是对象\","
+            + "{\"role\":\"assistant\"},"
+            + "{\"content\":\"没有角色\"},"
+            + "{\"role\":\"user\",\"content\":null},"
+            + "42,"
+            + "{\"role\":\"assistant\",\"content\":\"已打开\"}"
+            + "]", "上下文");
+        
+        List<ConversationManager.Message> messages = ConversationStore.parseMessages(array);
+        assertEquals(2, messages.size());
+        assertEquals("user", messages.get(0).role);
+        assertEquals("开灯", messages.get(0).content);
+        assertEquals("已打开", messages.get(1).content);
+        // 旧版没有消息时间，由导入时的会话时间填充
+        assertEquals(0, messages.get(1).timestamp);
+    }
+    
+    @Test
+    public void missingMessagesGiveEmptyList() {
+        assertTrue(ConversationStore.parseMessages(null).isEmpty());
+        assertTrue(ConversationStore.parseMessages(new JSONArray()).isEmpty());
+    }
+}
@@ -0,0 +1,181 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * DashScopeService.processQueryStreaming 对 SSE 事件流的处理（MockWebServer 模拟服务端）
+ */
+public class DashScopeStreamingTest {
+    
+    private static final String API_KEY = "test-key";
+    
+    private MockWebServer server;
+    private DashScopeService service;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        
+        // 只需要 getString 返回 API 密钥
+        SharedPreferences preferences = (SharedPreferences) Proxy.newProxyInstance(
+            SharedPreferences.class.getClassLoader(),
+            new Class<?>[] { SharedPreferences.class },
+            (proxy, method, args) -> "getString".equals(method.getName()) ? API_KEY : null);
+        ResponseCache cache = new ResponseCache(Files.createTempDirectory("dashscope-test").toFile());
+        
+        String baseUrl = server.url("/api/v1").toString();
+        service = new DashScopeService(baseUrl, new OkHttpClient(), preferences, cache);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+    
+    @Test
+    public void incrementalEventsAreSplitIntoSentences() throws Exception {
+        server.enqueue(sse(
+            "id:1\nevent:result\n:HTTP_STATUS/200\ndata:" + chunk("今天晴，气温21.", "null") + "\n\n",
+            "id:2\nevent:result\n:HTTP_STATUS/200\ndata:" + chunk("5度。明天", "null") + "\n\n",
+            "id:3\nevent:result\n:HTTP_STATUS/200\ndata:" + chunk("有雨", "null") + "\n\n",
+            "id:4\nevent:result\n:HTTP_STATUS/200\ndata:" + chunk("", "stop") + "\n\n"));
+        
+        RecordingCallback callback = stream();
+        
+        assertNull(callback.error);
+        assertEquals(Arrays.asList("今天晴，气温21.5度。", "明天有雨"), callback.sentences);
+        assertEquals(Arrays.asList("今天晴，气温21.", "今天晴，气温21.5度。明天", "今天晴，气温21.5度。明天有雨"),
+            callback.partials);
+        assertEquals("今天晴，气温21.5度。明天有雨", callback.response);
+        
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/api/v1/services/aigc/text-generation/generation", request.getPath());
+        assertEquals("Bearer " + API_KEY, request.getHeader("Authorization"));
+        assertEquals("enable", request.getHeader("X-DashScope-SSE"));
+        assertEquals("text/event-stream", request.getHeader("Accept"));
+        JSONObject body = new JSONObject(request.getBody().readUtf8());
+        assertTrue(body.getJSONObject("parameters").getBoolean("incremental_output"));
+    }
+    
+    @Test
+    public void errorEventIsReported() throws Exception {
+        server.enqueue(sse(
+            "id:1\nevent:result\ndata:" + chunk("好的", "null") + "\n\n",
+            "id:2\nevent:error\n:HTTP_STATUS/400\n"
+                + "data:{\"code\":\"InvalidParameter\",\"message\":\"Input data may contain inappropriate content.\"}\n\n"));
+        
+        RecordingCallback callback = stream();
+        
+        assertEquals("API 错误：Input data may contain inappropriate content.", callback.error);
+        assertNull(callback.response);
+    }
+    
+    @Test
+    public void streamEndingWithoutFinishReasonIsInterrupted() throws Exception {
+        server.enqueue(sse(
+            "id:1\nevent:result\ndata:" + chunk("今天晴。", "null") + "\n\n",
+            "id:2\nevent:result\ndata:" + chunk("明天", "null") + "\n\n"));
+        
+        RecordingCallback callback = stream();
+        
+        assertEquals("流式响应中断", callback.error);
+        assertEquals(Arrays.asList("今天晴。"), callback.sentences);
+        assertNull(callback.response);
+    }
+    
+    @Test
+    public void httpErrorIsReported() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(401).setBody("{\"code\":\"InvalidApiKey\"}"));
+        
+        RecordingCallback callback = stream();
+        
+        assertEquals("API 错误：401", callback.error);
+        assertNull(callback.response);
+    }
+    
+    // ============== 辅助 ==============
+    
+    private RecordingCallback stream() throws Exception {
+        JSONArray messages = new JSONArray();
+        messages.put(new JSONObject().put("role", "user").put("content", "天气怎么样"));
+        
+        RecordingCallback callback = new RecordingCallback();
+        service.processQueryStreaming(messages, callback);
+        assertTrue("流式回调超时", callback.done.await(5, TimeUnit.SECONDS));
+        return callback;
+    }
+    
+    private static MockResponse sse(String... events) {
+        StringBuilder body = new StringBuilder();
+        for (String event : events) {
+            body.append(event);
+        }
+        return new MockResponse()
+            .setHeader("Content-Type", "text/event-stream;charset=UTF-8")
+            .setBody(body.toString());
+    }
+    
+    /**
+     * result_format=message 的增量事件
+     */
+    private static String chunk(String content, String finishReason) throws Exception {
+        JSONObject message = new JSONObject().put("role", "assistant").put("content", content);
+        JSONObject choice = new JSONObject().put("message", message).put("finish_reason", finishReason);
+        JSONObject output = new JSONObject().put("choices", new JSONArray().put(choice));
+        return new JSONObject().put("output", output).toString();
+    }
+    
+    private static class RecordingCallback implements DashScopeService.StreamCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> partials = new ArrayList<>();
+        final List<String> sentences = new ArrayList<>();
+        volatile String response;
+        volatile String error;
+        
+        @Override
+        public void onPartial(String text) {
+            partials.add(text);
+        }
+        
+        @Override
+        public void onSentence(String sentence) {
+            sentences.add(sentence);
+        }
+        
+        @Override
+        public void onComplete(String response) {
+            this.response = response;
+            done.countDown();
+        }
+        
+        @Override
+        public void onError(String error) {
+            this.error = error;
+            done.countDown();
+        }
+    }
+}
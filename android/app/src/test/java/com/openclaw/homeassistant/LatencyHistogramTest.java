@@ -0,0 +1,168 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * 延迟直方图的分桶边界、百分位与 24 小时滚动窗口
+ */
+public class LatencyHistogramTest {
+    
+    private static final long PERIOD_MS = LatencyHistogram.PERIOD_MS;
+    // 某小时开始后 10 分钟
+    private static final long T0 = 480_000 * PERIOD_MS + 10 * 60 * 1000L;
+    
+    // ============== 分桶 ==============
+    
+    @Test
+    public void linearBucketsBelowEight() {
+        assertEquals(0, LatencyHistogram.bucketIndex(-5));
+        assertEquals(0, LatencyHistogram.bucketIndex(Long.MIN_VALUE));
+        assertEquals(0, LatencyHistogram.bucketIndex(0));
+        assertEquals(7, LatencyHistogram.bucketIndex(7));
+        assertEquals(7, LatencyHistogram.bucketUpperBound(7));
+    }
+    
+    @Test
+    public void bucketEdgesAtPowersOfTwo() {
+        assertEquals(8, LatencyHistogram.bucketIndex(8));
+        assertEquals(15, LatencyHistogram.bucketIndex(15));
+        assertEquals(8, LatencyHistogram.bucketUpperBound(8));
+        assertEquals(15, LatencyHistogram.bucketUpperBound(15));
+        // 16 起每个桶宽 2ms
+        assertEquals(16, LatencyHistogram.bucketIndex(16));
+        assertEquals(16, LatencyHistogram.bucketIndex(17));
+        assertEquals(17, LatencyHistogram.bucketIndex(18));
+        assertEquals(17, LatencyHistogram.bucketUpperBound(16));
+    }
+    
+    @Test
+    public void largestValuesMapToLastBucket() {
+        int last = LatencyHistogram.bucketIndex(Integer.MAX_VALUE);
+        assertEquals(231, last);
+        assertEquals(LatencyHistogram.BUCKETS - 1, last);
+        assertEquals(Integer.MAX_VALUE, LatencyHistogram.bucketUpperBound(last));
+        // 超出 int 范围的值归入最后一个桶
+        assertEquals(last, LatencyHistogram.bucketIndex(Integer.MAX_VALUE + 1L));
+        assertEquals(last, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+    
+    @Test
+    public void everyValueFallsInsideItsBucket() {
+        for (long v = 0; v <= Integer.MAX_VALUE; v = v < 4096 ? v + 1 : v + v / 7 + 1) {
+            int index = LatencyHistogram.bucketIndex(v);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue("v=" + v, upper >= v);
+            if (index > 0) {
+                assertTrue("v=" + v, LatencyHistogram.bucketUpperBound(index - 1) < v);
+            }
+            // 相对误差不超过 1/8
+            assertTrue("v=" + v, upper - v <= v / 8);
+        }
+    }
+    
+    // ============== 百分位 ==============
+    
+    @Test
+    public void percentileOfSingleSample() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100, false, T0);
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(T0);
+        long bound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(100));
+        assertEquals(103, bound);
+        assertEquals(bound, snapshot.percentile(0));
+        assertEquals(bound, snapshot.percentile(0.5));
+        assertEquals(bound, snapshot.percentile(0.99));
+        assertEquals(bound, snapshot.percentile(1));
+        assertEquals(1, snapshot.total);
+    }
+    
+    @Test
+    public void percentileWithoutSamples() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordFailure(T0);
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(T0);
+        assertEquals(-1, snapshot.percentile(0.5));
+        assertEquals(0, snapshot.total);
+        assertEquals(1, snapshot.failures);
+    }
+    
+    @Test
+    public void percentileRanks() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 7; i++) {
+            histogram.record(i, i == 7, T0);
+        }
+        histogram.record(1000, true, T0);
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(T0);
+        assertEquals(4, snapshot.percentile(0.5));
+        assertEquals(7, snapshot.percentile(0.875));
+        assertEquals(LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(1000)), snapshot.percentile(0.99));
+        assertEquals(2, snapshot.failures);
+    }
+    
+    // ============== 滚动窗口 ==============
+    
+    @Test
+    public void periodDropsOutAfter24Hours() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5, true, T0);
+        histogram.record(50, false, T0 + PERIOD_MS);
+        
+        // 第 24 小时内仍在窗口中
+        LatencyHistogram.Snapshot inside = histogram.snapshot(T0 + (LatencyHistogram.PERIODS - 1) * PERIOD_MS);
+        assertEquals(2, inside.total);
+        assertEquals(1, inside.failures);
+        
+        // 满 24 小时后最早的一段移出，之后一段仍在
+        LatencyHistogram.Snapshot after = histogram.snapshot(T0 + LatencyHistogram.PERIODS * PERIOD_MS);
+        assertEquals(1, after.total);
+        assertEquals(0, after.failures);
+        assertEquals(LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(50)), after.percentile(0.5));
+        
+        assertEquals(0, histogram.snapshot(T0 + (LatencyHistogram.PERIODS + 1) * PERIOD_MS).total);
+    }
+    
+    @Test
+    public void slotReuseReplacesOldPeriod() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5, false, T0);
+        // 24 小时后落在同一槽位
+        long later = T0 + LatencyHistogram.PERIODS * PERIOD_MS;
+        histogram.record(6, false, later);
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(later);
+        assertEquals(1, snapshot.total);
+        assertEquals(6, snapshot.percentile(0.5));
+    }
+    
+    @Test
+    public void futurePeriodExcludedAfterClockMovesBack() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5, false, T0 + 2 * PERIOD_MS);
+        histogram.record(3, false, T0);
+        
+        assertEquals(1, histogram.snapshot(T0).total);
+        assertEquals(3, histogram.snapshot(T0).percentile(1));
+        assertEquals(2, histogram.snapshot(T0 + 2 * PERIOD_MS).total);
+    }
+    
+    @Test
+    public void snapshotsMerge() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(2, false, T0);
+        b.record(200, true, T0);
+        
+        LatencyHistogram.Snapshot merged = a.snapshot(T0);
+        merged.merge(b.snapshot(T0));
+        assertEquals(2, merged.total);
+        assertEquals(1, merged.failures);
+        assertEquals(2, merged.percentile(0.5));
+    }
+}
@@ -0,0 +1,261 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 环形日志的覆盖、扩容与重新打开
+ * open 按路径缓存实例，重新打开通过复制到新路径模拟进程重启。
+ */
+public class LogRingBufferTest {
+    
+    private File dir;
+    
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("log-ring-test").toFile();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+    
+    // ============== 覆盖 ==============
+    
+    @Test
+    public void wrapOverwritesOldestRecords() throws Exception {
+        LogRingBuffer ring = open("wrap.ring", 4);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, append(ring, i));
+        }
+        
+        assertEquals(10, ring.getNextSequence());
+        assertEquals(4, ring.size());
+        assertEquals(Arrays.asList("d9", "d8", "d7", "d6"), newestFirst(ring, 0));
+        assertEquals(Arrays.asList("d7", "d6"), newestFirst(ring, 2));
+        assertEquals(Arrays.asList("d6", "d7", "d8", "d9"), from(ring, 0));
+        assertEquals(Arrays.asList("d8", "d9"), from(ring, 8));
+    }
+    
+    @Test
+    public void countSkipsOverwrittenRecords() throws Exception {
+        LogRingBuffer ring = open("count.ring", 4);
+        for (int i = 0; i < 6; i++) {
+            ring.append(i, i % 2 == 0 ? LogRingBuffer.KIND_TRIGGER : LogRingBuffer.KIND_ACTION,
+                i < 3 ? "old_rule" : "new_rule", null, "time", "d" + i);
+        }
+        
+        // 保留 2..5：old_rule 只剩序号 2
+        assertEquals(1, ring.count((byte) 0, "old_rule"));
+        assertEquals(3, ring.count((byte) 0, "new_rule"));
+        assertEquals(1, ring.count(LogRingBuffer.KIND_TRIGGER, "new_rule"));
+        assertEquals(0, ring.count((byte) 0, "new"));
+    }
+    
+    @Test
+    public void clearKeepsSequenceMonotonic() throws Exception {
+        LogRingBuffer ring = open("clear.ring", 4);
+        for (int i = 0; i < 6; i++) {
+            append(ring, i);
+        }
+        
+        assertEquals(6, ring.clear());
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.forEachFrom(0, (buffer, slot, sequence) -> true));
+        assertEquals(6, append(ring, 6));
+        assertEquals(Arrays.asList("d6"), newestFirst(ring, 0));
+    }
+    
+    @Test
+    public void fieldsTruncatedAtCharacterBoundary() throws Exception {
+        LogRingBuffer ring = open("fields.ring", 4);
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            longName.append('灯');
+        }
+        ring.append(1, LogRingBuffer.KIND_TRIGGER, "rule", longName.toString(), null, "😀ok");
+        
+        int slot = 0;
+        // 规则名上限 64 字节：每字 3 字节，截断为 21 个完整字符
+        assertEquals(longName.substring(0, 21), ring.field(slot, LogRingBuffer.FIELD_RULE_NAME));
+        assertNull(ring.field(slot, LogRingBuffer.FIELD_TYPE));
+        assertEquals("😀ok", ring.field(slot, LogRingBuffer.FIELD_DETAILS));
+        assertEquals("rule", ring.field(slot, LogRingBuffer.FIELD_RULE_ID));
+    }
+    
+    // ============== 扩容与缩容 ==============
+    
+    @Test
+    public void growKeepsRecordsAndSequences() throws Exception {
+        LogRingBuffer ring = open("grow.ring", 4);
+        for (int i = 0; i < 6; i++) {
+            append(ring, i);
+        }
+        
+        // 同一路径以更大容量打开：原地扩容，返回同一实例
+        assertTrue(ring == open("grow.ring", 8));
+        assertEquals(8, ring.getCapacity());
+        assertEquals(4, ring.size());
+        assertEquals(6, ring.getNextSequence());
+        assertEquals(Arrays.asList("d2", "d3", "d4", "d5"), from(ring, 0));
+        
+        // 扩容后可以保留更多记录
+        for (int i = 6; i < 10; i++) {
+            append(ring, i);
+        }
+        assertEquals(8, ring.size());
+        assertEquals(Arrays.asList("d2", "d3", "d4", "d5", "d6", "d7", "d8", "d9"), from(ring, 0));
+        assertFalse(new File(dir, "grow.ring.tmp").exists());
+    }
+    
+    @Test
+    public void shrinkKeepsNewestRecords() throws Exception {
+        LogRingBuffer ring = open("shrink.ring", 8);
+        for (int i = 0; i < 7; i++) {
+            append(ring, i);
+        }
+        
+        open("shrink.ring", 3);
+        assertEquals(3, ring.size());
+        assertEquals(Arrays.asList("d6", "d5", "d4"), newestFirst(ring, 0));
+        assertEquals(7, append(ring, 7));
+        assertEquals(Arrays.asList("d5", "d6", "d7"), from(ring, 0));
+    }
+    
+    @Test
+    public void growAfterClearDoesNotResurrectRecords() throws Exception {
+        LogRingBuffer ring = open("grow-clear.ring", 4);
+        for (int i = 0; i < 3; i++) {
+            append(ring, i);
+        }
+        ring.clear();
+        
+        open("grow-clear.ring", 16);
+        assertEquals(0, ring.size());
+        assertEquals(3, append(ring, 3));
+        assertEquals(Arrays.asList("d3"), from(ring, 0));
+    }
+    
+    // ============== 重新打开 ==============
+    
+    @Test
+    public void reopenRestoresRecordsAndSequence() throws Exception {
+        LogRingBuffer ring = open("reopen.ring", 4);
+        for (int i = 0; i < 6; i++) {
+            append(ring, i);
+        }
+        ring.force();
+        
+        // 容量传 0 沿用文件中的容量
+        LogRingBuffer reopened = reopen("reopen.ring", "reopen-copy.ring", 0);
+        assertEquals(4, reopened.getCapacity());
+        assertEquals(6, reopened.getNextSequence());
+        assertEquals(Arrays.asList("d5", "d4", "d3", "d2"), newestFirst(reopened, 0));
+        assertEquals(6, append(reopened, 6));
+        assertEquals(Arrays.asList("d3", "d4", "d5", "d6"), from(reopened, 0));
+    }
+    
+    @Test
+    public void reopenAfterClearKeepsRecordsHidden() throws Exception {
+        LogRingBuffer ring = open("reopen-clear.ring", 4);
+        for (int i = 0; i < 3; i++) {
+            append(ring, i);
+        }
+        ring.clear();
+        append(ring, 3);
+        ring.force();
+        
+        LogRingBuffer reopened = reopen("reopen-clear.ring", "reopen-clear-copy.ring", 0);
+        assertEquals(1, reopened.size());
+        assertEquals(Arrays.asList("d3"), from(reopened, 0));
+    }
+    
+    @Test
+    public void reopenWithLargerCapacityGrows() throws Exception {
+        LogRingBuffer ring = open("reopen-grow.ring", 4);
+        for (int i = 0; i < 6; i++) {
+            append(ring, i);
+        }
+        ring.force();
+        
+        LogRingBuffer reopened = reopen("reopen-grow.ring", "reopen-grow-copy.ring", 8);
+        assertEquals(8, reopened.getCapacity());
+        assertEquals(Arrays.asList("d2", "d3", "d4", "d5"), from(reopened, 0));
+        assertEquals(6, append(reopened, 6));
+        assertEquals(5, reopened.size());
+    }
+    
+    @Test
+    public void corruptFileIsRecreated() throws Exception {
+        File file = new File(dir, "corrupt.ring");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(256);
+            raf.writeInt(0x12345678);
+        }
+        
+        LogRingBuffer ring = LogRingBuffer.open(file, 0, 4);
+        assertEquals(4, ring.getCapacity());
+        assertEquals(0, ring.getNextSequence());
+        assertEquals(0, ring.size());
+        assertEquals(0, append(ring, 0));
+    }
+    
+    // ============== 辅助 ==============
+    
+    private LogRingBuffer open(String name, int capacity) throws Exception {
+        return LogRingBuffer.open(new File(dir, name), capacity, capacity);
+    }
+    
+    /**
+     * 复制到新路径后打开，绕过按路径缓存的实例，相当于进程重启后读取同一文件
+     */
+    private LogRingBuffer reopen(String name, String copyName, int capacity) throws Exception {
+        File copy = new File(dir, copyName);
+        Files.copy(new File(dir, name).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return LogRingBuffer.open(copy, capacity, 1);
+    }
+    
+    private static long append(LogRingBuffer ring, int i) {
+        return ring.append(1000 + i, LogRingBuffer.KIND_TRIGGER, "rule", "规则", "time", "d" + i);
+    }
+    
+    private static List<String> newestFirst(LogRingBuffer ring, int skip) {
+        final List<String> details = new ArrayList<>();
+        ring.forEachNewestFirst(skip, (buffer, slot, sequence) -> {
+            details.add(buffer.field(slot, LogRingBuffer.FIELD_DETAILS));
+            assertEquals(1000 + sequence, buffer.timestamp(slot));
+            return true;
+        });
+        return details;
+    }
+    
+    private static List<String> from(LogRingBuffer ring, long fromSequence) {
+        final List<String> details = new ArrayList<>();
+        ring.forEachFrom(fromSequence, (buffer, slot, sequence) -> {
+            details.add(buffer.field(slot, LogRingBuffer.FIELD_DETAILS));
+            return true;
+        });
+        return details;
+    }
+}
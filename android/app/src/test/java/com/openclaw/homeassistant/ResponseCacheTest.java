@@ -0,0 +1,202 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 回复缓存：查询规范化、逐条过期、内存 LRU 淘汰、磁盘持久化与按修改时间裁剪
+ */
+public class ResponseCacheTest {
+    
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final String FINGERPRINT = "qwen-max\n系统提示\n{}";
+    
+    private File dir;
+    private ResponseCache cache;
+    
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("response-cache-test").toFile();
+        cache = new ResponseCache(dir);
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+    
+    // ============== 规范化与键 ==============
+    
+    @Test
+    public void normalizeFoldsWidthCaseWhitespaceAndEdgePunctuation() {
+        assertEquals("电量多少", ResponseCache.normalize("电量多少？"));
+        assertEquals("hello world", ResponseCache.normalize("  ＨＥＬＬＯ \t\n World!! "));
+        assertEquals("a1", ResponseCache.normalize("《Ａ１》"));
+        // 中间的标点保留
+        assertEquals("打开灯, 然后关门", ResponseCache.normalize("打开灯,   然后关门。"));
+        assertEquals("", ResponseCache.normalize("？！..."));
+        assertEquals("", ResponseCache.normalize(null));
+    }
+    
+    @Test
+    public void keyDependsOnNormalizedQueryAndFingerprint() {
+        String key = ResponseCache.key("电量多少？", FINGERPRINT);
+        assertNotNull(key);
+        assertEquals(64, key.length());
+        assertEquals(key, ResponseCache.key("  电量多少 ", FINGERPRINT));
+        assertFalse(key.equals(ResponseCache.key("电量多少", FINGERPRINT + "x")));
+        assertFalse(key.equals(ResponseCache.key("电量", FINGERPRINT)));
+        // 规范化后为空时不缓存
+        assertNull(ResponseCache.key("？？", FINGERPRINT));
+    }
+    
+    @Test
+    public void timeSensitiveQueriesGetShortTtl() {
+        assertEquals(ResponseCache.SHORT_TTL_MS, ResponseCache.ttlFor("明天天气怎么样"));
+        assertEquals(ResponseCache.SHORT_TTL_MS, ResponseCache.ttlFor("What TIME is it?"));
+        assertEquals(ResponseCache.DEFAULT_TTL_MS, ResponseCache.ttlFor("讲个笑话"));
+    }
+    
+    // ============== 过期 ==============
+    
+    @Test
+    public void entriesExpireIndependently() {
+        cache.put("short", "旧回复", 0);
+        cache.put("long", "新回复", HOUR_MS);
+        
+        assertNull(cache.get("short"));
+        assertEquals("新回复", cache.get("long"));
+        assertEquals(1, stat("expired"));
+        // 过期的条目同时从磁盘删除
+        assertFalse(new File(dir, "short.entry").exists());
+        assertTrue(new File(dir, "long.entry").exists());
+    }
+    
+    @Test
+    public void expiredDiskEntryIsDeletedOnRead() {
+        cache.put("key", "回复", 0);
+        
+        ResponseCache reopened = new ResponseCache(dir);
+        assertNull(reopened.get("key"));
+        assertFalse(new File(dir, "key.entry").exists());
+    }
+    
+    // ============== 内存 LRU ==============
+    
+    @Test
+    public void memoryEvictsLeastRecentlyUsed() {
+        for (int i = 0; i < ResponseCache.MEMORY_CAPACITY; i++) {
+            cache.put("k" + i, "v" + i, HOUR_MS);
+        }
+        // 访问 k0 后它成为最近使用，再写入一条时淘汰 k1
+        assertEquals("v0", cache.get("k0"));
+        cache.put("extra", "v", HOUR_MS);
+        assertEquals(1, stat("evictions"));
+        
+        assertEquals("v0", cache.get("k0"));
+        assertEquals(0, stat("diskHits"));
+        // 被淘汰的条目仍可从磁盘读回
+        assertEquals("v1", cache.get("k1"));
+        assertEquals(1, stat("diskHits"));
+    }
+    
+    // ============== 磁盘 ==============
+    
+    @Test
+    public void newInstanceReadsFromDisk() {
+        cache.put("key", "持久化的回复", HOUR_MS);
+        
+        ResponseCache reopened = new ResponseCache(dir);
+        assertEquals("持久化的回复", reopened.get("key"));
+        assertEquals(1, stat(reopened, "diskHits"));
+        // 读回后放入内存
+        assertEquals("持久化的回复", reopened.get("key"));
+        assertEquals(1, stat(reopened, "hits"));
+    }
+    
+    @Test
+    public void corruptDiskEntryIsDropped() throws Exception {
+        Files.write(new File(dir, "bad.entry").toPath(), new byte[] { 1, 2, 3 });
+        
+        assertNull(cache.get("bad"));
+        assertFalse(new File(dir, "bad.entry").exists());
+    }
+    
+    @Test
+    public void trimDiskDeletesOldestFirst() throws Exception {
+        fillDisk();
+        long base = System.currentTimeMillis() - HOUR_MS;
+        File[] files = entryFiles();
+        for (File file : files) {
+            assertTrue(file.setLastModified(base));
+        }
+        File oldest = files[7];
+        assertTrue(oldest.setLastModified(base - HOUR_MS));
+        
+        cache.put("newest", "v", HOUR_MS);
+        
+        assertEquals(ResponseCache.DISK_CAPACITY, entryFiles().length);
+        assertFalse(oldest.exists());
+        assertTrue(new File(dir, "newest.entry").exists());
+    }
+    
+    @Test
+    public void trimDiskBreaksMtimeTies() throws Exception {
+        fillDisk();
+        // 所有旧条目修改时间相同：只删除超出的一条，新写入的保留
+        long base = System.currentTimeMillis() - HOUR_MS;
+        for (File file : entryFiles()) {
+            assertTrue(file.setLastModified(base));
+        }
+        
+        cache.put("newest", "v", HOUR_MS);
+        assertEquals(ResponseCache.DISK_CAPACITY, entryFiles().length);
+        assertTrue(new File(dir, "newest.entry").exists());
+        
+        cache.put("newer", "v", HOUR_MS);
+        assertEquals(ResponseCache.DISK_CAPACITY, entryFiles().length);
+        assertTrue(new File(dir, "newer.entry").exists());
+        assertTrue(new File(dir, "newest.entry").exists());
+    }
+    
+    // ============== 辅助 ==============
+    
+    private void fillDisk() {
+        for (int i = 0; i < ResponseCache.DISK_CAPACITY; i++) {
+            cache.put("d" + i, "v" + i, HOUR_MS);
+        }
+        assertEquals(ResponseCache.DISK_CAPACITY, entryFiles().length);
+    }
+    
+    private File[] entryFiles() {
+        return dir.listFiles((d, name) -> name.endsWith(".entry"));
+    }
+    
+    private long stat(String name) {
+        return stat(cache, name);
+    }
+    
+    private static long stat(ResponseCache cache, String name) {
+        Matcher matcher = Pattern.compile("(?:^|, )" + name + "=(\\d+)").matcher(cache.getStatsSummary());
+        assertTrue(name, matcher.find());
+        return Long.parseLong(matcher.group(1));
+    }
+}
@@ -0,0 +1,281 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * 条件树编译为后缀指令后的求值结果
+ * 指令序列不跳转（所有叶子都求值），叶子无副作用，因此与按 && / || 短路求值的结果必须一致；
+ * 随机条件树与递归的短路求值器逐状态比对。
+ */
+public class RuleConditionTest {
+    
+    private static final int MONDAY = 1;
+    private static final int SATURDAY = 6;
+    
+    // ============== 优先级与结构 ==============
+    
+    @Test
+    public void nestedOperatorsFollowTreeStructure() throws Exception {
+        // not(and(charging, or(battery 0~20, days[周六])))
+        RuleCondition condition = RuleCondition.compile(not(and(charging(true), or(battery(0, 20), days(SATURDAY)))));
+        
+        assertTrue(condition.evaluate(state(MONDAY, 12 * 60, 50, true)));
+        assertFalse(condition.evaluate(state(MONDAY, 12 * 60, 10, true)));
+        assertFalse(condition.evaluate(state(SATURDAY, 12 * 60, 80, true)));
+        assertTrue(condition.evaluate(state(SATURDAY, 12 * 60, 10, false)));
+    }
+    
+    @Test
+    public void andOfOrsDiffersFromOrOfAnds() throws Exception {
+        // (a || b) && c  与  a || (b && c)  在 a 真、c 假时结果不同
+        JSONObject a = charging(true);
+        JSONObject b = battery(0, 20);
+        JSONObject c = days(SATURDAY);
+        RuleCondition andOfOr = RuleCondition.compile(and(or(a, b), c));
+        RuleCondition orOfAnd = RuleCondition.compile(or(a, and(b, c)));
+        
+        DeviceState state = state(MONDAY, 8 * 60, 50, true);
+        assertFalse(andOfOr.evaluate(state));
+        assertTrue(orOfAnd.evaluate(state));
+    }
+    
+    @Test
+    public void doubleNegationAndEmptyGroups() throws Exception {
+        DeviceState state = state(MONDAY, 0, 50, false);
+        
+        assertFalse(RuleCondition.compile(not(not(charging(true)))).evaluate(state));
+        // 空 and 为真，空 or 为假
+        assertTrue(RuleCondition.compile(and()).evaluate(state));
+        assertFalse(RuleCondition.compile(or()).evaluate(state));
+        assertFalse(RuleCondition.compile(not(and())).evaluate(state));
+        assertTrue(RuleCondition.compile(not(or())).evaluate(state));
+    }
+    
+    @Test
+    public void siblingsAfterNestedGroupKeepTheirOwnValues() throws Exception {
+        // and(or(假, 假), 真) 为假；or(and(真, 真), 假) 为真：子组结果不能污染后续兄弟节点
+        DeviceState state = state(MONDAY, 0, 50, true);
+        
+        assertFalse(RuleCondition.compile(and(or(charging(false), days(SATURDAY)), charging(true))).evaluate(state));
+        assertTrue(RuleCondition.compile(or(and(charging(true), days(MONDAY)), charging(false))).evaluate(state));
+    }
+    
+    // ============== 叶子 ==============
+    
+    @Test
+    public void timeWindowBoundaries() throws Exception {
+        RuleCondition day = RuleCondition.compile(timeWindow("08:00", "18:00"));
+        assertTrue(day.evaluate(state(MONDAY, 8 * 60, 50, false)));
+        assertFalse(day.evaluate(state(MONDAY, 18 * 60, 50, false)));
+        
+        // 跨零点
+        RuleCondition night = RuleCondition.compile(timeWindow("22:00", "06:00"));
+        assertTrue(night.evaluate(state(MONDAY, 23 * 60, 50, false)));
+        assertTrue(night.evaluate(state(MONDAY, 5 * 60 + 59, 50, false)));
+        assertFalse(night.evaluate(state(MONDAY, 6 * 60, 50, false)));
+        
+        // from == to 表示全天
+        RuleCondition allDay = RuleCondition.compile(timeWindow("07:00", "07:00"));
+        assertTrue(allDay.evaluate(state(MONDAY, 3 * 60, 50, false)));
+    }
+    
+    @Test
+    public void unknownBatteryIsOutsideAnyRange() throws Exception {
+        DeviceState unknown = state(MONDAY, 0, -1, false);
+        
+        assertFalse(RuleCondition.compile(battery(0, 100)).evaluate(unknown));
+        assertTrue(RuleCondition.compile(not(battery(0, 100))).evaluate(unknown));
+        assertTrue(RuleCondition.compile(battery(20, 20)).evaluate(state(MONDAY, 0, 20, false)));
+    }
+    
+    // ============== 与短路求值比对 ==============
+    
+    @Test
+    public void matchesShortCircuitReferenceOnRandomTrees() throws Exception {
+        Random random = new Random(7);
+        int[] batteryLevels = { -1, 0, 15, 20, 50, 80, 100 };
+        for (int tree = 0; tree < 300; tree++) {
+            JSONObject json = randomNode(random, 4);
+            RuleCondition condition = RuleCondition.compile(json);
+            for (int minute = 0; minute < TriggerIndex.MINUTES_PER_WEEK; minute += 97) {
+                for (int level : batteryLevels) {
+                    for (int charging = 0; charging < 2; charging++) {
+                        DeviceState state = new DeviceState();
+                        state.minuteOfWeek = minute;
+                        state.batteryLevel = level;
+                        state.charging = charging == 1;
+                        assertEquals(json + " @ " + minute + "/" + level + "/" + state.charging,
+                            reference(json, state), condition.evaluate(state));
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void widestGroupMatchesReference() throws Exception {
+        // 单个 and / or 最多 63 个子条件（栈深 64）
+        JSONObject[] children = new JSONObject[RuleCondition.MAX_STACK_DEPTH - 1];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = i == children.length - 1 ? charging(false) : charging(true);
+        }
+        DeviceState state = state(MONDAY, 0, 50, true);
+        
+        assertFalse(RuleCondition.compile(and(children)).evaluate(state));
+        assertTrue(RuleCondition.compile(or(children)).evaluate(state));
+    }
+    
+    // ============== 编译错误 ==============
+    
+    @Test(expected = JSONException.class)
+    public void rejectsTooManyChildren() throws Exception {
+        JSONObject[] children = new JSONObject[RuleCondition.MAX_STACK_DEPTH];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = charging(true);
+        }
+        RuleCondition.compile(and(children));
+    }
+    
+    @Test(expected = JSONException.class)
+    public void rejectsUnknownType() throws Exception {
+        RuleCondition.compile(new JSONObject().put("type", "xor"));
+    }
+    
+    @Test(expected = JSONException.class)
+    public void rejectsInvertedBatteryRange() throws Exception {
+        RuleCondition.compile(battery(50, 20));
+    }
+    
+    // ============== 辅助 ==============
+    
+    /**
+     * 递归短路求值（测试用的参照实现）
+     */
+    private static boolean reference(JSONObject node, DeviceState state) throws JSONException {
+        switch (node.getString("type")) {
+            case "and": {
+                JSONArray children = node.getJSONArray("conditions");
+                for (int i = 0; i < children.length(); i++) {
+                    if (!reference(children.getJSONObject(i), state)) return false;
+                }
+                return true;
+            }
+            case "or": {
+                JSONArray children = node.getJSONArray("conditions");
+                for (int i = 0; i < children.length(); i++) {
+                    if (reference(children.getJSONObject(i), state)) return true;
+                }
+                return false;
+            }
+            case "not":
+                return !reference(node.getJSONObject("condition"), state);
+            case "time_window": {
+                int from = AutomationRule.Trigger.parseMinuteOfDay(node.getString("from"));
+                int to = AutomationRule.Trigger.parseMinuteOfDay(node.getString("to"));
+                int minute = state.minuteOfDay();
+                if (from == to) return true;
+                return from < to ? minute >= from && minute < to : minute >= from || minute < to;
+            }
+            case "battery_range":
+                return state.batteryLevel >= 0
+                    && state.batteryLevel >= node.getInt("min") && state.batteryLevel <= node.getInt("max");
+            case "charging":
+                return state.charging == node.getBoolean("charging");
+            case "days": {
+                JSONArray days = node.getJSONArray("days");
+                for (int i = 0; i < days.length(); i++) {
+                    if (days.getInt(i) == state.dayOfWeek()) return true;
+                }
+                return false;
+            }
+            default:
+                throw new JSONException("未知条件类型");
+        }
+    }
+    
+    private static JSONObject randomNode(Random random, int depth) throws JSONException {
+        int kind = depth == 0 ? 3 + random.nextInt(4) : random.nextInt(7);
+        switch (kind) {
+            case 0:
+            case 1: {
+                JSONObject[] children = new JSONObject[random.nextInt(4)];
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = randomNode(random, depth - 1);
+                }
+                return kind == 0 ? and(children) : or(children);
+            }
+            case 2:
+                return not(randomNode(random, depth - 1));
+            case 3: {
+                int from = random.nextInt(24);
+                int to = random.nextInt(24);
+                return timeWindow(String.format("%02d:00", from), String.format("%02d:30", to));
+            }
+            case 4: {
+                int min = random.nextInt(101);
+                return battery(min, min + random.nextInt(101 - min));
+            }
+            case 5:
+                return charging(random.nextBoolean());
+            default:
+                return days(random.nextInt(7), random.nextInt(7));
+        }
+    }
+    
+    private static DeviceState state(int dayOfWeek, int minuteOfDay, int batteryLevel, boolean charging) {
+        DeviceState state = new DeviceState();
+        state.minuteOfWeek = dayOfWeek * TriggerIndex.MINUTES_PER_DAY + minuteOfDay;
+        state.batteryLevel = batteryLevel;
+        state.charging = charging;
+        return state;
+    }
+    
+    private static JSONObject and(JSONObject... children) throws JSONException {
+        return group("and", children);
+    }
+    
+    private static JSONObject or(JSONObject... children) throws JSONException {
+        return group("or", children);
+    }
+    
+    private static JSONObject group(String type, JSONObject... children) throws JSONException {
+        JSONArray conditions = new JSONArray();
+        for (JSONObject child : children) {
+            conditions.put(child);
+        }
+        return new JSONObject().put("type", type).put("conditions", conditions);
+    }
+    
+    private static JSONObject not(JSONObject child) throws JSONException {
+        return new JSONObject().put("type", "not").put("condition", child);
+    }
+    
+    private static JSONObject timeWindow(String from, String to) throws JSONException {
+        return new JSONObject().put("type", "time_window").put("from", from).put("to", to);
+    }
+    
+    private static JSONObject battery(int min, int max) throws JSONException {
+        return new JSONObject().put("type", "battery_range").put("min", min).put("max", max);
+    }
+    
+    private static JSONObject charging(boolean charging) throws JSONException {
+        return new JSONObject().put("type", "charging").put("charging", charging);
+    }
+    
+    private static JSONObject days(int... days) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (int day : days) {
+            array.put(day);
+        }
+        return new JSONObject().put("type", "days").put("days", array);
+    }
+}
@@ -0,0 +1,119 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SentenceSplitterTest {
+    
+    @Test
+    public void splitsOnSentencePunctuation() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        assertEquals(Arrays.asList("好的。", "已经打开客厅的灯！", "还需要什么？"),
+            splitter.append("好的。已经打开客厅的灯！还需要什么？"));
+        assertNull(splitter.flush());
+    }
+    
+    @Test
+    public void joinsSentenceAcrossDeltas() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        assertTrue(splitter.append("明天").isEmpty());
+        assertTrue(splitter.append("有雨").isEmpty());
+        assertEquals(Arrays.asList("明天有雨。"), splitter.append("。记得"));
+        assertEquals("记得", splitter.flush());
+    }
+    
+    @Test
+    public void keepsDecimalWhole() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        assertTrue(splitter.append("It is 21.5 degrees, version v2.0 works").isEmpty());
+        assertEquals(Arrays.asList("It is 21.5 degrees, version v2.0 works."), splitter.append(". Next"));
+        assertEquals("Next", splitter.flush());
+    }
+    
+    @Test
+    public void waitsForCharacterAfterTrailingPeriod() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        // 增量在小数点处断开时，不能提前成句
+        assertTrue(splitter.append("Temperature is 21.").isEmpty());
+        assertTrue(splitter.append("5").isEmpty());
+        assertEquals(Arrays.asList("Temperature is 21.5 now."), splitter.append(" now. "));
+        assertNull(splitter.flush());
+    }
+    
+    @Test
+    public void keepsAbbreviationsWhole() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        List<String> sentences = new ArrayList<>();
+        sentences.addAll(splitter.append("Mr. Smith met Dr. Lee, e.g. at noon. "));
+        sentences.addAll(splitter.append("J. K. Rowling left. "));
+        
+        assertEquals(Arrays.asList(
+            "Mr. Smith met Dr. Lee, e.g. at noon.",
+            "J. K. Rowling left."), sentences);
+    }
+    
+    @Test
+    public void periodAfterChineseEndsSentence() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        assertEquals(Arrays.asList("好."), splitter.append("好. 然后"));
+        assertEquals("然后", splitter.flush());
+    }
+    
+    @Test
+    public void forcesSplitAtCommaInLongClause() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        String clause = repeat("很", 30) + "，";
+        String tail = repeat("长", 15);
+        
+        List<String> sentences = splitter.append(clause + tail);
+        
+        assertEquals(Arrays.asList(clause), sentences);
+        assertEquals(tail, splitter.flush());
+    }
+    
+    @Test
+    public void shortClauseIsNotSplitAtComma() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        assertTrue(splitter.append("好的，马上").isEmpty());
+        assertEquals(Arrays.asList("好的，马上。"), splitter.append("。"));
+    }
+    
+    @Test
+    public void longClauseWithoutCommaIsKept() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        String text = repeat("字", SentenceSplitter.MAX_CLAUSE_LENGTH * 2);
+        
+        assertTrue(splitter.append(text).isEmpty());
+        assertEquals(text, splitter.flush());
+    }
+    
+    @Test
+    public void dropsPunctuationOnlySentences() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        
+        assertEquals(Arrays.asList("好。"), splitter.append("好。……\n！"));
+        assertNull(splitter.flush());
+    }
+    
+    private static String repeat(String text, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同一键的加载去重：预取或后台刷新进行中时，同步读取等待同一结果而不是再次请求
+ */
+public class TemplateContentCacheTest {
+    
+    private static final long TTL_MS = 60_000L;
+    private static final long MAX_STALE_MS = 60_000L;
+    
+    private ExecutorService refresher;
+    private ExecutorService caller;
+    
+    @Before
+    public void setUp() {
+        refresher = Executors.newSingleThreadExecutor();
+        caller = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void tearDown() {
+        refresher.shutdownNow();
+        caller.shutdownNow();
+    }
+    
+    @Test
+    public void getDuringPrefetchWaitsForSameLoad() throws Exception {
+        TemplateContentCache cache = new TemplateContentCache(refresher, TTL_MS, MAX_STALE_MS);
+        BlockingLoader loader = new BlockingLoader("晴");
+        
+        assertTrue(cache.prefetch("weather", loader, System.currentTimeMillis()));
+        assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+        
+        Future<String> result = caller.submit(() -> cache.get("weather", loader));
+        Thread.sleep(50);
+        assertFalse(result.isDone());
+        
+        loader.release.countDown();
+        assertEquals("晴", result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loader.calls.get());
+        
+        // 加载完成后直接命中
+        assertEquals("晴", cache.get("weather", loader));
+        assertEquals(1, loader.calls.get());
+    }
+    
+    @Test
+    public void prefetchRunsOnRefresherNotCaller() throws Exception {
+        TemplateContentCache cache = new TemplateContentCache(refresher, TTL_MS, MAX_STALE_MS);
+        BlockingLoader loader = new BlockingLoader("晴");
+        
+        // 加载阻塞时 prefetch 仍立即返回
+        assertTrue(cache.prefetch("weather", loader, System.currentTimeMillis()));
+        assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+        assertFalse(loader.thread == Thread.currentThread());
+        
+        // 已有加载在进行中，不再发起
+        assertFalse(cache.prefetch("weather", loader, System.currentTimeMillis()));
+        loader.release.countDown();
+    }
+    
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        TemplateContentCache cache = new TemplateContentCache(refresher, TTL_MS, MAX_STALE_MS);
+        BlockingLoader loader = new BlockingLoader("新闻");
+        
+        Future<String> first = caller.submit(() -> cache.get("news", loader));
+        assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+        ExecutorService second = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> other = second.submit(() -> cache.get("news", loader));
+            Thread.sleep(50);
+            loader.release.countDown();
+            
+            assertEquals("新闻", first.get(5, TimeUnit.SECONDS));
+            assertEquals("新闻", other.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loader.calls.get());
+        } finally {
+            second.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void staleReadRefreshesOnceInBackground() throws Exception {
+        // TTL 为 0：加载后立即陈旧
+        TemplateContentCache cache = new TemplateContentCache(refresher, 0, MAX_STALE_MS);
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("v1", cache.get("weather", () -> "v" + calls.incrementAndGet()));
+        
+        BlockingLoader loader = new BlockingLoader("v2");
+        assertEquals("v1", cache.get("weather", loader));
+        assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+        // 刷新进行中再次读取只返回旧值
+        assertEquals("v1", cache.get("weather", loader));
+        loader.release.countDown();
+        
+        refresher.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        assertEquals(1, loader.calls.get());
+        assertEquals("v2", cache.get("weather", () -> null));
+    }
+    
+    @Test
+    public void failedLoadKeepsOldValueAndAllowsRetry() throws Exception {
+        TemplateContentCache cache = new TemplateContentCache(refresher, 0, MAX_STALE_MS);
+        cache.get("weather", () -> "v1");
+        
+        assertTrue(cache.prefetch("weather", () -> {
+            throw new IllegalStateException("网络错误");
+        }, System.currentTimeMillis()));
+        refresher.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        
+        assertEquals("v1", cache.get("weather", () -> null));
+        refresher.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        assertTrue(cache.prefetch("weather", () -> "v2", System.currentTimeMillis()));
+    }
+    
+    @Test
+    public void rejectedRefreshIsNotLeftInFlight() throws Exception {
+        TemplateContentCache cache = new TemplateContentCache(task -> {
+            throw new RejectedExecutionException();
+        }, TTL_MS, MAX_STALE_MS);
+        
+        assertFalse(cache.prefetch("weather", () -> "晴", System.currentTimeMillis()));
+        // 被拒绝的预取不会让同步读取一直等待
+        assertEquals("晴", cache.get("weather", () -> "晴"));
+    }
+    
+    @Test
+    public void clearDuringLoadDiscardsResult() throws Exception {
+        TemplateContentCache cache = new TemplateContentCache(refresher, TTL_MS, MAX_STALE_MS);
+        BlockingLoader loader = new BlockingLoader("旧");
+        
+        cache.prefetch("weather", loader, System.currentTimeMillis());
+        assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+        cache.clear();
+        loader.release.countDown();
+        refresher.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        
+        assertNull(cache.get("weather", () -> null));
+    }
+    
+    /**
+     * 在 release 之前阻塞的加载器，记录调用次数与所在线程
+     */
+    private static class BlockingLoader implements TemplateContentCache.Loader<String> {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final String value;
+        volatile Thread thread;
+        
+        BlockingLoader(String value) {
+            this.value = value;
+        }
+        
+        @Override
+        public String load() {
+            calls.incrementAndGet();
+            thread = Thread.currentThread();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * 时间触发热路径的稳态分配检查
+ * 用 ThreadMXBean 统计当前线程分配的字节数，预热后循环执行
+ * TriggerIndex.dispatchTime / AutomationRule.matchesTime / TriggerIndex.minuteOfWeek，
+ * 要求分配量与空循环相同（即 0 字节）
+ */
+public class TriggerAllocationTest {
+    
+    private static final int RULE_COUNT = 1000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURE_ROUNDS = 5;
+    // 测量结果取多次中的最小值，排除偶发的类加载、JIT 等一次性分配
+    private static final int TRIALS = 3;
+    
+    private com.sun.management.ThreadMXBean threads;
+    private long threadId;
+    
+    private TriggerIndex index;
+    private AutomationRule[] rules;
+    private TriggerIndex.RuleSink sink;
+    private int matched;
+    
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        threadId = Thread.currentThread().getId();
+        
+        List<AutomationRule> generated = AutomationSimulator.generateRules(RULE_COUNT, AutomationSimulator.DEFAULT_SEED);
+        index = new TriggerIndex();
+        for (AutomationRule rule : generated) {
+            index.add(rule);
+        }
+        rules = generated.toArray(new AutomationRule[0]);
+        sink = rule -> matched++;
+    }
+    
+    @Test
+    public void dispatchTimeDoesNotAllocate() {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            dispatchWeek();
+        }
+        
+        long baseline = measureEmpty();
+        long allocated = Long.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURE_ROUNDS; i++) {
+                dispatchWeek();
+            }
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        
+        assertTrue("一周内应有规则命中", matched > 0);
+        assertEquals("dispatchTime 稳态不应分配内存", baseline, allocated);
+    }
+    
+    @Test
+    public void matchesTimeDoesNotAllocate() {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            matchAllRules();
+        }
+        
+        long baseline = measureEmpty();
+        long allocated = Long.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            matched = 0;
+            for (int i = 0; i < MEASURE_ROUNDS; i++) {
+                matchAllRules();
+            }
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        
+        assertTrue("抽样的时间点应有规则命中", matched > 0);
+        assertEquals("matchesTime 不应分配内存", baseline, allocated);
+    }
+    
+    @Test
+    public void minuteOfWeekDoesNotAllocate() {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            checksum += minuteOfWeekRound();
+        }
+        
+        long baseline = measureEmpty();
+        long allocated = Long.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURE_ROUNDS; i++) {
+                checksum += minuteOfWeekRound();
+            }
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        
+        assertTrue(checksum > 0);
+        assertEquals("minuteOfWeek 不应分配内存", baseline, allocated);
+    }
+    
+    @Test
+    public void minuteOfWeekHandlesWeekBoundaries() {
+        // 1970-01-01 00:00 是周四
+        assertEquals(4 * TriggerIndex.MINUTES_PER_DAY, TriggerIndex.minuteOfWeek(0L));
+        // 前一分钟是周三 23:59
+        assertEquals(4 * TriggerIndex.MINUTES_PER_DAY - 1, TriggerIndex.minuteOfWeek(-60_000L));
+        // 1970-01-04 是周日
+        assertEquals(0, TriggerIndex.minuteOfWeek(3L * TriggerIndex.MINUTES_PER_DAY * 60_000L));
+    }
+    
+    @Test
+    public void matchesTimeRespectsDays() throws Exception {
+        AutomationRule rule = AutomationRule.fromJson(new JSONObject(
+            "{\"id\":\"r\",\"name\":\"工作日\",\"triggers\":[{\"type\":\"time\",\"time\":\"07:30\",\"days\":[1,2,3,4,5]}],"
+                + "\"actions\":[]}"));
+        
+        assertTrue(rule.matchesTime(7 * 60 + 30, 1));
+        assertTrue(!rule.matchesTime(7 * 60 + 30, 0));
+        assertTrue(!rule.matchesTime(7 * 60 + 31, 1));
+    }
+    
+    // ============== 被测循环 ==============
+    
+    private void dispatchWeek() {
+        for (int minute = 0; minute < TriggerIndex.MINUTES_PER_WEEK; minute++) {
+            index.dispatchTime(minute, sink);
+        }
+    }
+    
+    private void matchAllRules() {
+        // 每小时抽样一个时间点，覆盖一周中的每一天
+        for (int minute = 0; minute < TriggerIndex.MINUTES_PER_WEEK; minute += 60) {
+            int minuteOfDay = minute % TriggerIndex.MINUTES_PER_DAY;
+            int dayOfWeek = minute / TriggerIndex.MINUTES_PER_DAY;
+            for (AutomationRule rule : rules) {
+                if (rule.matchesTime(minuteOfDay, dayOfWeek)) matched++;
+            }
+        }
+    }
+    
+    private long minuteOfWeekRound() {
+        long sum = 0;
+        for (long minute = 0; minute < TriggerIndex.MINUTES_PER_WEEK * 2L; minute++) {
+            sum += TriggerIndex.minuteOfWeek(minute * 60_000L);
+        }
+        return sum;
+    }
+    
+    /**
+     * 两次读取计数之间的固有分配量（通常为 0）
+     */
+    private long measureEmpty() {
+        long baseline = Long.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            baseline = Math.min(baseline, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        return baseline;
+    }
+}
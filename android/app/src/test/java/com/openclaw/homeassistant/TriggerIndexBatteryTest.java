@@ -0,0 +1,199 @@
+package com.openclaw.homeassistant;
+
+import static org.junit.Assert.assertEquals;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * 电量触发器的边沿触发与回差：降到阈值触发一次，回升到 阈值 + 回差 后才重新布防；
+ * 条件不满足时保持布防
+ */
+public class TriggerIndexBatteryTest {
+    
+    private TriggerIndex index;
+    private final DeviceState state = new DeviceState();
+    private final List<String> matched = new ArrayList<>();
+    private TriggerIndex.RuleSink sink;
+    
+    @Before
+    public void setUp() {
+        index = new TriggerIndex();
+        sink = rule -> matched.add(rule.id);
+    }
+    
+    @Test
+    public void firesOnceWhileOscillatingInsideHysteresisBand() throws Exception {
+        index.add(batteryRule("low", 20, -1));
+        
+        assertEquals(0, dispatch(25));
+        assertEquals(1, dispatch(20));
+        // 在 阈值 ~ 阈值 + 回差 之间反复波动不再触发
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, dispatch(21));
+            assertEquals(0, dispatch(20));
+            assertEquals(0, dispatch(24));
+            assertEquals(0, dispatch(19));
+        }
+        assertEquals(Collections.singletonList("low"), matched);
+    }
+    
+    @Test
+    public void rearmsAtThresholdPlusHysteresis() throws Exception {
+        index.add(batteryRule("low", 20, -1));
+        
+        assertEquals(1, dispatch(18));
+        assertEquals(0, dispatch(24));
+        assertEquals(0, dispatch(20));
+        // 默认回差 5：回升到 25 重新布防
+        assertEquals(0, dispatch(25));
+        assertEquals(1, dispatch(20));
+        assertEquals(0, dispatch(15));
+        assertEquals(Arrays.asList("low", "low"), matched);
+    }
+    
+    @Test
+    public void customAndMinimumHysteresis() throws Exception {
+        index.add(batteryRule("wide", 30, 10));
+        index.add(batteryRule("narrow", 10, 0));
+        
+        assertEquals(1, dispatch(30));
+        assertEquals(0, dispatch(39));
+        assertEquals(0, dispatch(30));
+        assertEquals(0, dispatch(40));
+        assertEquals(1, dispatch(30));
+        
+        // 回差至少为 1
+        assertEquals(1, dispatch(10));
+        assertEquals(0, dispatch(10));
+        assertEquals(0, dispatch(11));
+        assertEquals(1, dispatch(10));
+    }
+    
+    @Test
+    public void thresholdsTrackedIndependently() throws Exception {
+        index.add(batteryRule("b30", 30, -1));
+        index.add(batteryRule("b15", 15, -1));
+        
+        // 一次跨过两个阈值，两条都触发
+        assertEquals(2, dispatch(10));
+        assertEquals(new HashSet<>(Arrays.asList("b30", "b15")), new HashSet<>(matched));
+        
+        // 32 只重新布防 b15（回升到 20），b30 需要 35
+        matched.clear();
+        assertEquals(0, dispatch(32));
+        assertEquals(1, dispatch(14));
+        assertEquals(Collections.singletonList("b15"), matched);
+        
+        assertEquals(0, dispatch(35));
+        assertEquals(2, dispatch(15));
+    }
+    
+    @Test
+    public void firedBitsBeyondFirstWord() throws Exception {
+        // 超过 64 个槽位，状态位图需扩展到多个 long
+        for (int i = 0; i < 100; i++) {
+            index.add(batteryRule("r" + i, 20, -1));
+        }
+        
+        assertEquals(100, dispatch(20));
+        assertEquals(0, dispatch(19));
+        assertEquals(0, dispatch(24));
+        assertEquals(0, dispatch(25));
+        assertEquals(100, dispatch(20));
+    }
+    
+    @Test
+    public void removeClearsFiredStateForReusedSlot() throws Exception {
+        AutomationRule first = batteryRule("first", 20, -1);
+        index.add(first);
+        int slot = first.indexSlot;
+        assertEquals(1, dispatch(20));
+        
+        // 删除已触发的规则后，新规则复用同一槽位，不能继承已触发状态
+        index.remove(first);
+        AutomationRule second = batteryRule("second", 20, -1);
+        index.add(second);
+        assertEquals(slot, second.indexSlot);
+        assertEquals(1, dispatch(20));
+        assertEquals(0, dispatch(20));
+        assertEquals(Arrays.asList("first", "second"), matched);
+    }
+    
+    @Test
+    public void clearResetsFiredState() throws Exception {
+        AutomationRule rule = batteryRule("low", 20, -1);
+        index.add(rule);
+        assertEquals(1, dispatch(20));
+        
+        index.clear();
+        index.add(rule);
+        assertEquals(1, dispatch(20));
+    }
+    
+    @Test
+    public void conditionBlockedRuleStaysArmed() throws Exception {
+        // 电量低于 20% 且在 08:00-22:00 之间
+        JSONObject window = new JSONObject().put("type", "time_window").put("from", "08:00").put("to", "22:00");
+        index.add(batteryRule("daytime", 20, -1, window));
+        
+        // 23:00 跨过阈值：条件不满足，不触发也不撤防
+        state.minuteOfWeek = 23 * 60;
+        assertEquals(0, dispatch(20));
+        assertEquals(0, dispatch(19));
+        
+        // 次日 08:00 电量仍低，下一次电量事件即触发，之后照常边沿触发
+        state.minuteOfWeek = TriggerIndex.MINUTES_PER_DAY + 8 * 60;
+        assertEquals(1, dispatch(18));
+        assertEquals(0, dispatch(17));
+        assertEquals(Collections.singletonList("daytime"), matched);
+    }
+    
+    @Test
+    public void conditionIsEvaluatedPerRule() throws Exception {
+        JSONObject charging = new JSONObject().put("type", "charging").put("charging", false);
+        index.add(batteryRule("unplugged", 20, -1, charging));
+        index.add(batteryRule("always", 20, -1));
+        
+        state.charging = true;
+        assertEquals(1, dispatch(20));
+        assertEquals(Collections.singletonList("always"), matched);
+        
+        state.charging = false;
+        assertEquals(1, dispatch(19));
+        assertEquals(Arrays.asList("always", "unplugged"), matched);
+    }
+    
+    private int dispatch(int level) {
+        state.batteryLevel = level;
+        return index.dispatchBattery(level, state, sink);
+    }
+    
+    /**
+     * @param hysteresis 小于 0 时使用默认回差
+     */
+    private static AutomationRule batteryRule(String id, int levelBelow, int hysteresis) throws Exception {
+        return batteryRule(id, levelBelow, hysteresis, null);
+    }
+    
+    private static AutomationRule batteryRule(String id, int levelBelow, int hysteresis,
+                                              JSONObject condition) throws Exception {
+        JSONObject trigger = new JSONObject().put("type", "battery").put("level_below", levelBelow);
+        if (hysteresis >= 0) trigger.put("hysteresis", hysteresis);
+        JSONObject json = new JSONObject()
+            .put("id", id)
+            .put("name", id)
+            .put("triggers", new JSONArray().put(trigger))
+            .put("actions", new JSONArray());
+        if (condition != null) json.put("condition", condition);
+        return AutomationRule.fromJson(json);
+    }
+}
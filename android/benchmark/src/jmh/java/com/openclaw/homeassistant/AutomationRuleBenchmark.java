@@ -0,0 +1,65 @@
+package com.openclaw.homeassistant;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则加载：AutomationRule.fromJson 与 TriggerIndex 构建
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AutomationRuleBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int ruleCount;
+    
+    private JSONObject[] ruleJson;
+    private List<AutomationRule> rules;
+    
+    @Setup
+    public void setup() throws JSONException {
+        Random random = new Random(AutomationSimulator.DEFAULT_SEED);
+        ruleJson = new JSONObject[ruleCount];
+        for (int i = 0; i < ruleCount; i++) {
+            ruleJson[i] = AutomationSimulator.generateRuleJson(i, random);
+        }
+        rules = AutomationSimulator.generateRules(ruleCount, AutomationSimulator.DEFAULT_SEED);
+    }
+    
+    @Benchmark
+    public void fromJson(Blackhole blackhole) {
+        for (JSONObject json : ruleJson) {
+            blackhole.consume(AutomationRule.fromJson(json));
+        }
+    }
+    
+    @Benchmark
+    public void fingerprint(Blackhole blackhole) {
+        for (JSONObject json : ruleJson) {
+            blackhole.consume(AutomationRule.fingerprint(json.toString()));
+        }
+    }
+    
+    @Benchmark
+    public TriggerIndex buildIndex() {
+        TriggerIndex index = new TriggerIndex();
+        for (AutomationRule rule : rules) {
+            index.add(rule);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,116 @@
+package com.openclaw.homeassistant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话的纯 Java 路径：请求上下文构建（ContextWindow、TokenEstimator）与全文检索的分词、排序（ConversationSearch）
+ * 存储一侧（ConversationStore / Room）依赖 Android 运行时，不在本模块中测量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConversationContextBenchmark {
+    
+    @Param({"500", "2000"})
+    public int tokenBudget;
+    
+    private static final String[] CONTENTS = {
+        "打开客厅的灯，然后把空调调到 26 度。",
+        "好的，已为你打开客厅的灯，空调已设置为 26 度制冷模式。",
+        "What's the weather like tomorrow in Shanghai? 明天需要带伞吗？",
+        "明天上海多云转小雨，气温 18 到 24 度，下午降水概率 60%，建议带伞。出门前记得关窗。",
+    };
+    
+    static final class Turn implements ContextWindow.Turn {
+        private final String role;
+        private final String content;
+        
+        Turn(String role, String content) {
+            this.role = role;
+            this.content = content;
+        }
+        
+        @Override
+        public String role() {
+            return role;
+        }
+        
+        @Override
+        public String content() {
+            return content;
+        }
+    }
+    
+    private final Turn[] turns = new Turn[CONTENTS.length];
+    private ContextWindow<Turn> window;
+    private byte[] matchinfo;
+    private int next;
+    
+    @Setup
+    public void setup() {
+        for (int i = 0; i < turns.length; i++) {
+            turns[i] = new Turn(i % 2 == 0 ? "user" : "assistant", CONTENTS[i]);
+        }
+        // 与 ConversationStore.MAX_CONTEXT_SIZE 相同；预热到窗口已满、每次追加都会滑动的稳态
+        window = new ContextWindow<>(20);
+        for (int i = 0; i < 100; i++) {
+            window.add(turns[i % turns.length]);
+            window.build(10, tokenBudget);
+        }
+        matchinfo = matchinfo(2, 30000, 20, 18);
+    }
+    
+    /** matchinfo('pcnalx')：phrases 个短语、1 列 */
+    private static byte[] matchinfo(int phrases, int documents, int avgLength, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate((5 + phrases * 3) * 4).order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases).putInt(1).putInt(documents).putInt(avgLength).putInt(length);
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            buffer.putInt(phrase + 1).putInt(100 * (phrase + 1)).putInt(50 * (phrase + 1));
+        }
+        return buffer.array();
+    }
+    
+    @Benchmark
+    public int estimateTokens() {
+        return TokenEstimator.estimate(CONTENTS[next++ & 3]);
+    }
+    
+    /** 追加一条消息后构建：窗口滑动，最早的消息折叠进摘要 */
+    @Benchmark
+    public ContextWindow.Window<Turn> appendAndBuild() {
+        window.add(turns[next++ & 3]);
+        return window.build(10, tokenBudget);
+    }
+    
+    /** 没有新消息时重复构建：摘要直接使用缓存 */
+    @Benchmark
+    public ContextWindow.Window<Turn> rebuild() {
+        return window.build(10, tokenBudget);
+    }
+    
+    @Benchmark
+    public String indexTokens() {
+        return ConversationSearch.indexTokens(CONTENTS[next++ & 3]);
+    }
+    
+    @Benchmark
+    public String matchQuery() {
+        return ConversationSearch.matchQuery("明天 上海 weather");
+    }
+    
+    @Benchmark
+    public double bm25() {
+        return ConversationSearch.bm25(matchinfo);
+    }
+}
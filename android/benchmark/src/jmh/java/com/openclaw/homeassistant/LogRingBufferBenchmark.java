@@ -0,0 +1,79 @@
+package com.openclaw.homeassistant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自动化日志的环形文件（AutomationLogger 的写入路径）：追加、增量读取（同步到数据库时）与计数
+ * 追加在预热后处于日志已满、覆盖最旧记录的稳态，capacity 主要影响读取和计数
+ * 数据库一侧（Room）依赖 Android 运行时，不在本模块中测量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LogRingBufferBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int capacity;
+    
+    private static final String[] RULE_IDS = new String[20];
+    private static final String[] RULE_NAMES = new String[20];
+    
+    static {
+        for (int i = 0; i < RULE_IDS.length; i++) {
+            RULE_IDS[i] = "rule_" + i;
+            RULE_NAMES[i] = "规则 " + i;
+        }
+    }
+    
+    private LogRingBuffer ring;
+    private int sequence;
+    
+    @Setup
+    public void setup() throws IOException {
+        File dir = Files.createTempDirectory("ring-bench").toFile();
+        dir.deleteOnExit();
+        ring = LogRingBuffer.open(new File(dir, "automation_log.ring"), capacity, capacity);
+        for (int i = 0; i < capacity; i++) {
+            ring.append(i, LogRingBuffer.KIND_TRIGGER, RULE_IDS[i % 20], RULE_NAMES[i % 20], "time", "executed");
+        }
+    }
+    
+    @Benchmark
+    public long append() {
+        int rule = sequence++ % 20;
+        return ring.append(System.currentTimeMillis(), LogRingBuffer.KIND_TRIGGER,
+            RULE_IDS[rule], RULE_NAMES[rule], "time", "executed");
+    }
+    
+    /**
+     * 同步一批（50 条）新记录：解码所需字段
+     */
+    @Benchmark
+    public List<String> readTail() {
+        final List<String> names = new ArrayList<>(50);
+        ring.forEachFrom(ring.getNextSequence() - 50, (buffer, slot, seq) -> {
+            names.add(buffer.field(slot, LogRingBuffer.FIELD_RULE_NAME));
+            return true;
+        });
+        return names;
+    }
+    
+    @Benchmark
+    public int count() {
+        return ring.count(LogRingBuffer.KIND_TRIGGER, "rule_3");
+    }
+}
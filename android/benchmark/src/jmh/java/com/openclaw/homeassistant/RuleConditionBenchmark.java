@@ -0,0 +1,71 @@
+package com.openclaw.homeassistant;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则条件：编译与求值（求值应为纳秒级且不分配内存）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RuleConditionBenchmark {
+    
+    private static final String SIMPLE =
+        "{\"type\":\"time_window\",\"from\":\"22:00\",\"to\":\"06:30\"}";
+    
+    // 工作日 [07:00, 09:00) 且 (电量 30-80 或 充电中) 且 非 (电量 < 10)
+    private static final String COMPLEX = "{\"type\":\"and\",\"conditions\":["
+        + "{\"type\":\"days\",\"days\":[1,2,3,4,5]},"
+        + "{\"type\":\"time_window\",\"from\":\"07:00\",\"to\":\"09:00\"},"
+        + "{\"type\":\"or\",\"conditions\":["
+        + "{\"type\":\"battery_range\",\"min\":30,\"max\":80},"
+        + "{\"type\":\"charging\",\"charging\":true}]},"
+        + "{\"type\":\"not\",\"condition\":{\"type\":\"battery_range\",\"max\":9}}]}";
+    
+    private RuleCondition simple;
+    private RuleCondition complex;
+    private JSONObject complexJson;
+    private final DeviceState state = new DeviceState();
+    private int tick;
+    
+    @Setup
+    public void setup() throws JSONException {
+        simple = RuleCondition.compile(new JSONObject(SIMPLE));
+        complexJson = new JSONObject(COMPLEX);
+        complex = RuleCondition.compile(complexJson);
+    }
+    
+    /** 每次调用推进时间与电量，避免分支被完全预测 */
+    private DeviceState nextState() {
+        tick++;
+        state.minuteOfWeek = (tick * 37) % TriggerIndex.MINUTES_PER_WEEK;
+        state.batteryLevel = tick % 101;
+        state.charging = (tick & 8) != 0;
+        return state;
+    }
+    
+    @Benchmark
+    public boolean evaluateSimple() {
+        return simple.evaluate(nextState());
+    }
+    
+    @Benchmark
+    public boolean evaluateComplex() {
+        return complex.evaluate(nextState());
+    }
+    
+    @Benchmark
+    public RuleCondition compileComplex() throws JSONException {
+        return RuleCondition.compile(complexJson);
+    }
+}
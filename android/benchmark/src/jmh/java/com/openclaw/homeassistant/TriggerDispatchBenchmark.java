@@ -0,0 +1,83 @@
+package com.openclaw.homeassistant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 触发器分发：每个事件的热路径，应与规则总数基本无关且不分配内存
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TriggerDispatchBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int ruleCount;
+    
+    private TriggerIndex index;
+    private TriggerIndex.RuleSink sink;
+    private int matched;
+    private final DeviceState state = new DeviceState();
+    
+    private int minuteOfWeek;
+    private int batteryLevel;
+    private int batteryStep;
+    private boolean plugged;
+    
+    @Setup
+    public void setup() {
+        List<AutomationRule> rules = AutomationSimulator.generateRules(ruleCount, AutomationSimulator.DEFAULT_SEED);
+        index = new TriggerIndex();
+        for (AutomationRule rule : rules) {
+            index.add(rule);
+        }
+        sink = rule -> matched++;
+        batteryLevel = 100;
+        batteryStep = -1;
+    }
+    
+    /** 逐分钟推进，覆盖一周内的空桶和非空桶 */
+    @Benchmark
+    public int dispatchTime() {
+        minuteOfWeek = minuteOfWeek + 1 == TriggerIndex.MINUTES_PER_WEEK ? 0 : minuteOfWeek + 1;
+        return index.dispatchTime(minuteOfWeek, sink);
+    }
+    
+    /** 电量在 1..100 之间往返，覆盖触发与重新布防 */
+    @Benchmark
+    public int dispatchBattery() {
+        if (batteryLevel <= 1) batteryStep = 1;
+        if (batteryLevel >= 100) batteryStep = -1;
+        batteryLevel += batteryStep;
+        state.batteryLevel = batteryLevel;
+        return index.dispatchBattery(batteryLevel, state, sink);
+    }
+    
+    @Benchmark
+    public int dispatchPower() {
+        plugged = !plugged;
+        return index.dispatchPower(plugged, sink);
+    }
+    
+    /** 时间轮查找下一次触发（每次闹钟后重新调度时调用） */
+    @Benchmark
+    public int minutesUntilNextTime() {
+        minuteOfWeek = minuteOfWeek + 1 == TriggerIndex.MINUTES_PER_WEEK ? 0 : minuteOfWeek + 1;
+        return index.minutesUntilNextTime(minuteOfWeek);
+    }
+    
+    @Benchmark
+    public int minuteOfWeek() {
+        minuteOfWeek++;
+        return TriggerIndex.minuteOfWeek(minuteOfWeek * 60_000L);
+    }
+}
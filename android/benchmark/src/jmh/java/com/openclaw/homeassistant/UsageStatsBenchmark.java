@@ -0,0 +1,87 @@
+package com.openclaw.homeassistant;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用统计：recordTrigger / recordTriggerBatch 只累加内存计数器（后者对应 AutomationEventWriter 的组提交）；
+ * recordAndFlush 在一批之后立即写入存储，对应定时写入的开销，随当天触发过的规则数增长
+ * （AutomationEventWriter 依赖 Room，不在本模块中编译，批大小在此同步）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UsageStatsBenchmark {
+    
+    // 与 AutomationEventWriter.BATCH_SIZE 一致
+    private static final int BATCH_SIZE = 64;
+    
+    @Param({"10", "100", "1000"})
+    public int distinctRules;
+    
+    private UsageStatsService stats;
+    private String[] ruleIds;
+    private String[] ruleNames;
+    private int sequence;
+    private final String[] batchRuleIds = new String[BATCH_SIZE];
+    private final String[] batchRuleNames = new String[BATCH_SIZE];
+    private final long[] batchTimestamps = new long[BATCH_SIZE];
+    
+    @Setup
+    public void setup() {
+        stats = new UsageStatsService(new Context());
+        ruleIds = new String[distinctRules];
+        ruleNames = new String[distinctRules];
+        for (int i = 0; i < distinctRules; i++) {
+            ruleIds[i] = "rule_" + i;
+            ruleNames[i] = "规则 " + i;
+            stats.recordTrigger(ruleIds[i], ruleNames[i]);
+        }
+        stats.flush();
+    }
+    
+    @Benchmark
+    public void recordTrigger() {
+        int i = sequence++ % distinctRules;
+        stats.recordTrigger(ruleIds[i], ruleNames[i]);
+    }
+    
+    @Benchmark
+    public void recordTriggerBatch() {
+        fillBatch();
+        stats.recordTriggers(batchRuleIds, batchRuleNames, batchTimestamps, batchRuleIds.length);
+    }
+    
+    @Benchmark
+    public void recordAndFlush() {
+        fillBatch();
+        stats.recordTriggers(batchRuleIds, batchRuleNames, batchTimestamps, batchRuleIds.length);
+        stats.flush();
+    }
+    
+    private void fillBatch() {
+        long now = System.currentTimeMillis();
+        for (int j = 0; j < batchRuleIds.length; j++) {
+            int i = sequence++ % distinctRules;
+            batchRuleIds[j] = ruleIds[i];
+            batchRuleNames[j] = ruleNames[i];
+            batchTimestamps[j] = now;
+        }
+    }
+    
+    @Benchmark
+    public List<UsageStatsService.DailyStats> getLast7DaysStats() {
+        return stats.getLast7DaysStats();
+    }
+}
@@ -0,0 +1,45 @@
+package android.content;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * android.content.Context 的 JVM 替身（仅用于基准测试）
+ * 只提供被测代码用到的方法，SharedPreferences 保存在内存中，
+ * getFilesDir 指向每个实例独立的临时目录
+ */
+public class Context {
+    
+    public static final int MODE_PRIVATE = 0;
+    
+    private final Map<String, SharedPreferences> preferences = new HashMap<>();
+    private File filesDir;
+    
+    public Context getApplicationContext() {
+        return this;
+    }
+    
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        SharedPreferences prefs = preferences.get(name);
+        if (prefs == null) {
+            prefs = new InMemorySharedPreferences();
+            preferences.put(name, prefs);
+        }
+        return prefs;
+    }
+    
+    public synchronized File getFilesDir() {
+        if (filesDir == null) {
+            try {
+                filesDir = Files.createTempDirectory("openclaw-files").toFile();
+                filesDir.deleteOnExit();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return filesDir;
+    }
+}
@@ -0,0 +1,115 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 内存 SharedPreferences
+ * 与 Android 实现一致：Editor 先缓存修改，commit/apply 时一次性合并；
+ * 不落盘，因此基准只衡量序列化/解析本身的开销
+ */
+class InMemorySharedPreferences implements SharedPreferences {
+    
+    private final Map<String, Object> values = new HashMap<>();
+    
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+    
+    @Override
+    public synchronized String getString(String key, String defValue) {
+        Object value = values.get(key);
+        return value != null ? (String) value : defValue;
+    }
+    
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value != null ? (Integer) value : defValue;
+    }
+    
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value != null ? (Long) value : defValue;
+    }
+    
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        return value != null ? (Boolean) value : defValue;
+    }
+    
+    @Override
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+    
+    @Override
+    public Editor edit() {
+        return new EditorImpl();
+    }
+    
+    private class EditorImpl implements Editor {
+        private final Map<String, Object> modified = new HashMap<>();
+        private boolean clear = false;
+        
+        @Override
+        public Editor putString(String key, String value) {
+            modified.put(key, value);
+            return this;
+        }
+        
+        @Override
+        public Editor putInt(String key, int value) {
+            modified.put(key, value);
+            return this;
+        }
+        
+        @Override
+        public Editor putLong(String key, long value) {
+            modified.put(key, value);
+            return this;
+        }
+        
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            modified.put(key, value);
+            return this;
+        }
+        
+        @Override
+        public Editor remove(String key) {
+            // 与 Android 一致：值为 null 表示删除
+            modified.put(key, null);
+            return this;
+        }
+        
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+        
+        @Override
+        public boolean commit() {
+            synchronized (InMemorySharedPreferences.this) {
+                if (clear) values.clear();
+                for (Map.Entry<String, Object> entry : modified.entrySet()) {
+                    if (entry.getValue() == null) {
+                        values.remove(entry.getKey());
+                    } else {
+                        values.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public void apply() {
+            commit();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package android.content;
+
+import java.util.Map;
+
+/**
+ * android.content.SharedPreferences 的 JVM 替身（仅用于基准测试）
+ */
+public interface SharedPreferences {
+    
+    Map<String, ?> getAll();
+    
+    String getString(String key, String defValue);
+    
+    int getInt(String key, int defValue);
+    
+    long getLong(String key, long defValue);
+    
+    boolean getBoolean(String key, boolean defValue);
+    
+    boolean contains(String key);
+    
+    Editor edit();
+    
+    interface Editor {
+        Editor putString(String key, String value);
+        
+        Editor putInt(String key, int value);
+        
+        Editor putLong(String key, long value);
+        
+        Editor putBoolean(String key, boolean value);
+        
+        Editor remove(String key);
+        
+        Editor clear();
+        
+        boolean commit();
+        
+        void apply();
+    }
+}
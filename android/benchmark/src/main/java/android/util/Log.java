@@ -0,0 +1,38 @@
+package android.util;
+
+/**
+ * android.util.Log 的 JVM 替身（仅用于基准测试），不输出任何内容
+ */
+public final class Log {
+    
+    private Log() {
+    }
+    
+    public static int v(String tag, String msg) {
+        return 0;
+    }
+    
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+    
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+    
+    public static int w(String tag, String msg) {
+        return 0;
+    }
+    
+    public static int w(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+    
+    public static int e(String tag, String msg) {
+        return 0;
+    }
+    
+    public static int e(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.openclaw.homeassistant;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * AutomationSimulator 的命令行入口
+ *   ./gradlew :benchmark:simulate --args="规则数 天数 种子"
+ */
+public class AutomationSimulatorMain {
+    
+    public static void main(String[] args) {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : AutomationSimulator.DEFAULT_RULES;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : AutomationSimulator.DEFAULT_DAYS;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : AutomationSimulator.DEFAULT_SEED;
+        
+        long parseStart = System.nanoTime();
+        List<AutomationRule> rules = AutomationSimulator.generateRules(ruleCount, seed);
+        long parseNanos = System.nanoTime() - parseStart;
+        
+        AutomationSimulator.Report report = new AutomationSimulator(seed).run(rules, days);
+        System.out.println(String.format(Locale.US, "解析 %d 条规则：%.1f ms", rules.size(), parseNanos / 1e6));
+        System.out.println(report);
+    }
+}